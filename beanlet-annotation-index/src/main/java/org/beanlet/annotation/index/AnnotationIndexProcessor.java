@@ -0,0 +1,335 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Beanlet - JSE Application Container.
+ * Copyright (C) 2006  Leon van Zantvoort
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ * 
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://beanlet.org
+ */
+package org.beanlet.annotation.index;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.FilerException;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * <p>Writes an index of the annotated members of all compiled classes to
+ * {@code META-INF/beanlet/annotation.index}. At deploy time, the annotation 
+ * domain only inspects the members that are listed by the index, and falls 
+ * back to scanning classes that are not listed.</p>
+ *
+ * <p>The processor is activated by adding this jar to the compiler's class 
+ * path. It does not claim any annotations.</p>
+ *
+ * <p>Each entry carries the CRC-32 of the class file it describes, so that 
+ * an index is not trusted for classes that have been recompiled without 
+ * this processor. Class files are written after annotation processing, 
+ * therefore the index is written once the compiler has generated them. 
+ * This requires the {@code com.sun.source} API of javac. With other 
+ * compilers, entries have no checksum and are never trusted.</p>
+ *
+ * @author Leon van Zantvoort
+ */
+@SupportedAnnotationTypes("*")
+public final class AnnotationIndexProcessor extends AbstractProcessor {
+    
+    // Keep in sync with org.beanlet.annotation.AnnotationIndex.
+    static final String RESOURCE = "META-INF/beanlet/annotation.index";
+    static final int MAGIC = 0x42414958;
+    static final int VERSION = 2;
+    
+    // Checksum of entries whose class file has not been generated.
+    static final long NO_CHECKSUM = -1L;
+    
+    static final int TYPE = 0x01;
+    static final int FIELD = 0x02;
+    static final int METHOD = 0x04;
+    static final int CONSTRUCTOR = 0x08;
+    
+    private static final class Entry {
+        int flags;
+        final Set<String> fieldNames = new TreeSet<String>();
+        final Set<String> methodNames = new TreeSet<String>();
+        long checksum = NO_CHECKSUM;
+    }
+    
+    private final Map<String, Entry> entries = new TreeMap<String, Entry>();
+    private FileObject file;
+    private boolean deferred;
+    private int generated;
+    private boolean written;
+    
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        deferred = addTaskListener();
+    }
+    
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+    
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, 
+            RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            if (!entries.isEmpty()) {
+                try {
+                    file = processingEnv.getFiler().createResource(
+                            StandardLocation.CLASS_OUTPUT, "", RESOURCE);
+                } catch (FilerException e) {
+                    // Index has already been written by this compilation.
+                    return false;
+                } catch (IOException e) {
+                    warn(e);
+                    return false;
+                }
+                if (!deferred) {
+                    write();
+                }
+            }
+        } else {
+            for (Element element : roundEnv.getRootElements()) {
+                if (element instanceof TypeElement) {
+                    index((TypeElement) element);
+                }
+            }
+        }
+        return false;
+    }
+    
+    private void index(TypeElement type) {
+        Entry entry = new Entry();
+        if (!type.getAnnotationMirrors().isEmpty()) {
+            entry.flags |= TYPE;
+        }
+        for (Element member : type.getEnclosedElements()) {
+            switch (member.getKind()) {
+                case FIELD:
+                case ENUM_CONSTANT:
+                    if (!member.getAnnotationMirrors().isEmpty()) {
+                        entry.flags |= FIELD;
+                        entry.fieldNames.add(member.getSimpleName().toString());
+                    }
+                    break;
+                case METHOD:
+                    if (isAnnotated((ExecutableElement) member)) {
+                        entry.flags |= METHOD;
+                        entry.methodNames.add(member.getSimpleName().toString());
+                    }
+                    break;
+                case CONSTRUCTOR:
+                    if (isAnnotated((ExecutableElement) member)) {
+                        entry.flags |= CONSTRUCTOR;
+                    }
+                    break;
+                case CLASS:
+                case INTERFACE:
+                case ENUM:
+                case ANNOTATION_TYPE:
+                    index((TypeElement) member);
+                    break;
+                default:
+                    break;
+            }
+        }
+        entries.put(processingEnv.getElementUtils().getBinaryName(type).
+                toString(), entry);
+    }
+    
+    private static boolean isAnnotated(ExecutableElement element) {
+        if (!element.getAnnotationMirrors().isEmpty()) {
+            return true;
+        }
+        for (VariableElement parameter : element.getParameters()) {
+            if (!parameter.getAnnotationMirrors().isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Registers a javac task listener that records the checksums of the 
+     * generated class files, and writes the index when compilation has 
+     * finished. The listener is registered reflectively, as the 
+     * {@code com.sun.source} API is not part of the Java platform.
+     *
+     * @return {@code false} if the compiler does not support task listeners.
+     */
+    private boolean addTaskListener() {
+        try {
+            ClassLoader loader = processingEnv.getClass().getClassLoader();
+            Class<?> taskClass = Class.forName("com.sun.source.util.JavacTask",
+                    false, loader);
+            Class<?> listenerClass = Class.forName(
+                    "com.sun.source.util.TaskListener", false, loader);
+            Object task = taskClass.getMethod("instance", 
+                    ProcessingEnvironment.class).invoke(null, processingEnv);
+            Object listener = Proxy.newProxyInstance(loader, 
+                    new Class<?>[] {listenerClass}, new InvocationHandler() {
+                public Object invoke(Object proxy, Method method, 
+                        Object[] args) throws Throwable {
+                    if (method.getName().equals("finished")) {
+                        finished(args[0]);
+                        return null;
+                    } else if (method.getName().equals("equals")) {
+                        return proxy == args[0];
+                    } else if (method.getName().equals("hashCode")) {
+                        return System.identityHashCode(proxy);
+                    } else if (method.getName().equals("toString")) {
+                        return AnnotationIndexProcessor.class.getName();
+                    }
+                    return null;
+                }
+            });
+            taskClass.getMethod("addTaskListener", listenerClass).invoke(task, 
+                    listener);
+            return true;
+        } catch (Exception e) {
+            // Not javac, or javac without JavacTask.instance.
+            return false;
+        } catch (LinkageError e) {
+            return false;
+        }
+    }
+    
+    private synchronized void finished(Object event) throws Exception {
+        String kind = String.valueOf(event.getClass().getMethod("getKind").
+                invoke(event));
+        if (kind.equals("GENERATE")) {
+            TypeElement type = (TypeElement) event.getClass().getMethod(
+                    "getTypeElement").invoke(event);
+            if (type != null) {
+                Entry entry = entries.get(processingEnv.getElementUtils().
+                        getBinaryName(type).toString());
+                if (entry != null && entry.checksum == NO_CHECKSUM) {
+                    entry.checksum = checksum(type);
+                    if (entry.checksum != NO_CHECKSUM && 
+                            ++generated == entries.size() && file != null) {
+                        // Compilers without a COMPILATION event.
+                        write();
+                    }
+                }
+            }
+        } else if (kind.equals("COMPILATION")) {
+            if (file != null) {
+                write();
+            }
+        }
+    }
+    
+    private long checksum(TypeElement type) {
+        PackageElement pkg = processingEnv.getElementUtils().getPackageOf(type);
+        String binaryName = processingEnv.getElementUtils().getBinaryName(
+                type).toString();
+        String packageName = pkg.getQualifiedName().toString();
+        String name = packageName.length() == 0 ? binaryName : 
+                binaryName.substring(packageName.length() + 1);
+        try {
+            FileObject classFile = processingEnv.getFiler().getResource(
+                    StandardLocation.CLASS_OUTPUT, packageName, 
+                    name + ".class");
+            InputStream in = classFile.openInputStream();
+            try {
+                CRC32 crc = new CRC32();
+                byte[] b = new byte[8192];
+                for (int n = in.read(b); n != -1; n = in.read(b)) {
+                    crc.update(b, 0, n);
+                }
+                return crc.getValue();
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return NO_CHECKSUM;
+        }
+    }
+    
+    private void write() {
+        if (written) {
+            return;
+        }
+        written = true;
+        try {
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(file.openOutputStream()));
+            try {
+                out.writeInt(MAGIC);
+                out.writeShort(VERSION);
+                out.writeInt(entries.size());
+                for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                    Entry entry = e.getValue();
+                    out.writeUTF(e.getKey());
+                    out.writeByte(entry.flags);
+                    out.writeLong(entry.checksum);
+                    writeNames(out, entry.fieldNames);
+                    writeNames(out, entry.methodNames);
+                }
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            warn(e);
+        }
+    }
+    
+    private void warn(IOException e) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                "Failed to write annotation index: " + e.getMessage());
+    }
+    
+    private static void writeNames(DataOutputStream out, Set<String> names) 
+            throws IOException {
+        out.writeShort(names.size());
+        for (String name : names) {
+            out.writeUTF(name);
+        }
+    }
+}
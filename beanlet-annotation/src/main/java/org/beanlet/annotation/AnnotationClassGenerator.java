@@ -0,0 +1,676 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Beanlet - JSE Application Container.
+ * Copyright (C) 2006  Leon van Zantvoort
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ * 
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://beanlet.org
+ */
+package org.beanlet.annotation;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>Generates a final class per annotation type that implements the 
+ * annotation's members with plain fields. Instances of these classes are 
+ * used instead of dynamic proxies, so that reading an annotation value does 
+ * not go through an {@code InvocationHandler}. The hash code is computed 
+ * once, at construction time. The {@code equals} method compares the fields 
+ * with the members of the other annotation, following the contract of 
+ * {@code Annotation.equals}. The {@code toString} method is delegated to the
+ * {@code AnnotationProxy} that supplied the values.</p>
+ *
+ * <p>Generated classes are defined by a class loader of their own, whose 
+ * parent is the class loader of the annotation type. Annotation types that
+ * are not public, or that have members of non-public types, are not 
+ * supported.</p>
+ *
+ * @author Leon van Zantvoort
+ */
+final class AnnotationClassGenerator {
+    
+    private static final String PACKAGE = "org.beanlet.annotation.generated.";
+    private static final String CONSTRUCTOR_DESCRIPTOR = 
+            "([Ljava/lang/Object;Ljava/lang/Object;I)V";
+    
+    private static final AtomicInteger counter = new AtomicInteger();
+    
+    // Values are softly referenced, as generated classes refer to their 
+    // annotation type. Unsupported types are mapped to Boolean.FALSE.
+    private static final Map<Class<?>, Object> classes = 
+            new WeakHashMap<Class<?>, Object>();
+    
+    private final Method[] methods;
+    private final Constructor<?> constructor;
+    
+    private AnnotationClassGenerator(Method[] methods, 
+            Constructor<?> constructor) {
+        this.methods = methods;
+        this.constructor = constructor;
+    }
+    
+    /**
+     * Returns the generator for the specified annotation {@code type}, or 
+     * {@code null} if the type cannot be implemented by a generated class.
+     */
+    static synchronized AnnotationClassGenerator getInstance(
+            Class<? extends Annotation> type) {
+        Object value = classes.get(type);
+        AnnotationClassGenerator generator = null;
+        if (value instanceof Reference) {
+            generator = (AnnotationClassGenerator) ((Reference<?>) value).get();
+        } else if (value != null) {
+            return null;
+        }
+        if (generator == null) {
+            generator = generate(type);
+            classes.put(type, generator == null ? Boolean.FALSE : 
+                    new SoftReference<AnnotationClassGenerator>(generator));
+        }
+        return generator;
+    }
+    
+    /**
+     * Returns the members of the annotation type, in the order expected by
+     * {@link #newInstance}.
+     */
+    Method[] getMethods() {
+        return methods.clone();
+    }
+    
+    /**
+     * Returns a new annotation instance for the specified member 
+     * {@code values}.
+     */
+    <T extends Annotation> T newInstance(Class<T> type, Object[] values, 
+            Object handler, int hashCode) {
+        try {
+            return type.cast(constructor.newInstance(values, handler, 
+                    hashCode));
+        } catch (InvocationTargetException e) {
+            Throwable t = e.getTargetException();
+            if (t instanceof RuntimeException) {
+                throw (RuntimeException) t;
+            }
+            if (t instanceof Error) {
+                throw (Error) t;
+            }
+            throw new AssertionError(t);
+        } catch (InstantiationException e) {
+            throw new AssertionError(e);
+        } catch (IllegalAccessException e) {
+            throw new AssertionError(e);
+        }
+    }
+    
+    private static AnnotationClassGenerator generate(
+            final Class<? extends Annotation> type) {
+        if (!Modifier.isPublic(type.getModifiers())) {
+            return null;
+        }
+        Method[] methods = type.getDeclaredMethods();
+        for (Method method : methods) {
+            Class<?> cls = method.getReturnType();
+            while (cls.isArray()) {
+                cls = cls.getComponentType();
+            }
+            if (!Modifier.isPublic(cls.getModifiers())) {
+                return null;
+            }
+        }
+        // Annotation members cannot be overloaded.
+        Arrays.sort(methods, new Comparator<Method>() {
+            public int compare(Method m1, Method m2) {
+                return m1.getName().compareTo(m2.getName());
+            }
+        });
+        final String name = PACKAGE + type.getSimpleName() + "$" + 
+                counter.incrementAndGet();
+        final byte[] b;
+        try {
+            b = new ClassWriter(name, type, methods).toByteArray();
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        Class<?> cls = AccessController.doPrivileged(
+                new PrivilegedAction<Class<?>>() {
+            public Class<?> run() {
+                // PERMISSION: java.lang.RuntimePermission createClassLoader
+                return new GeneratorClassLoader(type.getClassLoader()).
+                        define(name, b);
+            }
+        });
+        try {
+            return new AnnotationClassGenerator(methods, cls.getConstructor(
+                    Object[].class, Object.class, Integer.TYPE));
+        } catch (NoSuchMethodException e) {
+            throw new AssertionError(e);
+        }
+    }
+    
+    private static final class GeneratorClassLoader extends ClassLoader {
+        
+        GeneratorClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+        
+        Class<?> define(String name, byte[] b) {
+            return defineClass(name, b, 0, b.length);
+        }
+    }
+    
+    /**
+     * Writes a class file in the Java 5 format, which does not require stack
+     * map frames.
+     */
+    private static final class ClassWriter {
+        
+        private static final int VERSION = 49;
+        
+        private static final int ACC_PUBLIC = 0x0001;
+        private static final int ACC_PRIVATE = 0x0002;
+        private static final int ACC_FINAL = 0x0010;
+        private static final int ACC_SUPER = 0x0020;
+        
+        private static final int CONSTANT_UTF8 = 1;
+        private static final int CONSTANT_CLASS = 7;
+        private static final int CONSTANT_FIELDREF = 9;
+        private static final int CONSTANT_METHODREF = 10;
+        private static final int CONSTANT_INTERFACE_METHODREF = 11;
+        private static final int CONSTANT_NAME_AND_TYPE = 12;
+        
+        private static final int ALOAD_0 = 0x2a;
+        private static final int ALOAD_1 = 0x2b;
+        private static final int ALOAD_2 = 0x2c;
+        private static final int ILOAD_3 = 0x1d;
+        private static final int ICONST_0 = 0x03;
+        private static final int ICONST_1 = 0x04;
+        private static final int BIPUSH = 0x10;
+        private static final int SIPUSH = 0x11;
+        private static final int LDC_W = 0x13;
+        private static final int AALOAD = 0x32;
+        private static final int ASTORE_2 = 0x4d;
+        private static final int LCMP = 0x94;
+        private static final int IFEQ = 0x99;
+        private static final int IFNE = 0x9a;
+        private static final int IF_ICMPNE = 0xa0;
+        private static final int IF_ACMPNE = 0xa6;
+        private static final int IRETURN = 0xac;
+        private static final int LRETURN = 0xad;
+        private static final int FRETURN = 0xae;
+        private static final int DRETURN = 0xaf;
+        private static final int ARETURN = 0xb0;
+        private static final int RETURN = 0xb1;
+        private static final int GETFIELD = 0xb4;
+        private static final int PUTFIELD = 0xb5;
+        private static final int INVOKEVIRTUAL = 0xb6;
+        private static final int INVOKESPECIAL = 0xb7;
+        private static final int INVOKESTATIC = 0xb8;
+        private static final int INVOKEINTERFACE = 0xb9;
+        private static final int CHECKCAST = 0xc0;
+        private static final int INSTANCEOF = 0xc1;
+        
+        private final ByteArrayOutputStream pool;
+        private final DataOutputStream poolOut;
+        private final Map<String, Integer> constants;
+        private int poolSize;
+        
+        private final ByteArrayOutputStream body;
+        private final DataOutputStream out;
+        
+        private final String className;
+        private final Class<?> type;
+        private final Method[] methods;
+        
+        ClassWriter(String name, Class<?> type, Method[] methods) {
+            this.pool = new ByteArrayOutputStream();
+            this.poolOut = new DataOutputStream(pool);
+            this.constants = new HashMap<String, Integer>();
+            this.poolSize = 1;
+            this.body = new ByteArrayOutputStream();
+            this.out = new DataOutputStream(body);
+            this.className = name.replace('.', '/');
+            this.type = type;
+            this.methods = methods;
+        }
+        
+        byte[] toByteArray() throws IOException {
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(classRef(className));
+            out.writeShort(classRef("java/lang/Object"));
+            out.writeShort(1);
+            out.writeShort(classRef(internalName(type)));
+            
+            out.writeShort(methods.length + 2);
+            for (int i = 0; i < methods.length; i++) {
+                writeField("v" + i, descriptor(methods[i].getReturnType()));
+            }
+            writeField("handler", "Ljava/lang/Object;");
+            writeField("hash", "I");
+            
+            out.writeShort(methods.length + 5);
+            writeConstructor();
+            for (int i = 0; i < methods.length; i++) {
+                writeAccessor(i);
+            }
+            writeAnnotationType();
+            writeHashCode();
+            writeEquals();
+            writeToString();
+            out.writeShort(0);
+            out.flush();
+            poolOut.flush();
+            
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream dos = new DataOutputStream(bytes);
+            dos.writeInt(0xcafebabe);
+            dos.writeShort(0);
+            dos.writeShort(VERSION);
+            dos.writeShort(poolSize);
+            pool.writeTo(dos);
+            body.writeTo(dos);
+            dos.flush();
+            return bytes.toByteArray();
+        }
+        
+        private void writeField(String name, String descriptor) 
+                throws IOException {
+            out.writeShort(ACC_PRIVATE | ACC_FINAL);
+            out.writeShort(utf8(name));
+            out.writeShort(utf8(descriptor));
+            out.writeShort(0);
+        }
+        
+        private void writeConstructor() throws IOException {
+            ByteArrayOutputStream b = new ByteArrayOutputStream();
+            DataOutputStream code = new DataOutputStream(b);
+            code.writeByte(ALOAD_0);
+            code.writeByte(INVOKESPECIAL);
+            code.writeShort(methodRef("java/lang/Object", "<init>", "()V"));
+            for (int i = 0; i < methods.length; i++) {
+                Class<?> cls = methods[i].getReturnType();
+                code.writeByte(ALOAD_0);
+                code.writeByte(ALOAD_1);
+                if (i <= 5) {
+                    code.writeByte(ICONST_0 + i);
+                } else if (i <= Byte.MAX_VALUE) {
+                    code.writeByte(BIPUSH);
+                    code.writeByte(i);
+                } else {
+                    code.writeByte(SIPUSH);
+                    code.writeShort(i);
+                }
+                code.writeByte(AALOAD);
+                if (cls.isPrimitive()) {
+                    String wrapper = internalName(getWrapperType(cls));
+                    code.writeByte(CHECKCAST);
+                    code.writeShort(classRef(wrapper));
+                    code.writeByte(INVOKEVIRTUAL);
+                    code.writeShort(methodRef(wrapper, cls.getName() + "Value",
+                            "()" + descriptor(cls)));
+                } else if (!Object.class.equals(cls)) {
+                    code.writeByte(CHECKCAST);
+                    code.writeShort(classRef(cls.isArray() ? descriptor(cls) : 
+                            internalName(cls)));
+                }
+                code.writeByte(PUTFIELD);
+                code.writeShort(fieldRef("v" + i, descriptor(cls)));
+            }
+            code.writeByte(ALOAD_0);
+            code.writeByte(ALOAD_2);
+            code.writeByte(PUTFIELD);
+            code.writeShort(fieldRef("handler", "Ljava/lang/Object;"));
+            code.writeByte(ALOAD_0);
+            code.writeByte(ILOAD_3);
+            code.writeByte(PUTFIELD);
+            code.writeShort(fieldRef("hash", "I"));
+            code.writeByte(RETURN);
+            code.flush();
+            // Long and double values take two stack slots.
+            writeMethod(ACC_PUBLIC, "<init>", CONSTRUCTOR_DESCRIPTOR, 3, 4, 
+                    b.toByteArray());
+        }
+        
+        private void writeAccessor(int i) throws IOException {
+            Method method = methods[i];
+            Class<?> cls = method.getReturnType();
+            ByteArrayOutputStream b = new ByteArrayOutputStream();
+            DataOutputStream code = new DataOutputStream(b);
+            code.writeByte(ALOAD_0);
+            code.writeByte(GETFIELD);
+            code.writeShort(fieldRef("v" + i, descriptor(cls)));
+            code.writeByte(getReturnInstruction(cls));
+            code.flush();
+            writeMethod(ACC_PUBLIC, method.getName(), "()" + descriptor(cls), 
+                    2, 1, b.toByteArray());
+        }
+        
+        private void writeAnnotationType() throws IOException {
+            ByteArrayOutputStream b = new ByteArrayOutputStream();
+            DataOutputStream code = new DataOutputStream(b);
+            code.writeByte(LDC_W);
+            code.writeShort(classRef(internalName(type)));
+            code.writeByte(ARETURN);
+            code.flush();
+            writeMethod(ACC_PUBLIC, "annotationType", "()Ljava/lang/Class;", 
+                    1, 1, b.toByteArray());
+        }
+        
+        private void writeHashCode() throws IOException {
+            ByteArrayOutputStream b = new ByteArrayOutputStream();
+            DataOutputStream code = new DataOutputStream(b);
+            code.writeByte(ALOAD_0);
+            code.writeByte(GETFIELD);
+            code.writeShort(fieldRef("hash", "I"));
+            code.writeByte(IRETURN);
+            code.flush();
+            writeMethod(ACC_PUBLIC, "hashCode", "()I", 1, 1, b.toByteArray());
+        }
+        
+        /**
+         * Writes an {@code equals} method that checks for identity first, and
+         * then compares each field with the corresponding member of the 
+         * other annotation. Floating point values are compared by their bit
+         * patterns, arrays by {@code Arrays.equals}.
+         */
+        private void writeEquals() throws IOException {
+            ByteArrayOutputStream b = new ByteArrayOutputStream();
+            DataOutputStream code = new DataOutputStream(b);
+            // Positions of the branch instructions that jump to return false.
+            List<Integer> branches = new ArrayList<Integer>();
+            String typeName = internalName(type);
+            code.writeByte(ALOAD_0);
+            code.writeByte(ALOAD_1);
+            code.writeByte(IF_ACMPNE);
+            code.writeShort(5);
+            code.writeByte(ICONST_1);
+            code.writeByte(IRETURN);
+            code.writeByte(ALOAD_1);
+            code.writeByte(INSTANCEOF);
+            code.writeShort(classRef(typeName));
+            branches.add(code.size());
+            code.writeByte(IFEQ);
+            code.writeShort(0);
+            code.writeByte(ALOAD_1);
+            code.writeByte(CHECKCAST);
+            code.writeShort(classRef(typeName));
+            code.writeByte(ASTORE_2);
+            for (int i = 0; i < methods.length; i++) {
+                Method method = methods[i];
+                Class<?> cls = method.getReturnType();
+                String desc = descriptor(cls);
+                code.writeByte(ALOAD_0);
+                code.writeByte(GETFIELD);
+                code.writeShort(fieldRef("v" + i, desc));
+                writeBits(code, cls);
+                code.writeByte(ALOAD_2);
+                code.writeByte(INVOKEINTERFACE);
+                code.writeShort(memberRef(CONSTANT_INTERFACE_METHODREF, 
+                        typeName, method.getName(), "()" + desc));
+                code.writeByte(1);
+                code.writeByte(0);
+                writeBits(code, cls);
+                if (cls.isArray()) {
+                    String arg = cls.getComponentType().isPrimitive() ? 
+                            desc : "[Ljava/lang/Object;";
+                    code.writeByte(INVOKESTATIC);
+                    code.writeShort(methodRef("java/util/Arrays", "equals", 
+                            "(" + arg + arg + ")Z"));
+                    branches.add(code.size());
+                    code.writeByte(IFEQ);
+                } else if (!cls.isPrimitive()) {
+                    code.writeByte(INVOKEVIRTUAL);
+                    code.writeShort(methodRef("java/lang/Object", "equals", 
+                            "(Ljava/lang/Object;)Z"));
+                    branches.add(code.size());
+                    code.writeByte(IFEQ);
+                } else if (Long.TYPE.equals(cls) || Double.TYPE.equals(cls)) {
+                    code.writeByte(LCMP);
+                    branches.add(code.size());
+                    code.writeByte(IFNE);
+                } else {
+                    branches.add(code.size());
+                    code.writeByte(IF_ICMPNE);
+                }
+                code.writeShort(0);
+            }
+            code.writeByte(ICONST_1);
+            code.writeByte(IRETURN);
+            int target = code.size();
+            code.writeByte(ICONST_0);
+            code.writeByte(IRETURN);
+            code.flush();
+            byte[] bytes = b.toByteArray();
+            for (int branch : branches) {
+                int offset = target - branch;
+                if (offset > Short.MAX_VALUE) {
+                    throw new IOException("Method too large.");
+                }
+                bytes[branch + 1] = (byte) (offset >> 8);
+                bytes[branch + 2] = (byte) offset;
+            }
+            // Long and double values take two stack slots.
+            writeMethod(ACC_PUBLIC, "equals", "(Ljava/lang/Object;)Z", 4, 3,
+                    bytes);
+        }
+        
+        /**
+         * Replaces a float or double value on the stack by its bit pattern.
+         */
+        private void writeBits(DataOutputStream code, Class<?> cls) 
+                throws IOException {
+            if (Float.TYPE.equals(cls)) {
+                code.writeByte(INVOKESTATIC);
+                code.writeShort(methodRef("java/lang/Float", "floatToIntBits",
+                        "(F)I"));
+            } else if (Double.TYPE.equals(cls)) {
+                code.writeByte(INVOKESTATIC);
+                code.writeShort(methodRef("java/lang/Double", 
+                        "doubleToLongBits", "(D)J"));
+            }
+        }
+        
+        private void writeToString() throws IOException {
+            ByteArrayOutputStream b = new ByteArrayOutputStream();
+            DataOutputStream code = new DataOutputStream(b);
+            code.writeByte(ALOAD_0);
+            code.writeByte(GETFIELD);
+            code.writeShort(fieldRef("handler", "Ljava/lang/Object;"));
+            code.writeByte(INVOKEVIRTUAL);
+            code.writeShort(methodRef("java/lang/Object", "toString", 
+                    "()Ljava/lang/String;"));
+            code.writeByte(ARETURN);
+            code.flush();
+            writeMethod(ACC_PUBLIC, "toString", "()Ljava/lang/String;", 1, 1,
+                    b.toByteArray());
+        }
+        
+        private void writeMethod(int access, String name, String descriptor,
+                int maxStack, int maxLocals, byte[] code) throws IOException {
+            out.writeShort(access);
+            out.writeShort(utf8(name));
+            out.writeShort(utf8(descriptor));
+            out.writeShort(1);
+            out.writeShort(utf8("Code"));
+            out.writeInt(12 + code.length);
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(code.length);
+            out.write(code);
+            out.writeShort(0);
+            out.writeShort(0);
+        }
+        
+        private int utf8(String value) throws IOException {
+            String key = "U" + value;
+            Integer index = constants.get(key);
+            if (index == null) {
+                poolOut.writeByte(CONSTANT_UTF8);
+                poolOut.writeUTF(value);
+                index = poolSize++;
+                constants.put(key, index);
+            }
+            return index;
+        }
+        
+        private int classRef(String internalName) throws IOException {
+            String key = "C" + internalName;
+            Integer index = constants.get(key);
+            if (index == null) {
+                int name = utf8(internalName);
+                poolOut.writeByte(CONSTANT_CLASS);
+                poolOut.writeShort(name);
+                index = poolSize++;
+                constants.put(key, index);
+            }
+            return index;
+        }
+        
+        private int nameAndType(String name, String descriptor) 
+                throws IOException {
+            String key = "N" + name + " " + descriptor;
+            Integer index = constants.get(key);
+            if (index == null) {
+                int n = utf8(name);
+                int d = utf8(descriptor);
+                poolOut.writeByte(CONSTANT_NAME_AND_TYPE);
+                poolOut.writeShort(n);
+                poolOut.writeShort(d);
+                index = poolSize++;
+                constants.put(key, index);
+            }
+            return index;
+        }
+        
+        private int fieldRef(String name, String descriptor) 
+                throws IOException {
+            return memberRef(CONSTANT_FIELDREF, className, name, descriptor);
+        }
+        
+        private int methodRef(String owner, String name, String descriptor) 
+                throws IOException {
+            return memberRef(CONSTANT_METHODREF, owner, name, descriptor);
+        }
+        
+        private int memberRef(int tag, String owner, String name, 
+                String descriptor) throws IOException {
+            String key = tag + owner + "." + name + " " + descriptor;
+            Integer index = constants.get(key);
+            if (index == null) {
+                int c = classRef(owner);
+                int nt = nameAndType(name, descriptor);
+                poolOut.writeByte(tag);
+                poolOut.writeShort(c);
+                poolOut.writeShort(nt);
+                index = poolSize++;
+                constants.put(key, index);
+            }
+            return index;
+        }
+        
+        private static String internalName(Class<?> cls) {
+            return cls.getName().replace('.', '/');
+        }
+        
+        private static String descriptor(Class<?> cls) {
+            if (cls.isArray()) {
+                return "[" + descriptor(cls.getComponentType());
+            } else if (Boolean.TYPE.equals(cls)) {
+                return "Z";
+            } else if (Byte.TYPE.equals(cls)) {
+                return "B";
+            } else if (Character.TYPE.equals(cls)) {
+                return "C";
+            } else if (Short.TYPE.equals(cls)) {
+                return "S";
+            } else if (Integer.TYPE.equals(cls)) {
+                return "I";
+            } else if (Long.TYPE.equals(cls)) {
+                return "J";
+            } else if (Float.TYPE.equals(cls)) {
+                return "F";
+            } else if (Double.TYPE.equals(cls)) {
+                return "D";
+            } else {
+                return "L" + internalName(cls) + ";";
+            }
+        }
+        
+        private static Class<?> getWrapperType(Class<?> cls) {
+            if (Boolean.TYPE.equals(cls)) {
+                return Boolean.class;
+            } else if (Byte.TYPE.equals(cls)) {
+                return Byte.class;
+            } else if (Character.TYPE.equals(cls)) {
+                return Character.class;
+            } else if (Short.TYPE.equals(cls)) {
+                return Short.class;
+            } else if (Integer.TYPE.equals(cls)) {
+                return Integer.class;
+            } else if (Long.TYPE.equals(cls)) {
+                return Long.class;
+            } else if (Float.TYPE.equals(cls)) {
+                return Float.class;
+            } else if (Double.TYPE.equals(cls)) {
+                return Double.class;
+            } else {
+                throw new AssertionError(cls);
+            }
+        }
+        
+        private static int getReturnInstruction(Class<?> cls) {
+            if (!cls.isPrimitive()) {
+                return ARETURN;
+            } else if (Long.TYPE.equals(cls)) {
+                return LRETURN;
+            } else if (Float.TYPE.equals(cls)) {
+                return FRETURN;
+            } else if (Double.TYPE.equals(cls)) {
+                return DRETURN;
+            } else {
+                return IRETURN;
+            }
+        }
+    }
+}
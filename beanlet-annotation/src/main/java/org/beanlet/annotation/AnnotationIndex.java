@@ -0,0 +1,288 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Beanlet - JSE Application Container.
+ * Copyright (C) 2006  Leon van Zantvoort
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ * 
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://beanlet.org
+ */
+package org.beanlet.annotation;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * <p>Reads the annotation index that is written into jar files by the 
+ * {@code beanlet-annotation-index} annotation processor. For each indexed 
+ * class, the index lists which kinds of members carry annotations, and the 
+ * names of the annotated fields and methods. Classes that are not indexed 
+ * are scanned reflectively.</p>
+ *
+ * <p>An entry is only used for a class that is loaded from the same code 
+ * source root as the index that lists it, and whose class file matches the
+ * CRC-32 recorded by the index. Otherwise the entry is considered stale, 
+ * for instance because it belongs to another copy of the class, or because
+ * the class has been recompiled without the processor, and the class is 
+ * scanned reflectively.</p>
+ *
+ * <p>The index format is shared with 
+ * {@code org.beanlet.annotation.index.AnnotationIndexProcessor}.</p>
+ *
+ * @author Leon van Zantvoort
+ */
+final class AnnotationIndex {
+    
+    static final String RESOURCE = "META-INF/beanlet/annotation.index";
+    static final int MAGIC = 0x42414958;
+    static final int VERSION = 2;
+    
+    static final long NO_CHECKSUM = -1L;
+    
+    static final int TYPE = 0x01;
+    static final int FIELD = 0x02;
+    static final int METHOD = 0x04;
+    static final int CONSTRUCTOR = 0x08;
+    
+    private static final Logger logger = Logger.getLogger(
+            AnnotationIndex.class.getName());
+    
+    // The index does not refer to its class loader.
+    private static final Map<ClassLoader, Map<String, Entry>> indexes = 
+            new WeakHashMap<ClassLoader, Map<String, Entry>>();
+    
+    /**
+     * Describes the annotated members of a single class.
+     */
+    static final class Entry {
+        
+        // URL of the code source root of the index, including its trailing
+        // separator.
+        private final String root;
+        private final int flags;
+        private final long checksum;
+        private final Set<String> fieldNames;
+        private final Set<String> methodNames;
+        
+        // Result of the class file check, null if not yet checked.
+        private volatile Boolean valid;
+        
+        Entry(String root, int flags, long checksum, Set<String> fieldNames, 
+                Set<String> methodNames) {
+            this.root = root;
+            this.flags = flags;
+            this.checksum = checksum;
+            this.fieldNames = fieldNames;
+            this.methodNames = methodNames;
+        }
+        
+        boolean isAnnotated(int kind) {
+            return (flags & kind) != 0;
+        }
+        
+        /**
+         * Returns the names of the fields that carry annotations.
+         */
+        Set<String> getFieldNames() {
+            return fieldNames;
+        }
+        
+        /**
+         * Returns the names of the methods that carry annotations, either 
+         * on the method itself or on one of its parameters.
+         */
+        Set<String> getMethodNames() {
+            return methodNames;
+        }
+    }
+    
+    /**
+     * Returns the index entry of the specified class, or {@code null} if the
+     * class is not indexed, or if the index cannot be trusted for this 
+     * class.
+     */
+    static Entry getEntry(Class<?> cls) {
+        ClassLoader loader = cls.getClassLoader();
+        if (loader == null) {
+            return null;
+        }
+        Map<String, Entry> index;
+        synchronized (indexes) {
+            index = indexes.get(loader);
+            if (index == null) {
+                index = load(loader);
+                indexes.put(loader, index);
+            }
+        }
+        Entry entry = index.get(cls.getName());
+        if (entry == null) {
+            return null;
+        }
+        Boolean valid = entry.valid;
+        if (valid == null) {
+            valid = isValid(entry, cls.getName(), loader);
+            entry.valid = valid;
+        }
+        return valid ? entry : null;
+    }
+    
+    /**
+     * Returns {@code true} if the class file of the specified class is 
+     * provided by the code source root of the index, and matches the 
+     * checksum of the entry.
+     */
+    private static boolean isValid(Entry entry, String className, 
+            ClassLoader loader) {
+        if (entry.checksum == NO_CHECKSUM) {
+            return false;
+        }
+        String path = className.replace('.', '/') + ".class";
+        URL url = loader.getResource(path);
+        if (url == null) {
+            return false;
+        }
+        String s = url.toExternalForm();
+        if (!s.endsWith(path) || !s.substring(0, s.length() - path.length()).
+                equals(entry.root)) {
+            logger.fine("Class " + className + " is not loaded from the " +
+                    "code source of its annotation index: " + entry.root + 
+                    ".");
+            return false;
+        }
+        try {
+            if (checksum(url) != entry.checksum) {
+                logger.fine("Class " + className + " has been changed " +
+                        "since its annotation index was written: " + 
+                        entry.root + ".");
+                return false;
+            }
+        } catch (IOException e) {
+            return false;
+        }
+        return true;
+    }
+    
+    private static long checksum(URL url) throws IOException {
+        URLConnection connection = url.openConnection();
+        connection.setUseCaches(false);
+        InputStream in = connection.getInputStream();
+        try {
+            CRC32 crc = new CRC32();
+            byte[] b = new byte[8192];
+            for (int n = in.read(b); n != -1; n = in.read(b)) {
+                crc.update(b, 0, n);
+            }
+            return crc.getValue();
+        } finally {
+            in.close();
+        }
+    }
+    
+    private static Map<String, Entry> load(ClassLoader loader) {
+        Map<String, Entry> index = new HashMap<String, Entry>();
+        try {
+            Enumeration<URL> urls = loader.getResources(RESOURCE);
+            while (urls.hasMoreElements()) {
+                URL url = urls.nextElement();
+                try {
+                    read(url, index);
+                } catch (IOException e) {
+                    // Classes of a broken index are scanned reflectively.
+                    logger.warning("Failed to read annotation index: " + 
+                            url + ". " + e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            logger.warning("Failed to look up annotation indexes. " + 
+                    e.getMessage());
+        }
+        return index.isEmpty() ? Collections.<String, Entry>emptyMap() : 
+                index;
+    }
+    
+    private static void read(URL url, Map<String, Entry> index) throws 
+            IOException {
+        String s = url.toExternalForm();
+        if (!s.endsWith(RESOURCE)) {
+            throw new IOException("Unknown code source.");
+        }
+        String root = s.substring(0, s.length() - RESOURCE.length());
+        URLConnection connection = url.openConnection();
+        connection.setUseCaches(false);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                connection.getInputStream()));
+        try {
+            if (in.readInt() != MAGIC || in.readUnsignedShort() != VERSION) {
+                throw new IOException("Unsupported format.");
+            }
+            Map<String, Entry> tmp = new HashMap<String, Entry>();
+            for (int i = in.readInt(); i > 0; i--) {
+                String className = in.readUTF();
+                int flags = in.readByte();
+                long checksum = in.readLong();
+                Set<String> fieldNames = readNames(in);
+                Set<String> methodNames = readNames(in);
+                tmp.put(className, new Entry(root, flags, checksum, 
+                        fieldNames, methodNames));
+            }
+            // The first index that lists a class wins.
+            for (Map.Entry<String, Entry> e : tmp.entrySet()) {
+                if (!index.containsKey(e.getKey())) {
+                    index.put(e.getKey(), e.getValue());
+                }
+            }
+        } finally {
+            in.close();
+        }
+    }
+    
+    private static Set<String> readNames(DataInputStream in) throws 
+            IOException {
+        int count = in.readUnsignedShort();
+        if (count == 0) {
+            return Collections.emptySet();
+        }
+        Set<String> names = new HashSet<String>();
+        for (int i = 0; i < count; i++) {
+            names.add(in.readUTF());
+        }
+        return Collections.unmodifiableSet(names);
+    }
+    
+    private AnnotationIndex() {
+    }
+}
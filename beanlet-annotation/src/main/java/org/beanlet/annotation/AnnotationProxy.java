@@ -44,10 +44,19 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
 /**
+ * <p>Creates annotation instances whose values are supplied by an 
+ * {@code AnnotationValueResolver}. By default, these instances are dynamic 
+ * proxies. If the {@code org.beanlet.annotation.generateClasses} system 
+ * property is set to {@code true}, fully initialized annotations are 
+ * instances of generated classes instead, which read their values from 
+ * plain fields.</p>
+ *
  * @author Leon van Zantvoort
  */
 public class AnnotationProxy<T extends Annotation> {
 
+    private static final boolean GENERATE_CLASSES;
+
     private static final Method HASH_CODE;
     private static final Method EQUALS;
     private static final Method TO_STRING;
@@ -63,6 +72,9 @@ public class AnnotationProxy<T extends Annotation> {
         } catch (NoSuchMethodException e) {
             throw new ExceptionInInitializerError(e);
         }
+        // PERMISSION: java.util.PropertyPermission "org.beanlet.annotation.generateClasses" "read"
+        GENERATE_CLASSES = Boolean.getBoolean(
+                "org.beanlet.annotation.generateClasses");
     }
     
     private final Class<T> annotationType;
@@ -72,6 +84,10 @@ public class AnnotationProxy<T extends Annotation> {
     
     private boolean initialized;
     
+    // The values are immutable once initialized.
+    private volatile int hashCode;
+    private volatile boolean hashed;
+    
     public static <T extends Annotation> T newProxyInstance(Class<T> annotationType) {
         return newProxyInstance(annotationType, 
                 annotationType.getClassLoader(), null);
@@ -88,6 +104,12 @@ public class AnnotationProxy<T extends Annotation> {
             AnnotationValueResolver resolver, boolean init) {
         final AnnotationProxy<T> p = new AnnotationProxy<T>(annotationType, loader,
                 resolver);
+        if (init && GENERATE_CLASSES) {
+            T t = p.newInstance();
+            if (t != null) {
+                return t;
+            }
+        }
         InvocationHandler h = new InvocationHandler() {
             public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
                 return p.invoke(proxy, method, args);
@@ -110,6 +132,27 @@ public class AnnotationProxy<T extends Annotation> {
         this.data = new ConcurrentHashMap<Method, Object>();
     }
 
+    /**
+     * Returns a fully initialized instance of the generated class for this 
+     * annotation type, or {@code null} if no class can be generated.
+     */
+    private T newInstance() {
+        AnnotationClassGenerator generator = 
+                AnnotationClassGenerator.getInstance(annotationType);
+        if (generator == null) {
+            return null;
+        }
+        init();
+        Method[] methods = generator.getMethods();
+        Object[] values = new Object[methods.length];
+        for (int i = 0; i < methods.length; i++) {
+            values[i] = data.get(methods[i]);
+            assert values[i] != null : methods[i];
+        }
+        return generator.newInstance(annotationType, values, this, 
+                hashCode());
+    }
+    
     private synchronized void init() {
         if (!initialized) {
             Method[] methods = annotationType.getDeclaredMethods();
@@ -199,6 +242,14 @@ public class AnnotationProxy<T extends Annotation> {
     }
     
     public int hashCode() {
+        if (!hashed) {
+            hashCode = computeHashCode();
+            hashed = true;
+        }
+        return hashCode;
+    }
+    
+    private int computeHashCode() {
         init();
         int hashCode = 0;
         for (Map.Entry<Method, Object> entry : data.entrySet()) {
@@ -281,8 +332,7 @@ public class AnnotationProxy<T extends Annotation> {
                             if (!equals) {
                                 return false;
                             }
-                        }
-                        if (!v1.equals(v2)) {
+                        } else if (!v1.equals(v2)) {
                             return false;
                         }
                     } catch (InvocationTargetException e) {
@@ -296,6 +346,7 @@ public class AnnotationProxy<T extends Annotation> {
                     assert false : t;
                 }
             }
+            return true;
         }
         return false;
     }
@@ -35,6 +35,7 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -61,12 +62,17 @@ class ClassAnnotationDomainImpl extends AbstractAnnotationDomain {
             Class<?> tmp = cls;
             do {
                 if (dupes.add(tmp)) {
-                    ea.addAll(getTypeElementAnnotations(tmp));
-                    ea.addAll(getFieldElementAnnotations(tmp));
-                    ea.addAll(getMethodElementAnnotations(tmp));
-                    ea.addAll(getConstructorElementAnnotations(tmp));
-                    ea.addAll(getParameterElementAnnotations(tmp));
-                    ea.addAll(getAnnotationTypeElementAnnotations(tmp));
+                    AnnotationIndex.Entry entry = AnnotationIndex.getEntry(tmp);
+                    if (entry == null) {
+                        ea.addAll(getTypeElementAnnotations(tmp));
+                        ea.addAll(getFieldElementAnnotations(tmp));
+                        ea.addAll(getMethodElementAnnotations(tmp));
+                        ea.addAll(getConstructorElementAnnotations(tmp));
+                        ea.addAll(getParameterElementAnnotations(tmp));
+                        ea.addAll(getAnnotationTypeElementAnnotations(tmp));
+                    } else {
+                        ea.addAll(getIndexedElementAnnotations(tmp, entry));
+                    }
 
                     Package pkg = cls.getPackage();
                     if (packages.add(pkg)) {
@@ -78,6 +84,42 @@ class ClassAnnotationDomainImpl extends AbstractAnnotationDomain {
         return ea;
     }
     
+    /**
+     * Returns the same element annotations as the reflective scan, but only
+     * inspects the members that are listed by the specified index 
+     * {@code entry}.
+     */
+    static List<ElementAnnotation> getIndexedElementAnnotations(Class<?> cls,
+            AnnotationIndex.Entry entry) {
+        List<ElementAnnotation> ea = new ArrayList<ElementAnnotation>();
+        boolean type = entry.isAnnotated(AnnotationIndex.TYPE);
+        boolean constructor = entry.isAnnotated(AnnotationIndex.CONSTRUCTOR);
+        Set<String> fieldNames = entry.isAnnotated(AnnotationIndex.FIELD) ?
+            entry.getFieldNames() : Collections.<String>emptySet();
+        Set<String> methodNames = entry.isAnnotated(AnnotationIndex.METHOD) ?
+            entry.getMethodNames() : Collections.<String>emptySet();
+        if (type) {
+            ea.addAll(getTypeElementAnnotations(cls));
+        }
+        if (!fieldNames.isEmpty()) {
+            ea.addAll(getFieldElementAnnotations(cls, fieldNames));
+        }
+        if (!methodNames.isEmpty()) {
+            ea.addAll(getMethodElementAnnotations(cls, methodNames));
+        }
+        if (constructor) {
+            ea.addAll(getConstructorElementAnnotations(cls));
+        }
+        if (constructor || !methodNames.isEmpty()) {
+            ea.addAll(getParameterElementAnnotations(cls, constructor, 
+                    methodNames));
+        }
+        if (type) {
+            ea.addAll(getAnnotationTypeElementAnnotations(cls));
+        }
+        return ea;
+    }
+    
     static List<ElementAnnotation<TypeElement, Annotation>> getTypeElementAnnotations(Class<?> cls) {
         List<ElementAnnotation<TypeElement, Annotation>> ea = 
                 new ArrayList<ElementAnnotation<TypeElement, Annotation>>();
@@ -90,9 +132,21 @@ class ClassAnnotationDomainImpl extends AbstractAnnotationDomain {
     }
 
     static List<ElementAnnotation<FieldElement, Annotation>> getFieldElementAnnotations(Class<?> cls) {
+        return getFieldElementAnnotations(cls, null);
+    }
+    
+    /**
+     * Only fields with the specified {@code names} are inspected, or all 
+     * fields if {@code names} is {@code null}.
+     */
+    static List<ElementAnnotation<FieldElement, Annotation>> getFieldElementAnnotations(
+            Class<?> cls, Set<String> names) {
         List<ElementAnnotation<FieldElement, Annotation>> ea = 
                 new ArrayList<ElementAnnotation<FieldElement, Annotation>>();
         for (Field field : cls.getDeclaredFields()) {
+            if (names != null && !names.contains(field.getName())) {
+                continue;
+            }
             for (Annotation annotation : field.getDeclaredAnnotations()) {
                 ea.add(FieldElement.instance(field).getElementAnnotation(annotation));
             }
@@ -101,9 +155,21 @@ class ClassAnnotationDomainImpl extends AbstractAnnotationDomain {
     }
 
     static List<ElementAnnotation<MethodElement, Annotation>> getMethodElementAnnotations(Class<?> cls) {
+        return getMethodElementAnnotations(cls, null);
+    }
+    
+    /**
+     * Only methods with the specified {@code names} are inspected, or all 
+     * methods if {@code names} is {@code null}.
+     */
+    static List<ElementAnnotation<MethodElement, Annotation>> getMethodElementAnnotations(
+            Class<?> cls, Set<String> names) {
         List<ElementAnnotation<MethodElement, Annotation>> ea = 
                 new ArrayList<ElementAnnotation<MethodElement, Annotation>>();
         for (Method method: cls.getDeclaredMethods()) {
+            if (names != null && !names.contains(method.getName())) {
+                continue;
+            }
             for (Annotation annotation : method.getDeclaredAnnotations()) {
                 ea.add(MethodElement.instance(method).getElementAnnotation(annotation));
             }
@@ -123,9 +189,21 @@ class ClassAnnotationDomainImpl extends AbstractAnnotationDomain {
     }
 
     static List<ElementAnnotation<ParameterElement, Annotation>> getParameterElementAnnotations(Class<?> cls) {
+        return getParameterElementAnnotations(cls, true, null);
+    }
+    
+    /**
+     * Constructor parameters are only inspected if {@code constructors} is
+     * {@code true}. Only parameters of methods with the specified 
+     * {@code methodNames} are inspected, or of all methods if 
+     * {@code methodNames} is {@code null}.
+     */
+    static List<ElementAnnotation<ParameterElement, Annotation>> getParameterElementAnnotations(
+            Class<?> cls, boolean constructors, Set<String> methodNames) {
         List<ElementAnnotation<ParameterElement, Annotation>> ea = 
                 new ArrayList<ElementAnnotation<ParameterElement, Annotation>>();
-        for (Constructor constructor : cls.getDeclaredConstructors()) {
+        for (Constructor constructor : constructors ? 
+                cls.getDeclaredConstructors() : new Constructor[0]) {
             Annotation[][] annotations = constructor.getParameterAnnotations();
             for (int i = 0; i < annotations.length; i++) {
                 for (Annotation annotation : annotations[i]) {
@@ -139,6 +217,9 @@ class ClassAnnotationDomainImpl extends AbstractAnnotationDomain {
             }
         }
         for (Method method: cls.getDeclaredMethods()) {
+            if (methodNames != null && !methodNames.contains(method.getName())) {
+                continue;
+            }
             Annotation[][] annotations = method.getParameterAnnotations();
             for (int i = 0; i < annotations.length; i++) {
                 for (Annotation annotation : annotations[i]) {
@@ -0,0 +1,132 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Beanlet - JSE Application Container.
+ * Copyright (C) 2006  Leon van Zantvoort
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ * 
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://beanlet.org
+ */
+package org.beanlet.annotation;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Results per class, which do not prevent classes from being unloaded. 
+ * Lookups do not lock.
+ *
+ * @author Leon van Zantvoort
+ */
+final class ClassMemo {
+    
+    private static final ReferenceQueue<Class<?>> queue = 
+            new ReferenceQueue<Class<?>>();
+    
+    private final ConcurrentMap<Object, Boolean> map;
+    
+    ClassMemo() {
+        this.map = new ConcurrentHashMap<Object, Boolean>(4);
+    }
+    
+    /**
+     * Returns the result for the specified {@code cls}, or {@code null} if
+     * no result is known.
+     */
+    Boolean get(Class<?> cls) {
+        return map.get(new LookupKey(cls));
+    }
+    
+    void put(Class<?> cls, Boolean value) {
+        expunge();
+        map.put(new WeakKey(this, cls), value);
+    }
+    
+    /**
+     * Removes the entries of unloaded classes from all memos.
+     */
+    private static void expunge() {
+        WeakKey key;
+        while ((key = (WeakKey) queue.poll()) != null) {
+            key.memo.map.remove(key);
+        }
+    }
+    
+    private static Class<?> referent(Object obj) {
+        if (obj instanceof WeakKey) {
+            return ((WeakKey) obj).get();
+        }
+        if (obj instanceof LookupKey) {
+            return ((LookupKey) obj).cls;
+        }
+        return null;
+    }
+    
+    private static final class WeakKey extends WeakReference<Class<?>> {
+        
+        final ClassMemo memo;
+        private final int hash;
+        
+        WeakKey(ClassMemo memo, Class<?> cls) {
+            super(cls, queue);
+            this.memo = memo;
+            this.hash = System.identityHashCode(cls);
+        }
+        
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+        
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            Class<?> cls = get();
+            return cls != null && cls == referent(obj);
+        }
+    }
+    
+    private static final class LookupKey {
+        
+        final Class<?> cls;
+        
+        LookupKey(Class<?> cls) {
+            this.cls = cls;
+        }
+        
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(cls);
+        }
+        
+        @Override
+        public boolean equals(Object obj) {
+            return cls == referent(obj);
+        }
+    }
+}
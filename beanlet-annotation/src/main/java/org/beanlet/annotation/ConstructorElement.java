@@ -41,11 +41,22 @@ import java.lang.reflect.Member;
  */
 public final class ConstructorElement implements Element {
     
+    private static final ElementInterner<Constructor<?>, ConstructorElement> interner = 
+            new ElementInterner<Constructor<?>, ConstructorElement>();
+    
+    /**
+     * Returns the canonical element for the specified {@code constructor}.
+     */
     public static ConstructorElement instance(Constructor<?> constructor) {
-        return new ConstructorElement(constructor);
+        ConstructorElement e = interner.get(constructor);
+        if (e == null) {
+            e = interner.intern(constructor, new ConstructorElement(constructor));
+        }
+        return e;
     }
     
     private final Constructor<?> constructor;
+    private final int hash;
     
     /**
      * @throws NullPointerException
@@ -55,6 +66,7 @@ public final class ConstructorElement implements Element {
             throw new NullPointerException();
         }
         this.constructor = constructor;
+        this.hash = constructor.hashCode();
     }
 
     public boolean isElementOf(Class<?> cls) {
@@ -96,11 +108,14 @@ public final class ConstructorElement implements Element {
     
     @Override
     public int hashCode() {
-        return getConstructor().hashCode();
+        return hash;
     }
     
     @Override
     public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
         if (obj instanceof ConstructorElement) {
             return getConstructor().equals(((ConstructorElement) obj).getConstructor());
         }
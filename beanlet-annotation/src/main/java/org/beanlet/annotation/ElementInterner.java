@@ -0,0 +1,109 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Beanlet - JSE Application Container.
+ * Copyright (C) 2006  Leon van Zantvoort
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ * 
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://beanlet.org
+ */
+package org.beanlet.annotation;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps a canonical element per reflective object, for as long as the 
+ * element is in use. The element is not kept alive by this class, its key
+ * is released once the element has been collected. Lookups do not lock.
+ *
+ * @author Leon van Zantvoort
+ */
+final class ElementInterner<K, E extends Element> {
+    
+    private final ConcurrentMap<K, ElementReference<K, E>> map;
+    private final ReferenceQueue<E> queue;
+    
+    ElementInterner() {
+        this.map = new ConcurrentHashMap<K, ElementReference<K, E>>();
+        this.queue = new ReferenceQueue<E>();
+    }
+    
+    /**
+     * Returns the canonical element for the specified {@code key}, or 
+     * {@code null} if no such element exists.
+     */
+    E get(K key) {
+        ElementReference<K, E> ref = map.get(key);
+        return ref == null ? null : ref.get();
+    }
+    
+    /**
+     * Returns the canonical element for the specified {@code key}. The 
+     * specified {@code element} becomes the canonical element if no such 
+     * element exists yet.
+     */
+    E intern(K key, E element) {
+        expunge();
+        ElementReference<K, E> ref = 
+                new ElementReference<K, E>(key, element, queue);
+        while (true) {
+            ElementReference<K, E> tmp = map.putIfAbsent(key, ref);
+            if (tmp == null) {
+                return element;
+            }
+            E e = tmp.get();
+            if (e != null) {
+                return e;
+            }
+            // Replaces the stale entry, so that the key of the new entry is 
+            // the one referred to by the element.
+            map.remove(key, tmp);
+        }
+    }
+    
+    /**
+     * Removes the entries of collected elements.
+     */
+    @SuppressWarnings("unchecked")
+    private void expunge() {
+        ElementReference<K, E> ref;
+        while ((ref = (ElementReference<K, E>) queue.poll()) != null) {
+            map.remove(ref.key, ref);
+        }
+    }
+    
+    private static final class ElementReference<K, E> extends 
+            WeakReference<E> {
+        
+        final K key;
+        
+        ElementReference(K key, E element, ReferenceQueue<? super E> queue) {
+            super(element, queue);
+            this.key = key;
+        }
+    }
+}
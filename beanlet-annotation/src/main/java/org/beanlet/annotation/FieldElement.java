@@ -41,11 +41,24 @@ import java.lang.reflect.Member;
  */
 public final class FieldElement implements Element {
     
+    private static final ElementInterner<Field, FieldElement> interner = 
+            new ElementInterner<Field, FieldElement>();
+    
+    /**
+     * Returns the canonical element for the specified {@code field}.
+     */
     public static FieldElement instance(Field field) {
-        return new FieldElement(field);
+        FieldElement e = interner.get(field);
+        if (e == null) {
+            e = interner.intern(field, new FieldElement(field));
+        }
+        return e;
     }
     
     private final Field field;
+    private final int hash;
+    
+    private final ClassMemo hidden;
     
     /**
      * @throws NullPointerException
@@ -55,6 +68,8 @@ public final class FieldElement implements Element {
             throw new NullPointerException();
         }
         this.field = field;
+        this.hash = field.hashCode();
+        this.hidden = new ClassMemo();
     }
     
     public boolean isElementOf(Class<?> cls) {
@@ -76,13 +91,22 @@ public final class FieldElement implements Element {
      * (http://java.sun.com/docs/books/tutorial/java/IandI/hidevariables.html)
      */
     public boolean isHidden(Class<?> cls) {
+        Boolean b = hidden.get(cls);
+        if (b == null) {
+            b = isHidden(getField(), cls);
+            hidden.put(cls, b);
+        }
+        return b;
+    }
+    
+    private static boolean isHidden(Field field, Class<?> cls) {
         Class<?> type = cls;
         do {
-            if (getField().getDeclaringClass().equals(type)) {
+            if (field.getDeclaringClass().equals(type)) {
                 break;
             }
             try {
-                type.getDeclaredField(getField().getName());
+                type.getDeclaredField(field.getName());
                 return true;
             } catch (NoSuchFieldException e) {
                 continue;
@@ -114,11 +138,14 @@ public final class FieldElement implements Element {
     
     @Override
     public int hashCode() {
-        return getField().hashCode();
+        return hash;
     }
     
     @Override
     public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
         if (obj instanceof FieldElement) {
             return getField().equals(((FieldElement) obj).getField());
         }
@@ -42,11 +42,25 @@ import java.lang.reflect.Modifier;
  */
 public final class MethodElement implements Element {
     
+    private static final ElementInterner<Method, MethodElement> interner = 
+            new ElementInterner<Method, MethodElement>();
+    
+    /**
+     * Returns the canonical element for the specified {@code method}.
+     */
     public static MethodElement instance(Method method) {
-        return new MethodElement(method);
+        MethodElement e = interner.get(method);
+        if (e == null) {
+            e = interner.intern(method, new MethodElement(method));
+        }
+        return e;
     }
     
     private final Method method;
+    private final int hash;
+    
+    private final ClassMemo overridden;
+    private final ClassMemo hidden;
     
     /**
      * @throws NullPointerException
@@ -56,6 +70,9 @@ public final class MethodElement implements Element {
             throw new NullPointerException();
         }
         this.method = method;
+        this.hash = method.hashCode();
+        this.overridden = new ClassMemo();
+        this.hidden = new ClassMemo();
     }
     
     public boolean isElementOf(Class<?> cls) {
@@ -67,7 +84,12 @@ public final class MethodElement implements Element {
     }
 
     public boolean isOverridden(Class<?> cls) {
-        return isOverridden(getMethod(), cls);
+        Boolean b = overridden.get(cls);
+        if (b == null) {
+            b = isOverridden(getMethod(), cls);
+            overridden.put(cls, b);
+        }
+        return b;
     }
 
     /**
@@ -77,7 +99,12 @@ public final class MethodElement implements Element {
      * (http://java.sun.com/docs/books/tutorial/java/IandI/override.html)
      */
     public boolean isHidden(Class<?> cls) {
-        return isHidden(getMethod(), cls);
+        Boolean b = hidden.get(cls);
+        if (b == null) {
+            b = isHidden(getMethod(), cls);
+            hidden.put(cls, b);
+        }
+        return b;
     }
 
     public <T extends Annotation> ElementAnnotation<MethodElement, T> 
@@ -103,11 +130,14 @@ public final class MethodElement implements Element {
     
     @Override
     public int hashCode() {
-        return getMethod().hashCode();
+        return hash;
     }
     
     @Override
     public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
         if (obj instanceof MethodElement) {
             return getMethod().equals(((MethodElement) obj).getMethod());
         }
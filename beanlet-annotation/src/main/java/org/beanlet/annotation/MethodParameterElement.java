@@ -71,11 +71,11 @@ public final class MethodParameterElement extends ParameterElement {
     }
     
     public boolean isOverridden(Class<?> cls) {
-        return MethodElement.isOverridden(getMethod(), cls);
+        return MethodElement.instance(getMethod()).isOverridden(cls);
     }
     
     public boolean isHidden(Class<?> cls) {
-        return MethodElement.isHidden(getMethod(), cls);
+        return MethodElement.instance(getMethod()).isHidden(cls);
     }
 
     public <T extends Annotation> ElementAnnotation<MethodParameterElement, T> 
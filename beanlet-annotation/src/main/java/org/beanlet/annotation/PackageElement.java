@@ -40,11 +40,22 @@ import java.lang.reflect.Member;
  */
 public final class PackageElement implements Element {
     
+    private static final ElementInterner<Package, PackageElement> interner = 
+            new ElementInterner<Package, PackageElement>();
+    
+    /**
+     * Returns the canonical element for the specified {@code pkg}.
+     */
     public static PackageElement instance(Package pkg) {
-        return new PackageElement(pkg);
+        PackageElement e = interner.get(pkg);
+        if (e == null) {
+            e = interner.intern(pkg, new PackageElement(pkg));
+        }
+        return e;
     }
     
     private final Package pkg;
+    private final int hash;
     
     /**
      * @throws NullPointerException
@@ -54,6 +65,7 @@ public final class PackageElement implements Element {
             throw new NullPointerException();
         }
         this.pkg = pkg;
+        this.hash = pkg.hashCode();
     }
     
     public boolean isElementOf(Class<?> cls) {
@@ -95,11 +107,14 @@ public final class PackageElement implements Element {
     
     @Override
     public int hashCode() {
-        return getPackage().hashCode();
+        return hash;
     }
     
     @Override
     public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
         if (obj instanceof PackageElement) {
             return getPackage().equals(((PackageElement) obj).getPackage());
         }
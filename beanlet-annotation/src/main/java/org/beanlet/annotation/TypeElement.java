@@ -40,11 +40,22 @@ import java.lang.reflect.Member;
  */
 public final class TypeElement implements Element {
     
+    private static final ElementInterner<Class<?>, TypeElement> interner = 
+            new ElementInterner<Class<?>, TypeElement>();
+    
+    /**
+     * Returns the canonical element for the specified {@code type}.
+     */
     public static TypeElement instance(Class<?> type) {
-        return new TypeElement(type);
+        TypeElement e = interner.get(type);
+        if (e == null) {
+            e = interner.intern(type, new TypeElement(type));
+        }
+        return e;
     }
     
     private final Class<?> type;
+    private final int hash;
     
     /**
      * @throws NullPointerException
@@ -54,6 +65,7 @@ public final class TypeElement implements Element {
             throw new NullPointerException();
         }
         this.type = type;
+        this.hash = type.hashCode();
     }
 
     public boolean isElementOf(Class<?> cls) {
@@ -95,11 +107,14 @@ public final class TypeElement implements Element {
     
     @Override
     public int hashCode() {
-        return getType().hashCode();
+        return hash;
     }
     
     @Override
     public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
         if (obj instanceof TypeElement) {
             return getType().equals(((TypeElement) obj).getType());
         }
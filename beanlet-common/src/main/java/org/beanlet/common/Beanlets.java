@@ -39,6 +39,7 @@ import org.beanlet.Retention;
 import org.beanlet.Stateful;
 import org.beanlet.Stateless;
 import org.beanlet.Lazy;
+import org.beanlet.Pool;
 import org.beanlet.Singleton;
 import org.beanlet.Proxy;
 import org.beanlet.ScopeAnnotation;
@@ -102,6 +103,7 @@ public final class Beanlets {
     private final Stateful statefulAnnotation;
     private final Stateless statelessAnnotation;
     private final Singleton singletonAnnotation;
+    private final Pool poolAnnotation;
     private final Lazy lazyAnnotation;
     private final Lazy lazyPackageAnnotation;
     private final Retention retentionAnnotation;
@@ -113,6 +115,7 @@ public final class Beanlets {
         statefulAnnotation = null;
         statelessAnnotation = null;
         singletonAnnotation = null;
+        poolAnnotation = null;
         lazyAnnotation = null;
         lazyPackageAnnotation = null;
         retentionAnnotation = null;
@@ -132,6 +135,9 @@ public final class Beanlets {
         singletonAnnotation = configuration.getAnnotationDomain().getDeclaration(
                 Singleton.class).getAnnotation(
                 TypeElement.instance(configuration.getType()));
+        poolAnnotation = configuration.getAnnotationDomain().getDeclaration(
+                Pool.class).getAnnotation(
+                TypeElement.instance(configuration.getType()));
         lazyAnnotation = configuration.getAnnotationDomain().getDeclaration(
                 Lazy.class).getAnnotation(
                 TypeElement.instance(configuration.getType()));
@@ -197,6 +203,10 @@ public final class Beanlets {
         return singletonAnnotation;
     }
     
+    public Pool getPool() {
+        return poolAnnotation;
+    }
+    
     public boolean isLazy() {
         return getLazy() != null && getLazy().value();
     }
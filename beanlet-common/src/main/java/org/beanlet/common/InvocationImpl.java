@@ -30,13 +30,10 @@
  */
 package org.beanlet.common;
 
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
-import java.util.ArrayList;
-import java.util.List;
 import org.jargo.Invocation;
 
 /**
@@ -48,10 +45,11 @@ public class InvocationImpl implements Invocation {
     private static final Object[] EMPTY_ARRAY = new Object[0];
     
     private final Method method;
+    private MethodInvoker invoker;
     private Object[] args;
     
     public InvocationImpl() {
-        this(null);
+        this((Method) null);
     }
     
     public InvocationImpl(Method method, Object... args) {
@@ -59,6 +57,16 @@ public class InvocationImpl implements Invocation {
         this.args = args == null ? EMPTY_ARRAY : args;
     }
     
+    /**
+     * Creates an invocation for an invoker that has been compiled in advance,
+     * typically by the invocation factory.
+     */
+    public InvocationImpl(MethodInvoker invoker, Object... args) {
+        this.method = invoker.getMethod();
+        this.invoker = invoker;
+        this.args = args == null ? EMPTY_ARRAY : args;
+    }
+    
     public Method getMethod() {
         return method;
     }
@@ -72,45 +80,39 @@ public class InvocationImpl implements Invocation {
     }
     
     public Object invoke(Object instance) throws Exception {
-        return invoke(instance, getMethod(), getParameters());
+        Method m = getMethod();
+        if (m != method) {
+            return invoke(instance, m, getParameters());
+        }
+        // Benign race, invokers are immutable.
+        MethodInvoker i = invoker;
+        if (i == null) {
+            i = new MethodInvoker(method);
+            invoker = i;
+        }
+        return i.invoke(instance, getParameters());
     }
     
     public String toString() {
         return "Invocation{method=" + getMethod() + "}";
     }
 
+    /**
+     * Invokes the specified {@code method}. Prefer a {@code MethodInvoker} if
+     * the method is invoked more than once.
+     */
     public static Object invoke(Object instance, final Method method, 
             Object... parameters) throws Exception {
-        try {
-            if (!Modifier.isPublic(method.getModifiers())) {
-                AccessController.doPrivileged(new PrivilegedAction<Object>() {
-                    public Object run() {
-                        // PERMISSION: java.lang.reflect.ReflectPermission suppressAccessChecks
-                        method.setAccessible(true);
-                        return null;
-                    }
-                });
-            }
-            return method.invoke(instance, parameters);
-        } catch (IllegalArgumentException e) {
-            List<Class> classes = new ArrayList<Class>();
-            for (Object o : parameters) {
-                classes.add(o == null ? null : o.getClass());
-            }
-            throw new IllegalArgumentException(e.getMessage() + " " + 
-                    method.getName() + 
-                    (instance == null ? "" : " " + instance.getClass()) + 
-                    " " + classes);
-        } catch (InvocationTargetException e) {
-            try {
-                throw e.getTargetException();
-            } catch (Exception e2) {
-                throw e2;
-            } catch (Error e2) {
-                throw e2;
-            } catch (Throwable t) {
-                throw new AssertionError(t);
-            }
+        if (!method.isAccessible() && 
+                !Modifier.isPublic(method.getModifiers())) {
+            AccessController.doPrivileged(new PrivilegedAction<Object>() {
+                public Object run() {
+                    // PERMISSION: java.lang.reflect.ReflectPermission suppressAccessChecks
+                    method.setAccessible(true);
+                    return null;
+                }
+            });
         }
+        return MethodInvoker.invoke(instance, method, parameters);
     }
 }
@@ -0,0 +1,115 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Beanlet - JSE Application Container.
+ * Copyright (C) 2006  Leon van Zantvoort
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ * 
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://beanlet.org
+ */
+package org.beanlet.common;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>Invoker bound to a single method. Access checks are suppressed once, 
+ * when the invoker is created at configuration time, rather than on each 
+ * call. Invokers are meant to be created once per method and held by the 
+ * invocation factory or interceptor that uses them.</p>
+ *
+ * @author Leon van Zantvoort
+ */
+public final class MethodInvoker {
+    
+    private final Method method;
+    
+    public MethodInvoker(final Method method) {
+        this.method = method;
+        if (!method.isAccessible()) {
+            try {
+                AccessController.doPrivileged(new PrivilegedAction<Object>() {
+                    public Object run() {
+                        // PERMISSION: java.lang.reflect.ReflectPermission suppressAccessChecks
+                        method.setAccessible(true);
+                        return null;
+                    }
+                });
+            } catch (SecurityException e) {
+                if (!Modifier.isPublic(method.getModifiers())) {
+                    throw e;
+                }
+                // Public methods can still be invoked with access checks.
+            }
+        }
+    }
+    
+    public Method getMethod() {
+        return method;
+    }
+    
+    public Object invoke(Object instance, Object... parameters) throws 
+            Exception {
+        return invoke(instance, method, parameters);
+    }
+    
+    public String toString() {
+        return "MethodInvoker{method=" + method + "}";
+    }
+    
+    /**
+     * Invokes the specified {@code method}, which is expected to be 
+     * accessible already. Exceptions thrown by the method are rethrown as is.
+     */
+    static Object invoke(Object instance, Method method, Object[] parameters) 
+            throws Exception {
+        try {
+            return method.invoke(instance, parameters);
+        } catch (IllegalArgumentException e) {
+            List<Class> classes = new ArrayList<Class>();
+            for (Object o : parameters) {
+                classes.add(o == null ? null : o.getClass());
+            }
+            throw new IllegalArgumentException(e.getMessage() + " " + 
+                    method.getName() + 
+                    (instance == null ? "" : " " + instance.getClass()) + 
+                    " " + classes);
+        } catch (InvocationTargetException e) {
+            try {
+                throw e.getTargetException();
+            } catch (Exception e2) {
+                throw e2;
+            } catch (Error e2) {
+                throw e2;
+            } catch (Throwable t) {
+                throw new AssertionError(t);
+            }
+        }
+    }
+}
@@ -35,8 +35,11 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.ListIterator;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -47,11 +50,14 @@ import java.util.concurrent.locks.ReentrantLock;
 public final class NonReentrantObjectPool<T> implements ObjectPool<T> {
     private final int minSize;
     private final int maxSize;
+    private final int initialSize;
+    private final int maxIdle;
+    private final long idleTimeout;
     
     private final Lock lock;
     private final Condition condition;
     
-    private final Queue<T> instances;
+    private final LinkedList<Idle<T>> instances;
     private final ThreadLocal<Queue<T>> threadInstances;
     private final Set<T> discarded;
     
@@ -62,17 +68,36 @@ public final class NonReentrantObjectPool<T> implements ObjectPool<T> {
     private boolean destroyed;
     
     public NonReentrantObjectPool(int minSize, int maxSize) {
-        if (minSize < 0 || maxSize < 0) {
+        this(minSize, maxSize, minSize, 0, 0L);
+    }
+    
+    /**
+     * @param initialSize number of instances created by the init method.
+     * @param maxIdle maximum number of idle instances kept by the evict 
+     * method, {@code 0} for no limit.
+     * @param idleTimeout number of milliseconds after which idle instances are
+     * removed by the evict method, {@code 0} for no timeout.
+     */
+    public NonReentrantObjectPool(int minSize, int maxSize, int initialSize,
+            int maxIdle, long idleTimeout) {
+        if (minSize < 0 || maxSize < 0 || initialSize < 0 || maxIdle < 0 || 
+                idleTimeout < 0) {
             throw new IllegalArgumentException("< 0");
         }
         if (maxSize != 0 && minSize > maxSize) {
             throw new IllegalArgumentException("MinSize > maxSize.");
         }
+        if (maxSize != 0 && initialSize > maxSize) {
+            throw new IllegalArgumentException("InitialSize > maxSize.");
+        }
         this.minSize = minSize;
         this.maxSize = maxSize;
+        this.initialSize = initialSize;
+        this.maxIdle = maxIdle;
+        this.idleTimeout = idleTimeout;
         this.lock = new ReentrantLock(true);
         this.condition = lock.newCondition();
-        this.instances = new LinkedList<T>();
+        this.instances = new LinkedList<Idle<T>>();
         this.instanceCount = 0;
         this.useCount = 0;
         this.threadInstances = new ThreadLocal<Queue<T>>() {
@@ -87,8 +112,9 @@ public final class NonReentrantObjectPool<T> implements ObjectPool<T> {
         lock.lock();
         try {
             this.factory = factory;
-            while(instanceCount < minSize) {
-                instances.offer(factory.newInstance());
+            while(instanceCount < initialSize) {
+                instances.addFirst(new Idle<T>(factory.newInstance(), 
+                        currentTimeMillis()));
                 instanceCount++;
             }
         } finally {
@@ -98,12 +124,26 @@ public final class NonReentrantObjectPool<T> implements ObjectPool<T> {
     
     public T getInstance() throws
             InterruptedException {
+        try {
+            return getInstance(false, 0L);
+        } catch (TimeoutException e) {
+            throw new AssertionError(e);
+        }
+    }
+    
+    public T getInstance(long timeout, TimeUnit unit) throws 
+            InterruptedException, TimeoutException {
+        return getInstance(true, unit.toNanos(timeout));
+    }
+    
+    private T getInstance(boolean timed, long nanos) throws
+            InterruptedException, TimeoutException {
         final T instance;
         lock.lockInterruptibly();
-        if (factory == null) {
-            throw new IllegalStateException("Not initialized.");
-        }
         try {
+            if (factory == null) {
+                throw new IllegalStateException("Not initialized.");
+            }
             if (destroyed) {
                 instance = null;
             } else {
@@ -121,9 +161,20 @@ public final class NonReentrantObjectPool<T> implements ObjectPool<T> {
                             tmp = factory.newInstance();
                             instanceCount++;
                         } else {
-                            tmp = instances.poll();
-                            if (tmp == null) {
-                                condition.await();
+                            // Most recently used instances are reused first,
+                            // which leaves surplus instances idle.
+                            Idle<T> idle = instances.poll();
+                            if (idle == null) {
+                                if (!timed) {
+                                    condition.await();
+                                } else if (nanos > 0) {
+                                    nanos = condition.awaitNanos(nanos);
+                                } else {
+                                    throw new TimeoutException(
+                                            "Pool exhausted.");
+                                }
+                            } else {
+                                tmp = idle.instance;
                             }
                         }
                     } while (tmp == null && !destroyed);
@@ -155,7 +206,8 @@ public final class NonReentrantObjectPool<T> implements ObjectPool<T> {
                         removed = false;
                     }
                 } else {
-                    instances.offer(instance);
+                    instances.addFirst(new Idle<T>(instance, 
+                            currentTimeMillis()));
                     condition.signal();
                 }
             }
@@ -190,15 +242,52 @@ public final class NonReentrantObjectPool<T> implements ObjectPool<T> {
         }
     }
     
+    public List<T> evict() {
+        List<T> evicted = new ArrayList<T>();
+        lock.lock();
+        try {
+            if (!destroyed && (maxIdle > 0 || idleTimeout > 0)) {
+                long now = currentTimeMillis();
+                int surplus = maxIdle > 0 ? instances.size() - maxIdle : 0;
+                // Oldest idle instances are found at the end of the list.
+                for (ListIterator<Idle<T>> i = 
+                        instances.listIterator(instances.size());
+                        i.hasPrevious() && instanceCount > minSize;) {
+                    Idle<T> idle = i.previous();
+                    if (surplus <= 0 && (idleTimeout == 0 || 
+                            now - idle.since < idleTimeout)) {
+                        break;
+                    }
+                    i.remove();
+                    instanceCount--;
+                    surplus--;
+                    if (!discarded.contains(idle.instance)) {
+                        evicted.add(idle.instance);
+                    }
+                }
+                if (!evicted.isEmpty()) {
+                    condition.signalAll();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        return Collections.unmodifiableList(evicted);
+    }
+    
+    private long currentTimeMillis() {
+        return idleTimeout == 0 ? 0L : System.currentTimeMillis();
+    }
+    
     public List<T> destroy() {
         List<T> remaining = new ArrayList<T>();
         lock.lock();
         try {
             if (!destroyed) {
                 destroyed = true;
-                for (T instance : instances) {
-                    if (!discarded.contains(instance)) {
-                        boolean added = remaining.add(instance);
+                for (Idle<T> idle : instances) {
+                    if (!discarded.contains(idle.instance)) {
+                        boolean added = remaining.add(idle.instance);
                         assert added;
                     }
                 }
@@ -221,4 +310,14 @@ public final class NonReentrantObjectPool<T> implements ObjectPool<T> {
             lock.unlock();
         }
     }
+    
+    private static final class Idle<T> {
+        final T instance;
+        final long since;
+        
+        Idle(T instance, long since) {
+            this.instance = instance;
+            this.since = since;
+        }
+    }
 }
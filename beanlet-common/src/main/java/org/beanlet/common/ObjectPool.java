@@ -31,6 +31,8 @@
 package org.beanlet.common;
 
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * @author Leon van Zantvoort
@@ -41,6 +43,16 @@ public interface ObjectPool<T> {
     
     T getInstance() throws InterruptedException;
     
+    /**
+     * Same as {@link #getInstance()}, but waits at most the specified time for
+     * an instance to become available. A timeout of {@code 0} returns 
+     * immediately.
+     * 
+     * @throws TimeoutException if no instance became available in time.
+     */
+    T getInstance(long timeout, TimeUnit unit) throws InterruptedException,
+            TimeoutException;
+    
     /**
      * @return {@code true} if instance has been delivered to pool 
      * successfully, the instance will be returned by the destroy method.
@@ -55,6 +67,15 @@ public interface ObjectPool<T> {
      */
     boolean discardInstance(T instance);
     
+    /**
+     * Removes surplus idle instances from the pool, as specified by the pool's
+     * idle policy. 
+     * 
+     * @return instances that have been removed from the pool, these instances
+     * will not be returned by the destroy method.
+     */
+    List<T> evict();
+    
     List<T> destroy();
     
     /**
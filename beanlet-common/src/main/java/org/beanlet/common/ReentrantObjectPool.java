@@ -35,6 +35,7 @@ import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -113,6 +114,12 @@ public final class ReentrantObjectPool<T> implements ObjectPool<T> {
         return instance;
     }
     
+    public T getInstance(long timeout, TimeUnit unit) throws 
+            InterruptedException {
+        // Instances are shared, so this method never waits.
+        return getInstance();
+    }
+    
     public boolean freeInstance(T instance) {
         useCount--;
         // Nothing to be done.
@@ -133,6 +140,11 @@ public final class ReentrantObjectPool<T> implements ObjectPool<T> {
         }
     }
     
+    public List<T> evict() {
+        // Reentrant instances are never idle.
+        return Collections.emptyList();
+    }
+    
     public List<T> destroy() {
         List<T> remaining = new ArrayList<T>();
         lock.lock();
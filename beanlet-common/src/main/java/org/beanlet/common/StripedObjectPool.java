@@ -0,0 +1,508 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Beanlet - JSE Application Container.
+ * Copyright (C) 2006  Leon van Zantvoort
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ * 
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://beanlet.org
+ */
+package org.beanlet.common;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Non-reentrant object pool that keeps idle instances in a number of 
+ * lock-free stripes. Threads return instances to their own stripe and steal
+ * from other stripes if their own stripe is empty. Bounded pools only block
+ * if all {@code maxSize} instances are in use.
+ *
+ * @author Leon van Zantvoort
+ */
+public final class StripedObjectPool<T> implements ObjectPool<T> {
+    
+    private final int minSize;
+    private final int maxSize;
+    private final int initialSize;
+    private final int maxIdle;
+    private final long idleTimeout;
+    
+    private final Stripe<T>[] stripes;
+    private final int mask;
+    private final Semaphore permits;
+    
+    private final ThreadLocal<Holder<T>> threadInstances;
+    
+    private final AtomicInteger instanceCount;
+    private final AtomicInteger useCount;
+    private final AtomicInteger releasing;
+    private final AtomicBoolean evicting;
+    private final AtomicBoolean destroyed;
+    
+    private volatile ObjectPool.Factory<T> factory;
+    
+    public StripedObjectPool(int minSize, int maxSize) {
+        this(minSize, maxSize, minSize, 0, 0L);
+    }
+    
+    public StripedObjectPool(int minSize, int maxSize, int concurrency) {
+        this(minSize, maxSize, minSize, 0, 0L, concurrency);
+    }
+    
+    /**
+     * @param initialSize number of instances created by the init method.
+     * @param maxIdle maximum number of idle instances kept by the evict 
+     * method, {@code 0} for no limit.
+     * @param idleTimeout number of milliseconds after which idle instances are
+     * removed by the evict method, {@code 0} for no timeout.
+     */
+    public StripedObjectPool(int minSize, int maxSize, int initialSize,
+            int maxIdle, long idleTimeout) {
+        this(minSize, maxSize, initialSize, maxIdle, idleTimeout, 
+                Runtime.getRuntime().availableProcessors());
+    }
+    
+    public StripedObjectPool(int minSize, int maxSize, int initialSize,
+            int maxIdle, long idleTimeout, int concurrency) {
+        if (minSize < 0 || maxSize < 0 || initialSize < 0 || maxIdle < 0 || 
+                idleTimeout < 0) {
+            throw new IllegalArgumentException("< 0");
+        }
+        if (maxSize != 0 && minSize > maxSize) {
+            throw new IllegalArgumentException("MinSize > maxSize.");
+        }
+        if (maxSize != 0 && initialSize > maxSize) {
+            throw new IllegalArgumentException("InitialSize > maxSize.");
+        }
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency < 1.");
+        }
+        int size = 1;
+        while (size < concurrency) {
+            size <<= 1;
+        }
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.initialSize = initialSize;
+        this.maxIdle = maxIdle;
+        this.idleTimeout = idleTimeout;
+        @SuppressWarnings("unchecked")
+        Stripe<T>[] tmp = (Stripe<T>[]) new Stripe[size];
+        for (int i = 0; i < tmp.length; i++) {
+            tmp[i] = new Stripe<T>();
+        }
+        this.stripes = tmp;
+        this.mask = size - 1;
+        this.permits = maxSize == 0 ? null : new Semaphore(maxSize);
+        this.threadInstances = new ThreadLocal<Holder<T>>() {
+            protected Holder<T> initialValue() {
+                return new Holder<T>();
+            }
+        };
+        this.instanceCount = new AtomicInteger();
+        this.useCount = new AtomicInteger();
+        this.releasing = new AtomicInteger();
+        this.evicting = new AtomicBoolean();
+        this.destroyed = new AtomicBoolean();
+    }
+    
+    public void init(ObjectPool.Factory<T> factory) {
+        for (int i = instanceCount.get(); i < initialSize; i++) {
+            stripes[i & mask].push(factory.newInstance(), currentTimeMillis());
+            instanceCount.incrementAndGet();
+        }
+        this.factory = factory;
+    }
+    
+    public T getInstance() throws InterruptedException {
+        try {
+            return getInstance(false, 0L);
+        } catch (TimeoutException e) {
+            throw new AssertionError(e);
+        }
+    }
+    
+    public T getInstance(long timeout, TimeUnit unit) throws 
+            InterruptedException, TimeoutException {
+        return getInstance(true, unit.toNanos(timeout));
+    }
+    
+    private T getInstance(boolean timed, long nanos) throws 
+            InterruptedException, TimeoutException {
+        if (factory == null) {
+            throw new IllegalStateException("Not initialized.");
+        }
+        if (destroyed.get()) {
+            return null;
+        }
+        Holder<T> holder = threadInstances.get();
+        if (holder.depth > 0) {
+            if (holder.discarded) {
+                return null;
+            }
+            holder.depth++;
+            useCount.incrementAndGet();
+            return holder.instance;
+        }
+        if (permits != null) {
+            if (!timed) {
+                permits.acquire();
+            } else if (!permits.tryAcquire(nanos, TimeUnit.NANOSECONDS)) {
+                throw new TimeoutException("Pool exhausted.");
+            }
+            if (destroyed.get()) {
+                // Wake up the next waiting thread.
+                permits.release();
+                return null;
+            }
+        }
+        boolean acquired = false;
+        try {
+            T instance = acquire();
+            holder.instance = instance;
+            holder.depth = 1;
+            holder.discarded = false;
+            useCount.incrementAndGet();
+            acquired = true;
+            return instance;
+        } finally {
+            if (!acquired && permits != null) {
+                permits.release();
+            }
+        }
+    }
+    
+    private T acquire() {
+        int limit = maxSize == 0 ? Math.max(minSize, 1) : maxSize;
+        while (true) {
+            int count = instanceCount.get();
+            if (count < limit) {
+                if (instanceCount.compareAndSet(count, count + 1)) {
+                    return newInstance();
+                }
+                continue;
+            }
+            T instance = poll();
+            if (instance != null) {
+                return instance;
+            }
+            if (maxSize == 0) {
+                instanceCount.incrementAndGet();
+                return newInstance();
+            }
+            // A permit is held, so an idle instance is being pushed to, or
+            // has been pushed to a stripe that has already been polled, or
+            // is about to be accounted for by the evict method.
+            Thread.yield();
+        }
+    }
+    
+    private T newInstance() {
+        boolean created = false;
+        try {
+            T instance = factory.newInstance();
+            created = true;
+            return instance;
+        } finally {
+            if (!created) {
+                instanceCount.decrementAndGet();
+            }
+        }
+    }
+    
+    private T poll() {
+        int index = stripeIndex();
+        for (int i = 0; i < stripes.length; i++) {
+            T instance = stripes[(index + i) & mask].pop();
+            if (instance != null) {
+                return instance;
+            }
+        }
+        return null;
+    }
+    
+    private int stripeIndex() {
+        return (int) Thread.currentThread().getId() & mask;
+    }
+    
+    public boolean freeInstance(T instance) {
+        Holder<T> holder = threadInstances.get();
+        assert holder.depth > 0 && holder.instance == instance;
+        try {
+            if (--holder.depth > 0) {
+                return true;
+            }
+            boolean discarded = holder.discarded;
+            holder.instance = null;
+            holder.discarded = false;
+            if (discarded) {
+                // Permit has already been returned by discardInstance.
+                return true;
+            }
+            try {
+                releasing.incrementAndGet();
+                try {
+                    if (destroyed.get()) {
+                        return false;
+                    }
+                    stripes[stripeIndex()].push(instance, 
+                            currentTimeMillis());
+                    return true;
+                } finally {
+                    releasing.decrementAndGet();
+                }
+            } finally {
+                if (permits != null) {
+                    permits.release();
+                }
+            }
+        } finally {
+            useCount.decrementAndGet();
+        }
+    }
+    
+    public boolean discardInstance(T instance) {
+        Holder<T> holder = threadInstances.get();
+        assert holder.depth > 0 && holder.instance == instance;
+        try {
+            boolean removed = true;
+            if (!holder.discarded) {
+                holder.discarded = true;
+                if (!destroyed.get()) {
+                    instanceCount.decrementAndGet();
+                }
+                if (permits != null) {
+                    permits.release();
+                }
+            }
+            if (--holder.depth == 0) {
+                holder.instance = null;
+                holder.discarded = false;
+                if (destroyed.get()) {
+                    removed = false;
+                }
+            }
+            return removed;
+        } finally {
+            useCount.decrementAndGet();
+        }
+    }
+    
+    public List<T> evict() {
+        List<T> evicted = new ArrayList<T>();
+        if (maxIdle == 0 && idleTimeout == 0) {
+            return Collections.unmodifiableList(evicted);
+        }
+        if (!evicting.compareAndSet(false, true)) {
+            // Another thread is evicting already.
+            return Collections.unmodifiableList(evicted);
+        }
+        releasing.incrementAndGet();
+        try {
+            if (destroyed.get()) {
+                return Collections.unmodifiableList(evicted);
+            }
+            // Idle instances stay in their stripe. Nodes are claimed one by
+            // one, oldest first, so acquirers never find the pool empty
+            // because of eviction.
+            List<Node<T>> all = new ArrayList<Node<T>>();
+            for (Stripe<T> stripe : stripes) {
+                stripe.collect(all);
+            }
+            Collections.sort(all, new Comparator<Node<T>>() {
+                public int compare(Node<T> n1, Node<T> n2) {
+                    return n1.since < n2.since ? -1 : 
+                        (n1.since == n2.since ? 0 : 1);
+                }
+            });
+            long now = currentTimeMillis();
+            int surplus = maxIdle > 0 ? all.size() - maxIdle : 0;
+            for (Node<T> node : all) {
+                if (surplus <= 0 && (idleTimeout == 0 || 
+                        now - node.since < idleTimeout)) {
+                    break;
+                }
+                if (instanceCount.get() <= minSize) {
+                    break;
+                }
+                if (node.claim()) {
+                    instanceCount.decrementAndGet();
+                    evicted.add(node.item);
+                    surplus--;
+                }
+            }
+            if (!evicted.isEmpty()) {
+                for (Stripe<T> stripe : stripes) {
+                    stripe.unlinkClaimed();
+                }
+            }
+        } finally {
+            releasing.decrementAndGet();
+            evicting.set(false);
+        }
+        return Collections.unmodifiableList(evicted);
+    }
+    
+    private long currentTimeMillis() {
+        return idleTimeout == 0 ? 0L : System.currentTimeMillis();
+    }
+    
+    public List<T> destroy() {
+        List<T> remaining = new ArrayList<T>();
+        if (destroyed.compareAndSet(false, true)) {
+            // Wait for threads that are about to push an instance.
+            while (releasing.get() != 0) {
+                Thread.yield();
+            }
+            for (Stripe<T> stripe : stripes) {
+                stripe.drainTo(remaining);
+            }
+            instanceCount.set(0);
+            if (permits != null) {
+                // Waiting threads wake each other up.
+                permits.release();
+            }
+        }
+        return Collections.unmodifiableList(remaining);
+    }
+    
+    public boolean isDestroyed() {
+        return destroyed.get() && useCount.get() == 0;
+    }
+    
+    private static final class Holder<T> {
+        T instance;
+        int depth;
+        boolean discarded;
+    }
+    
+    private static final class Node<T> {
+        final T item;
+        final long since;
+        volatile Node<T> next;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        
+        Node(T item, long since) {
+            this.item = item;
+            this.since = since;
+        }
+        
+        /**
+         * Claims the node for either an acquirer or the evict method.
+         */
+        boolean claim() {
+            return !claimed.get() && claimed.compareAndSet(false, true);
+        }
+        
+        boolean isClaimed() {
+            return claimed.get();
+        }
+    }
+    
+    /**
+     * Treiber stack. The evict method claims nodes without popping them, 
+     * such nodes are skipped by pop and unlinked afterwards. Nodes are never
+     * reused, so unlinking a node behind a node that is popped concurrently
+     * at worst leaves the claimed node in the stack until it is popped or 
+     * unlinked by the next eviction.
+     */
+    private static final class Stripe<T> {
+        private final AtomicReference<Node<T>> head = 
+                new AtomicReference<Node<T>>();
+        
+        void push(T item, long since) {
+            Node<T> node = new Node<T>(item, since);
+            Node<T> h;
+            do {
+                h = head.get();
+                node.next = h;
+            } while (!head.compareAndSet(h, node));
+        }
+        
+        T pop() {
+            while (true) {
+                Node<T> h = head.get();
+                if (h == null) {
+                    return null;
+                }
+                if (head.compareAndSet(h, h.next) && h.claim()) {
+                    return h.item;
+                }
+            }
+        }
+        
+        /**
+         * Adds the unclaimed nodes to the specified list, oldest first.
+         */
+        void collect(List<Node<T>> list) {
+            List<Node<T>> nodes = new ArrayList<Node<T>>();
+            for (Node<T> n = head.get(); n != null; n = n.next) {
+                if (!n.isClaimed()) {
+                    nodes.add(n);
+                }
+            }
+            Collections.reverse(nodes);
+            list.addAll(nodes);
+        }
+        
+        void unlinkClaimed() {
+            Node<T> pred = null;
+            Node<T> n = head.get();
+            while (n != null) {
+                Node<T> next = n.next;
+                if (n.isClaimed()) {
+                    if (pred == null) {
+                        if (!head.compareAndSet(n, next)) {
+                            // Head has changed, start over.
+                            n = head.get();
+                            continue;
+                        }
+                    } else {
+                        pred.next = next;
+                    }
+                } else {
+                    pred = n;
+                }
+                n = next;
+            }
+        }
+        
+        void drainTo(List<T> list) {
+            for (Node<T> n = head.getAndSet(null); n != null; n = n.next) {
+                if (n.claim()) {
+                    list.add(n.item);
+                }
+            }
+        }
+    }
+}
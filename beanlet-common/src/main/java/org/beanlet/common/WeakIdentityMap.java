@@ -0,0 +1,166 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Beanlet - JSE Application Container.
+ * Copyright (C) 2006  Leon van Zantvoort
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ * 
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://beanlet.org
+ */
+package org.beanlet.common;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>Concurrent map that holds its keys weakly and compares them by identity.
+ * Entries are removed once their key has been garbage collected. Stale 
+ * entries are expunged by subsequent updates to the map.</p>
+ *
+ * <p>Unlike {@code Collections.synchronizedMap(new WeakHashMap())} readers 
+ * and writers do not contend for a single monitor, and keys that override 
+ * {@code equals} are never confused with each other.</p>
+ *
+ * @author Leon van Zantvoort
+ */
+public final class WeakIdentityMap<K, V> {
+    
+    private final ConcurrentMap<Object, V> map;
+    private final ReferenceQueue<K> queue;
+    
+    public WeakIdentityMap() {
+        this.map = new ConcurrentHashMap<Object, V>();
+        this.queue = new ReferenceQueue<K>();
+    }
+    
+    public V get(K key) {
+        return map.get(new LookupKey(key));
+    }
+    
+    public V put(K key, V value) {
+        expunge();
+        return map.put(new WeakKey<K>(key, queue), value);
+    }
+    
+    public V putIfAbsent(K key, V value) {
+        expunge();
+        return map.putIfAbsent(new WeakKey<K>(key, queue), value);
+    }
+    
+    public V remove(K key) {
+        expunge();
+        return map.remove(new LookupKey(key));
+    }
+    
+    public boolean remove(K key, V value) {
+        expunge();
+        return map.remove(new LookupKey(key), value);
+    }
+    
+    public boolean replace(K key, V oldValue, V newValue) {
+        expunge();
+        return map.replace(new LookupKey(key), oldValue, newValue);
+    }
+    
+    public int size() {
+        expunge();
+        return map.size();
+    }
+    
+    public void clear() {
+        map.clear();
+        while (queue.poll() != null) {
+        }
+    }
+    
+    private void expunge() {
+        Reference<? extends K> ref;
+        while ((ref = queue.poll()) != null) {
+            map.remove(ref);
+        }
+    }
+    
+    private static final class WeakKey<K> extends WeakReference<K> {
+        
+        private final int hash;
+        
+        WeakKey(K key, ReferenceQueue<K> queue) {
+            super(key, queue);
+            this.hash = System.identityHashCode(key);
+        }
+        
+        public int hashCode() {
+            return hash;
+        }
+        
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (obj instanceof LookupKey) {
+                Object key = get();
+                return key != null && key == ((LookupKey) obj).key;
+            }
+            if (obj instanceof WeakKey) {
+                Object key = get();
+                return key != null && key == ((WeakKey) obj).get();
+            }
+            return false;
+        }
+    }
+    
+    /**
+     * Strong key, only used for lookups.
+     */
+    private static final class LookupKey {
+        
+        private final Object key;
+        private final int hash;
+        
+        LookupKey(Object key) {
+            this.key = key;
+            this.hash = System.identityHashCode(key);
+        }
+        
+        public int hashCode() {
+            return hash;
+        }
+        
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (obj instanceof WeakKey) {
+                return key == ((WeakKey) obj).get();
+            }
+            if (obj instanceof LookupKey) {
+                return key == ((LookupKey) obj).key;
+            }
+            return false;
+        }
+    }
+}
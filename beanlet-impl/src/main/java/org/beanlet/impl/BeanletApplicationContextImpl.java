@@ -30,11 +30,7 @@
  */
 package org.beanlet.impl;
 
-import java.util.ArrayList;
 import static org.beanlet.common.Beanlets.*;
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import org.beanlet.BeanletApplicationContext;
@@ -47,10 +43,8 @@ import org.beanlet.BeanletReference;
 import org.beanlet.Event;
 import org.beanlet.FactoryBeanlet;
 import org.beanlet.event.FactoryEvent;
-import org.beanlet.metadata.FactoryMetaData;
 import org.beanlet.plugin.BeanletEventFactory;
 import org.jargo.ComponentApplicationContext;
-import org.jargo.ComponentFactory;
 import org.jargo.ComponentNotFoundException;
 
 /**
@@ -141,81 +135,17 @@ public final class BeanletApplicationContextImpl extends
     }
     
     public Set<String> getBeanletNames() {
-        Set<String> names = new HashSet<String>();
-        for (ComponentFactory<?> factory : 
-                ComponentApplicationContext.instance().getComponentFactories()) {
-            names.add(factory.getComponentMetaData().getComponentName());
-        }
-        return Collections.unmodifiableSet(names);
+        return BeanletFactories.getBeanletNames();
     }
 
     public Set<String> getBeanletNamesForType(Class<?> type) {
-        Set<String> names = new HashSet<String>();
-        for (ComponentFactory<?> factory : ComponentApplicationContext.
-                instance().getComponentFactoriesForType(type)) {
-            names.add(factory.getComponentMetaData().getComponentName());
-        }
-        return Collections.unmodifiableSet(names);
+        return BeanletFactories.getBeanletNamesForType(type);
     }
     
     public Set<String> getBeanletNamesForType(Class<?> type, 
             boolean factoryAware, boolean usePrefix) {
-        if (!factoryAware) {
-            return getBeanletNamesForType(type);
-        }
-        Set<String> names = new HashSet<String>();
-        for (ComponentFactory<?> f : ComponentApplicationContext.instance().
-                getComponentFactories()) {
-            BeanletFactory<?> factory = BeanletFactoryImpl.instance(f);
-            if (isFactoryBeanlet(factory)) {
-                if (isTypeMatch(factory, type)) {
-                    if (usePrefix) {
-                        names.add(FACTORY_BEANLET_PREFIX + 
-                                factory.getBeanletMetaData().getBeanletName());
-                    } else {
-                        names.add(factory.getBeanletMetaData().getBeanletName());
-                    }
-                }
-                if (isFactoryTypeMatch(factory, type)) {
-                    names.add(factory.getBeanletMetaData().getBeanletName());
-                }
-            } else {
-                if (isTypeMatch(factory, type)) {
-                    names.add(factory.getBeanletMetaData().getBeanletName());
-                }
-            }
-        }
-        return Collections.unmodifiableSet(names);
-    }
-
-    private boolean isFactoryBeanlet(BeanletFactory<?> factory) {
-        return factory.getBeanletMetaData().isMetaDataPresent(
-                FactoryMetaData.class);
-    }
-    
-    private boolean isFactoryTypeMatch(BeanletFactory<?> factory, Class<?> type) {
-        List<FactoryMetaData> m = factory.getBeanletMetaData().getMetaData(
-                FactoryMetaData.class);
-        assert m.size() == 1;
-        Class<?> returnType = m.get(0).getReturnType();
-        return !FactoryBeanlet.class.isAssignableFrom(returnType) && 
-                type.isAssignableFrom(returnType);
-    }
-    
-    private boolean isTypeMatch(BeanletFactory<?> factory, Class<?> type) {
-        final List<Class<?>> types;
-        if (factory.getBeanletMetaData().isVanilla()) {
-            types = new ArrayList<Class<?>>(factory.getBeanletMetaData().getInterfaces());
-            types.add(factory.getBeanletMetaData().getType());
-        } else {
-            types = factory.getBeanletMetaData().getInterfaces();
-        }
-        for (Class<?> t : types) {
-            if (type.isAssignableFrom(t)) {
-                return true;
-            }
-        }
-        return false;
+        return BeanletFactories.getBeanletNamesForType(type, factoryAware, 
+                usePrefix);
     }
     
     public BeanletFactory<?> getBeanletFactory(String beanletName) throws 
@@ -224,9 +154,7 @@ public final class BeanletApplicationContextImpl extends
             if (beanletName.startsWith(FACTORY_BEANLET_PREFIX)) {
                 beanletName = beanletName.substring(1);
             }
-            return BeanletFactoryImpl.instance(
-                    ComponentApplicationContext.instance().
-                    getComponentFactory(beanletName));
+            return BeanletFactories.getBeanletFactory(beanletName);
         } catch (ComponentNotFoundException e) {
             throw new BeanletNotFoundException(e.getComponentName(),
                     CHAIN_JARGO_EXCEPTIONS ? e : e.getCause());
@@ -236,7 +164,7 @@ public final class BeanletApplicationContextImpl extends
     public <T> BeanletFactory<? extends T> getBeanletFactory(String beanletName,
             Class<T> requiredType) throws BeanletNotFoundException {
         BeanletFactory<?> tmp = getBeanletFactory(beanletName);
-        if (!isTypeMatch(tmp, requiredType)) {
+        if (!BeanletFactories.isTypeMatch(tmp, requiredType)) {
             throw new BeanletNotOfRequiredTypeException(beanletName, 
                     requiredType, tmp.getBeanletMetaData().getType());
         }
@@ -54,9 +54,11 @@ import java.security.AccessController;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.WeakHashMap;
@@ -67,6 +69,13 @@ import java.util.logging.Logger;
 import javax.xml.XMLConstants;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.Source;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.Validator;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpression;
@@ -96,9 +105,10 @@ import org.w3c.dom.Document;
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
-import org.xml.sax.EntityResolver;
+import org.w3c.dom.ls.DOMImplementationLS;
+import org.w3c.dom.ls.LSInput;
+import org.w3c.dom.ls.LSResourceResolver;
 import org.xml.sax.ErrorHandler;
-import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
 
@@ -115,6 +125,10 @@ public final class BeanletConfigurationProviderImpl extends AbstractProvider
     private static final XPathExpression IMPORT_OPTIONAL_EXPRESSION;
     private static final XPathExpression ALIAS_EXPRESSION;
     
+    private static final DocumentBuilderFactory BUILDER_FACTORY;
+    private static final DOMImplementationLS DOM_LS;
+    private static final ErrorHandler ERROR_HANDLER;
+    
     static {
         try {
             try {
@@ -146,6 +160,23 @@ public final class BeanletConfigurationProviderImpl extends AbstractProvider
             } catch (XPathExpressionException e) {
                 throw new AssertionError(e);
             }
+            
+            BUILDER_FACTORY = getDocumentBuilderFactory();
+            BUILDER_FACTORY.setNamespaceAware(true);
+            DOM_LS = (DOMImplementationLS) BUILDER_FACTORY.newDocumentBuilder().
+                    getDOMImplementation();
+            ERROR_HANDLER = new ErrorHandler() {
+                public void error(SAXParseException e) throws SAXException {
+                    throw e;
+                }
+                public void fatalError(SAXParseException e) throws SAXException {
+                    throw e;
+                }
+                public void warning(SAXParseException e) throws SAXException {
+                    Logger.getLogger(BeanletConfigurationProviderImpl.class.
+                            getName()).warning(e.getMessage());
+                }
+            };
         } catch (Exception e) {
             throw new AssertionError(e);
         }
@@ -159,6 +190,8 @@ public final class BeanletConfigurationProviderImpl extends AbstractProvider
     private final List<BeanletConfigurationValidatorProvider> validatorProviders;
     private final AtomicReference<BeanletConfigurationValidator> validator;
     private final WeakHashMap<ClassLoader, List<Document>> documentMap;
+    private final WeakHashMap<ClassLoader, List<ComponentAlias>> aliasMap;
+    private final WeakHashMap<ClassLoader, Map<String, Schema>> schemaMap;
     
     public BeanletConfigurationProviderImpl() {
         logger = Logger.getLogger(getClass().getName());
@@ -175,12 +208,29 @@ public final class BeanletConfigurationProviderImpl extends AbstractProvider
 
         // The WeakHashMap's key is not reference by the map's value.
         documentMap = new WeakHashMap<ClassLoader, List<Document>>();
+        aliasMap = new WeakHashMap<ClassLoader, List<ComponentAlias>>();
+        schemaMap = new WeakHashMap<ClassLoader, Map<String, Schema>>();
+    }
+    
+    public synchronized List<ComponentAlias> getComponentAliases(
+            ComponentUnit unit) {
+        List<ComponentAlias> aliases = aliasMap.get(unit.getClassLoader());
+        if (aliases == null) {
+            getDocuments(unit.getClassLoader());
+            aliases = aliasMap.get(unit.getClassLoader());
+        }
+        assert aliases != null;
+        return aliases;
     }
     
-    public List<ComponentAlias> getComponentAliases(ComponentUnit unit) {
+    /**
+     * Returns the aliases that are defined by the specified 
+     * {@code documents}.
+     */
+    private static List<ComponentAlias> readComponentAliases(
+            List<Document> documents) {
         List<ComponentAlias> aliases = new ArrayList<ComponentAlias>();
         try {
-            List<Document> documents = getDocuments(unit.getClassLoader());
             for (Document document : documents) {
                 NodeList nodeList = (NodeList) ALIAS_EXPRESSION.evaluate(document,
                         XPathConstants.NODESET);
@@ -226,7 +276,7 @@ public final class BeanletConfigurationProviderImpl extends AbstractProvider
                 new ArrayList<ComponentConfiguration<?>>();
         
         List<XMLAnnotationDomain<?>> domains =
-                XMLAnnotationDomain.list(getDocuments(unit.getClassLoader()),
+                XMLAnnotationDomain.list(takeDocuments(unit.getClassLoader()),
                 unit.getClassLoader(), annotationFactory.get(), resolver.get());
         for (XMLAnnotationDomain<?> tmp : domains) {
             @SuppressWarnings("unchecked")
@@ -337,10 +387,106 @@ public final class BeanletConfigurationProviderImpl extends AbstractProvider
         if (list == null) {
             list = getDocuments(BEANLET_XML, loader);
             documentMap.put(loader, list);
+            aliasMap.put(loader, readComponentAliases(list));
         }
         return list;
     }
     
+    /**
+     * Returns all beanlet documents of the specified class {@code loader}, 
+     * and releases them from the cache. The documents are no longer needed 
+     * once the configurations have been created, the aliases are kept 
+     * separately.
+     */
+    private synchronized List<Document> takeDocuments(ClassLoader loader) {
+        List<Document> list = getDocuments(loader);
+        documentMap.remove(loader);
+        return list;
+    }
+    
+    /**
+     * Returns the compiled schema for the specified {@code schemaLocation}
+     * attribute. Schemas are resolved through the specified class 
+     * {@code loader}, and compiled once per loader.
+     */
+    private synchronized Schema getSchema(String schemaLocation, 
+            final ClassLoader loader) throws SAXException {
+        Map<String, Schema> schemas = schemaMap.get(loader);
+        if (schemas == null) {
+            schemas = new HashMap<String, Schema>();
+            schemaMap.put(loader, schemas);
+        }
+        String key = schemaLocation.trim().replaceAll("\\s+", " ");
+        Schema schema = schemas.get(key);
+        if (schema == null) {
+            SchemaFactory factory = SchemaFactory.newInstance(
+                    XMLConstants.W3C_XML_SCHEMA_NS_URI);
+            factory.setErrorHandler(ERROR_HANDLER);
+            factory.setResourceResolver(new LSResourceResolver() {
+                public LSInput resolveResource(String type, 
+                        String namespaceURI, String publicId, 
+                        String systemId, String baseURI) {
+                    if (systemId == null) {
+                        return null;
+                    }
+                    InputStream stream = getResourceAsStream(systemId, loader);
+                    if (stream == null) {
+                        return null;
+                    }
+                    LSInput input = DOM_LS.createLSInput();
+                    input.setByteStream(stream);
+                    input.setPublicId(publicId);
+                    input.setSystemId(systemId);
+                    input.setBaseURI(baseURI);
+                    return input;
+                }
+            });
+            List<Source> sources = new ArrayList<Source>();
+            String[] tokens = key.length() == 0 ? new String[0] : 
+                    key.split(" ");
+            // Tokens are namespace and location pairs.
+            for (int i = 1; i < tokens.length; i += 2) {
+                InputStream stream = getResourceAsStream(tokens[i], loader);
+                if (stream == null) {
+                    sources.add(new StreamSource(tokens[i]));
+                } else {
+                    sources.add(new StreamSource(stream, tokens[i]));
+                }
+            }
+            schema = factory.newSchema(
+                    sources.toArray(new Source[sources.size()]));
+            schemas.put(key, schema);
+        }
+        return schema;
+    }
+    
+    /**
+     * Returns the resource that is identified by the path of the specified
+     * {@code systemId}, or {@code null} if the class {@code loader} does not
+     * provide it.
+     */
+    private static InputStream getResourceAsStream(String systemId, 
+            final ClassLoader loader) {
+        try {
+            String path = new URI(systemId).getPath();
+            if (path == null) {
+                return null;
+            }
+            if (path.startsWith("/")) {
+                path = path.substring(1);
+            }
+            final String p = path;
+            return AccessController.doPrivileged(
+                    new PrivilegedAction<InputStream>() {
+                public InputStream run() {
+                    return loader.getResourceAsStream(p);
+                }
+            });
+        } catch (URISyntaxException e) {
+            return null;
+        }
+    }
+    
     private List<Document> getDocuments(String resource, ClassLoader loader) {
         List<Document> documents = new ArrayList<Document>();
         if (loader != null) {
@@ -359,8 +505,11 @@ public final class BeanletConfigurationProviderImpl extends AbstractProvider
                     urls.add(e2.nextElement());
                 }
                 Set<URL> dupes = new HashSet<URL>();
+                Properties properties = urls.isEmpty() ? null : 
+                        getProperties(loader);
                 for (URL url : urls) {
-                    documents.addAll(getDocuments(url, loader, dupes));
+                    documents.addAll(getDocuments(url, loader, properties, 
+                            dupes));
                 }
             } catch (IllegalAccessException e) {
                 assert false : e;
@@ -376,7 +525,8 @@ public final class BeanletConfigurationProviderImpl extends AbstractProvider
     }
 
     private List<Document> getDocuments(URL url, final ClassLoader loader,
-            Set<URL> dupes) throws FileNotFoundException {
+            Properties properties, Set<URL> dupes) throws 
+            FileNotFoundException {
         List<Document> documents = new ArrayList<Document>();
         try {
             if (dupes.add(url)) {
@@ -384,79 +534,24 @@ public final class BeanletConfigurationProviderImpl extends AbstractProvider
                 try {
                     logger.finest("Loading beanlets from " + 
                             url.toExternalForm() + ".");
-                    DocumentBuilderFactory factory = getDocumentBuilderFactory();
-                    try {
-                        factory.setAttribute("http://java.sun.com/xml/jaxp/properties/schemaLanguage",
-                                XMLConstants.W3C_XML_SCHEMA_NS_URI);
-                    } catch (IllegalArgumentException e) {
-                        // PENDING: handle exception
-                        throw e;
-                    }
-                    
-                    // Checks whether the document is well formed.
-                    DocumentBuilder checkingBuilder = factory.newDocumentBuilder();
-                    URLConnection c = url.openConnection();
-                    c.setUseCaches(false);
-                    InputStream s = new BufferedInputStream(c.getInputStream());
-                    try {
-                        checkingBuilder.parse(s, url.toExternalForm());
-                    } finally {
-                        s.close();
-                    }
-                    
-                    factory.setNamespaceAware(true);
-                    factory.setValidating(true);
-                    // Validates the document according to the schema definition.
-                    DocumentBuilder validatingBuilder = factory.newDocumentBuilder();
-                    validatingBuilder.setEntityResolver(new EntityResolver() {
-                        public InputSource resolveEntity(String publicId, 
-                                String systemId) throws SAXException,IOException {
-                            try {
-                                final InputSource source;
-                                URI uri = new URI(systemId);
-                                String path = uri.getPath();
-                                if (path != null) {
-                                    if (path.startsWith("/")) {
-                                        path = path.substring(1);
-                                    }
-                                    final String p = path;
-                                    InputStream stream = AccessController.
-                                            doPrivileged(new PrivilegedAction<InputStream>() {
-                                        public InputStream run() {
-                                            return loader.getResourceAsStream(p);
-                                        }
-                                    });
-                                    if (stream != null) {
-                                        source = new InputSource(stream);
-                                    } else {
-                                        source = new InputSource(systemId);
-                                    }
-                                } else {
-                                    source = new InputSource(systemId);
-                                }
-                                source.setPublicId(publicId);
-                                return source;
-                            } catch (URISyntaxException e) {
-                                throw new SAXException(e);
-                            }
-                        }
-                    });
-                    validatingBuilder.setErrorHandler(new ErrorHandler() {
-                        public void error(SAXParseException e) throws SAXException {
-                            throw e;
-                        }
-                        public void fatalError(SAXParseException e) throws SAXException {
-                            throw e;
-                        }
-                        public void warning(SAXParseException e) throws SAXException {
-                            logger.warning(e.getMessage());
-                        }
-                    });
                     URLConnection connection = url.openConnection();
                     connection.setUseCaches(false);
-                    stream = rewriteStream(connection.getInputStream(), getProperties(loader));
-                    Document document = validatingBuilder.parse(stream,
+                    stream = rewriteStream(connection.getInputStream(), properties);
+                    
+                    // Parses the document once, and validates the resulting
+                    // tree against the compiled schema definition.
+                    DocumentBuilder builder = newDocumentBuilder();
+                    builder.setErrorHandler(ERROR_HANDLER);
+                    Document document = builder.parse(stream,
                             url.toExternalForm());
+                    String schemaLocation = document.getDocumentElement().
+                            getAttributeNS(XMLConstants.
+                            W3C_XML_SCHEMA_INSTANCE_NS_URI, "schemaLocation");
+                    Validator validator = getSchema(schemaLocation, loader).
+                            newValidator();
+                    validator.setErrorHandler(ERROR_HANDLER);
+                    validator.validate(new DOMSource(document, 
+                            url.toExternalForm()));
                     documents.add(document);
                     NodeList nodes = (NodeList) IMPORT_RESOURCE_EXPRESSION.
                             evaluate(document, XPathConstants.NODESET);
@@ -480,7 +575,8 @@ public final class BeanletConfigurationProviderImpl extends AbstractProvider
                                             toASCIIString());
                                 }
                             }
-                            documents.addAll(getDocuments(newUrl, loader, dupes));
+                            documents.addAll(getDocuments(newUrl, loader, properties, 
+                                    dupes));
                         } catch (FileNotFoundException e) {
                             if (optionalNode == null || !Boolean.valueOf(
                                     optionalNode.getNodeValue())) {
@@ -516,7 +612,12 @@ public final class BeanletConfigurationProviderImpl extends AbstractProvider
         return documents;
     }
     
-    private Properties getProperties(ClassLoader loader) {
+    /**
+     * Returns the beanlet properties of the specified component unit's class 
+     * loader, overridden by the {@code beanlet.properties} file of the working
+     * directory and the system properties.
+     */
+    static Properties getProperties(ClassLoader loader) {
         try {
             final Properties properties = new Properties();
             List<URL> urls = new ArrayList<URL>();
@@ -648,6 +749,11 @@ public final class BeanletConfigurationProviderImpl extends AbstractProvider
         return modified;
     }
     
+    private static synchronized DocumentBuilder newDocumentBuilder() throws 
+            ParserConfigurationException {
+        return BUILDER_FACTORY.newDocumentBuilder();
+    }
+    
     /**
      * Returns the default JDK DocumentBuilderFactory.
      */
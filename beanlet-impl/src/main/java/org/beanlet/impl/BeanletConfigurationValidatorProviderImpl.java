@@ -47,6 +47,7 @@ public final class BeanletConfigurationValidatorProviderImpl extends AbstractPro
         List<BeanletConfigurationValidator> list = 
                 new ArrayList<BeanletConfigurationValidator>();
         list.add(new BeanletScopeConfigurationValidatorImpl());
+        list.add(new PoolBeanletConfigurationValidatorImpl());
         list.add(new AttributeBeanletConfigurationValidatorImpl());
         list.add(new FactoryBeanletConfigurationValidatorImpl());
         list.add(new StaticFactoryBeanletConfigurationValidatorImpl());
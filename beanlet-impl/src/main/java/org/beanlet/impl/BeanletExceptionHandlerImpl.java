@@ -10,6 +10,7 @@ import org.beanlet.BeanletException;
 import org.beanlet.BeanletExecutionException;
 import org.beanlet.BeanletNotActiveException;
 import org.beanlet.BeanletNotFoundException;
+import org.beanlet.BeanletPoolExhaustedException;
 import org.beanlet.BeanletStateException;
 import org.beanlet.Event;
 import org.jargo.ComponentApplicationException;
@@ -71,6 +72,10 @@ public final class BeanletExceptionHandlerImpl implements ComponentExceptionHand
             throw new BeanletNotActiveException(e2.getComponentName(), 
                     CHAIN_JARGO_EXCEPTIONS ? e2 : e2.getCause());
         } catch (ComponentCreationException e2) {
+            if (e2.getCause() instanceof PoolExhaustedException) {
+                throw new BeanletPoolExhaustedException(e2.getComponentName(),
+                        CHAIN_JARGO_EXCEPTIONS ? e2 : e2.getCause());
+            }
             throw new BeanletCreationException(e2.getComponentName(), 
                     CHAIN_JARGO_EXCEPTIONS ? e2 : e2.getCause());
         } catch (ComponentNotFoundException e2) {
@@ -32,35 +32,246 @@ package org.beanlet.impl;
 
 import java.security.AccessController;
 import java.security.PrivilegedAction;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.beanlet.BeanletApplicationException;
 import org.jargo.ComponentConfiguration;
 import org.jargo.ExecutorHandle;
 
 /**
+ * <p>Executor handle that is configured through the following beanlet 
+ * properties of the component unit:
+ * <ul>
+ * <li>{@code org.beanlet.executor.type} - {@code cached} (default), 
+ * {@code bounded}, {@code fork-join} or {@code virtual}. The 
+ * {@code fork-join} and {@code virtual} types require a JRE that supports
+ * these executors. These executors do not use the container's thread 
+ * factory, instead each task runs with the unit's class loader as context
+ * class loader.
+ * <li>{@code org.beanlet.executor.maxThreads} - maximum number of threads of
+ * bounded and fork-join executors, defaults to {@code 64}.
+ * <li>{@code org.beanlet.executor.coreThreads} - number of threads that 
+ * bounded executors keep alive, defaults to {@code maxThreads}.
+ * <li>{@code org.beanlet.executor.keepAlive} - number of milliseconds that
+ * threads exceeding {@code coreThreads} are kept alive, defaults to 
+ * {@code 60000}.
+ * <li>{@code org.beanlet.executor.queueCapacity} - number of tasks that 
+ * can be queued by bounded executors, defaults to {@code 1024}. Tasks are 
+ * handed off to threads directly if set to {@code 0}.
+ * <li>{@code org.beanlet.executor.rejectionPolicy} - {@code abort} 
+ * (default), {@code caller-runs}, {@code discard} or {@code discard-oldest}.
+ * Units with {@code Schedule} beanlets must use the {@code abort} policy, 
+ * see {@code ScheduleBeanletProviderImpl}.
+ * </ul>
+ * Note that {@code Execute} methods occupy a thread for as long as they run,
+ * bounded executors must be large enough to run these methods.</p>
+ * 
+ * <p>The queue depth and the number of active threads of the executor are
+ * reported by {@link #getQueueSize} and {@link #getActiveCount}.</p>
  *
  * @author Leon van Zantvoort
  */
 public final class BeanletExecutorHandleImpl implements ExecutorHandle {
 
+    public static final String TYPE = "org.beanlet.executor.type";
+    public static final String MAX_THREADS = "org.beanlet.executor.maxThreads";
+    public static final String CORE_THREADS = "org.beanlet.executor.coreThreads";
+    public static final String KEEP_ALIVE = "org.beanlet.executor.keepAlive";
+    public static final String QUEUE_CAPACITY = "org.beanlet.executor.queueCapacity";
+    public static final String REJECTION_POLICY = "org.beanlet.executor.rejectionPolicy";
+    
     private final ExecutorService executorService;
     private final Executor executor;
+    private final AtomicInteger queued;
+    private final AtomicInteger active;
 
     public BeanletExecutorHandleImpl(ComponentConfiguration configuration,
             final ThreadFactory threadFactory) {
-        this.executorService = Executors.newCachedThreadPool(threadFactory);
-        this.executor = new Executor() {
-            public void execute(Runnable command) {
-                executorService.execute(command);
+        this(configuration, threadFactory, new Properties());
+    }
+    
+    public BeanletExecutorHandleImpl(ComponentConfiguration configuration,
+            final ThreadFactory threadFactory, Properties properties) {
+        this.queued = new AtomicInteger();
+        this.active = new AtomicInteger();
+        String type = properties.getProperty(TYPE, "cached");
+        int maxThreads = getInt(properties, MAX_THREADS, 64);
+        if (type.equals("cached")) {
+            this.executorService = Executors.newCachedThreadPool(threadFactory);
+        } else if (type.equals("bounded")) {
+            int capacity = getInt(properties, QUEUE_CAPACITY, 1024);
+            BlockingQueue<Runnable> queue = capacity == 0 ? 
+                new SynchronousQueue<Runnable>() : 
+                new ArrayBlockingQueue<Runnable>(capacity);
+            this.executorService = new ThreadPoolExecutor(
+                    getInt(properties, CORE_THREADS, maxThreads), maxThreads,
+                    getInt(properties, KEEP_ALIVE, 60000), 
+                    TimeUnit.MILLISECONDS, queue, threadFactory, 
+                    getRejectionPolicy(properties));
+        } else if (type.equals("fork-join")) {
+            this.executorService = newExecutorService(
+                    "java.util.concurrent.ForkJoinPool", null, 
+                    new Class[] {Integer.TYPE}, new Object[] {maxThreads});
+        } else if (type.equals("virtual")) {
+            this.executorService = newExecutorService(
+                    "java.util.concurrent.Executors", 
+                    "newVirtualThreadPerTaskExecutor", 
+                    new Class[0], new Object[0]);
+        } else {
+            throw new BeanletApplicationException("Unknown executor type: '" + 
+                    type + "'.");
+        }
+        if (type.equals("cached") || type.equals("bounded")) {
+            this.executor = new Executor() {
+                public void execute(Runnable command) {
+                    executorService.execute(command);
+                }
+            };
+        } else {
+            final ClassLoader loader = configuration.getComponentUnit().
+                    getClassLoader();
+            // These executors do not report their queue depth and active 
+            // threads in a portable way, tasks are counted instead.
+            this.executor = new Executor() {
+                public void execute(final Runnable command) {
+                    queued.incrementAndGet();
+                    boolean submitted = false;
+                    try {
+                        executorService.execute(new Runnable() {
+                            public void run() {
+                                queued.decrementAndGet();
+                                active.incrementAndGet();
+                                final Thread thread = Thread.currentThread();
+                                final ClassLoader org = setContextClassLoader(
+                                        thread, loader);
+                                try {
+                                    command.run();
+                                } finally {
+                                    setContextClassLoader(thread, org);
+                                    active.decrementAndGet();
+                                }
+                            }
+                        });
+                        submitted = true;
+                    } finally {
+                        if (!submitted) {
+                            queued.decrementAndGet();
+                        }
+                    }
+                }
+            };
+        }
+    }
+    
+    private static ClassLoader setContextClassLoader(final Thread thread, 
+            final ClassLoader loader) {
+        return AccessController.doPrivileged(
+                new PrivilegedAction<ClassLoader>() {
+            public ClassLoader run() {
+                // PERMISSION: java.lang.RuntimePermission getClassLoader
+                ClassLoader tmp = thread.getContextClassLoader();
+                // PERMISSION: java.lang.RuntimePermission setContextClassLoader
+                thread.setContextClassLoader(loader);
+                return tmp;
+            }
+        });
+    }
+    
+    private static int getInt(Properties properties, String key, 
+            int defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            int i = Integer.parseInt(value.trim());
+            if (i < 0) {
+                throw new NumberFormatException(value);
             }
-        };
+            return i;
+        } catch (NumberFormatException e) {
+            throw new BeanletApplicationException("Invalid value for " +
+                    "beanlet property '" + key + "': '" + value + "'.");
+        }
+    }
+    
+    private static RejectedExecutionHandler getRejectionPolicy(
+            Properties properties) {
+        String policy = properties.getProperty(REJECTION_POLICY, "abort");
+        if (policy.equals("abort")) {
+            return new ThreadPoolExecutor.AbortPolicy();
+        } else if (policy.equals("caller-runs")) {
+            return new ThreadPoolExecutor.CallerRunsPolicy();
+        } else if (policy.equals("discard")) {
+            return new ThreadPoolExecutor.DiscardPolicy();
+        } else if (policy.equals("discard-oldest")) {
+            return new ThreadPoolExecutor.DiscardOldestPolicy();
+        } else {
+            throw new BeanletApplicationException("Unknown rejection " +
+                    "policy: '" + policy + "'.");
+        }
+    }
+    
+    /**
+     * Returns {@code true} if tasks submitted to the executor configured by
+     * {@code properties} are either executed by a thread of the executor, or 
+     * rejected with a {@code RejectedExecutionException}.
+     */
+    static boolean isRejectionReported(Properties properties) {
+        return !properties.getProperty(TYPE, "cached").equals("bounded") ||
+                properties.getProperty(REJECTION_POLICY, "abort").
+                equals("abort");
+    }
+    
+    private static ExecutorService newExecutorService(String className, 
+            String methodName, Class<?>[] types, Object[] args) {
+        try {
+            Class<?> cls = Class.forName(className);
+            Object o = methodName == null ? 
+                cls.getConstructor(types).newInstance(args) :
+                cls.getMethod(methodName, types).invoke(null, args);
+            return (ExecutorService) o;
+        } catch (Exception e) {
+            throw new BeanletApplicationException("Executor type not " +
+                    "supported by this JRE: " + className + 
+                    (methodName == null ? "" : "." + methodName) + ".", e);
+        }
     }
 
     public Executor getExecutor() {
         return executor;
     }
+    
+    /**
+     * Returns the number of tasks that have been submitted, but have not yet
+     * been started.
+     */
+    public int getQueueSize() {
+        if (executorService instanceof ThreadPoolExecutor) {
+            return ((ThreadPoolExecutor) executorService).getQueue().size();
+        }
+        return queued.get();
+    }
+    
+    /**
+     * Returns the number of threads that are executing tasks.
+     */
+    public int getActiveCount() {
+        if (executorService instanceof ThreadPoolExecutor) {
+            return ((ThreadPoolExecutor) executorService).getActiveCount();
+        }
+        return active.get();
+    }
 
     public void destroy() {
         AccessController.doPrivileged(new PrivilegedAction<Object>() {
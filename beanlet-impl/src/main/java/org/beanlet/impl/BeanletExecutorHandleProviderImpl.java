@@ -30,6 +30,10 @@
  */
 package org.beanlet.impl;
 
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+import java.util.WeakHashMap;
 import java.util.concurrent.ThreadFactory;
 import org.beanlet.common.AbstractProvider;
 import org.jargo.ComponentConfiguration;
@@ -42,8 +46,18 @@ import org.jargo.spi.ExecutorHandleProvider;
 public final class BeanletExecutorHandleProviderImpl extends AbstractProvider
         implements ExecutorHandleProvider {
     
+    // The WeakHashMap's key is not reference by the map's value.
+    private final Map<ClassLoader, Properties> properties = 
+            Collections.synchronizedMap(new WeakHashMap<ClassLoader, Properties>());
+    
     public ExecutorHandle getExecutorHandle(ComponentConfiguration configuration, 
             ThreadFactory factory) {
-        return new BeanletExecutorHandleImpl(configuration, factory);
+        ClassLoader loader = configuration.getComponentUnit().getClassLoader();
+        Properties tmp = properties.get(loader);
+        if (tmp == null) {
+            tmp = BeanletConfigurationProviderImpl.getProperties(loader);
+            properties.put(loader, tmp);
+        }
+        return new BeanletExecutorHandleImpl(configuration, factory, tmp);
     }
 }
\ No newline at end of file
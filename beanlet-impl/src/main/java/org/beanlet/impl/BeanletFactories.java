@@ -0,0 +1,296 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Beanlet - JSE Application Container.
+ * Copyright (C) 2006  Leon van Zantvoort
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ * 
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://beanlet.org
+ */
+package org.beanlet.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+import static org.beanlet.common.Beanlets.*;
+import org.beanlet.BeanletFactory;
+import org.beanlet.FactoryBeanlet;
+import org.beanlet.metadata.FactoryMetaData;
+import org.jargo.ComponentApplicationContext;
+import org.jargo.ComponentConfiguration;
+import org.jargo.ComponentFactory;
+import org.jargo.ComponentNotFoundException;
+import org.jargo.ComponentRegistration;
+import org.jargo.deploy.Deployable;
+import org.jargo.deploy.Deployer;
+
+/**
+ * Index of {@code BeanletFactory} wrappers and beanlet names by type. The 
+ * index is filled on first lookup and dropped as a whole each time 
+ * components are registered or unregistered. The registry itself may be 
+ * updated before or after this deployer is notified, so a fresh index is 
+ * only filled once the registry reflects the change it was created for.
+ *
+ * @author Leon van Zantvoort
+ */
+public final class BeanletFactories implements Deployer {
+    
+    private static final AtomicReference<Index> index = 
+            new AtomicReference<Index>(new Index());
+    
+    public void setParent(Deployer deployer) {
+    }
+    
+    public void deploy(Deployable deployable) throws Exception {
+        if (deployable instanceof ComponentRegistration) {
+            update((ComponentRegistration) deployable, true);
+        }
+    }
+    
+    public void undeploy(Deployable deployable) throws Exception {
+        if (deployable instanceof ComponentRegistration) {
+            update((ComponentRegistration) deployable, false);
+        }
+    }
+    
+    private static void update(ComponentRegistration registration, 
+            boolean registered) {
+        Set<String> names = new HashSet<String>();
+        for (ComponentConfiguration<?> configuration : 
+                registration.getComponentConfigurations()) {
+            names.add(configuration.getComponentName());
+        }
+        Index i;
+        do {
+            i = index.get();
+        } while (!index.compareAndSet(i, new Index(i, names, registered)));
+    }
+    
+    /**
+     * Returns the factory of the specified beanlet.
+     */
+    public static BeanletFactory<?> getBeanletFactory(String beanletName) 
+            throws ComponentNotFoundException {
+        Index i = index.get();
+        BeanletFactory<?> factory = i.factories.get(beanletName);
+        if (factory == null) {
+            boolean settled = i.isSettled();
+            factory = BeanletFactoryImpl.instance(ComponentApplicationContext.
+                    instance().getComponentFactory(beanletName));
+            if (settled) {
+                BeanletFactory<?> tmp = i.factories.putIfAbsent(beanletName, 
+                        factory);
+                if (tmp != null) {
+                    factory = tmp;
+                }
+            }
+        }
+        return factory;
+    }
+    
+    public static Set<String> getBeanletNames() {
+        Index i = index.get();
+        Set<String> names = i.names.get();
+        if (names == null) {
+            boolean settled = i.isSettled();
+            names = new HashSet<String>();
+            for (ComponentFactory<?> factory : ComponentApplicationContext.
+                    instance().getComponentFactories()) {
+                names.add(factory.getComponentMetaData().getComponentName());
+            }
+            names = Collections.unmodifiableSet(names);
+            if (settled) {
+                i.names.compareAndSet(null, names);
+            }
+        }
+        return names;
+    }
+    
+    public static Set<String> getBeanletNamesForType(Class<?> type) {
+        Index i = index.get();
+        Set<String> names = i.namesForType.get(type);
+        if (names == null) {
+            boolean settled = i.isSettled();
+            names = new HashSet<String>();
+            for (ComponentFactory<?> factory : ComponentApplicationContext.
+                    instance().getComponentFactoriesForType(type)) {
+                names.add(factory.getComponentMetaData().getComponentName());
+            }
+            names = Collections.unmodifiableSet(names);
+            if (settled) {
+                i.namesForType.putIfAbsent(type, names);
+            }
+        }
+        return names;
+    }
+    
+    public static Set<String> getBeanletNamesForType(Class<?> type, 
+            boolean factoryAware, boolean usePrefix) {
+        if (!factoryAware) {
+            return getBeanletNamesForType(type);
+        }
+        Index i = index.get();
+        ConcurrentMap<Class<?>, Set<String>> map = usePrefix ? 
+                i.prefixedNamesForFactoryType : i.namesForFactoryType;
+        Set<String> names = map.get(type);
+        if (names == null) {
+            boolean settled = i.isSettled();
+            names = new HashSet<String>();
+            for (ComponentFactory<?> f : ComponentApplicationContext.
+                    instance().getComponentFactories()) {
+                BeanletFactory<?> factory;
+                try {
+                    factory = getBeanletFactory(
+                            f.getComponentMetaData().getComponentName());
+                } catch (ComponentNotFoundException e) {
+                    // Component has been removed in the meantime.
+                    continue;
+                }
+                String name = factory.getBeanletMetaData().getBeanletName();
+                if (isFactoryBeanlet(factory)) {
+                    if (isTypeMatch(factory, type)) {
+                        names.add(usePrefix ? FACTORY_BEANLET_PREFIX + name : 
+                            name);
+                    }
+                    if (isFactoryTypeMatch(factory, type)) {
+                        names.add(name);
+                    }
+                } else {
+                    if (isTypeMatch(factory, type)) {
+                        names.add(name);
+                    }
+                }
+            }
+            names = Collections.unmodifiableSet(names);
+            if (settled) {
+                map.putIfAbsent(type, names);
+            }
+        }
+        return names;
+    }
+    
+    static boolean isTypeMatch(BeanletFactory<?> factory, Class<?> type) {
+        final List<Class<?>> types;
+        if (factory.getBeanletMetaData().isVanilla()) {
+            types = new ArrayList<Class<?>>(factory.getBeanletMetaData().getInterfaces());
+            types.add(factory.getBeanletMetaData().getType());
+        } else {
+            types = factory.getBeanletMetaData().getInterfaces();
+        }
+        for (Class<?> t : types) {
+            if (type.isAssignableFrom(t)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static boolean isFactoryBeanlet(BeanletFactory<?> factory) {
+        return factory.getBeanletMetaData().isMetaDataPresent(
+                FactoryMetaData.class);
+    }
+    
+    private static boolean isFactoryTypeMatch(BeanletFactory<?> factory, 
+            Class<?> type) {
+        List<FactoryMetaData> m = factory.getBeanletMetaData().getMetaData(
+                FactoryMetaData.class);
+        assert m.size() == 1;
+        Class<?> returnType = m.get(0).getReturnType();
+        return !FactoryBeanlet.class.isAssignableFrom(returnType) && 
+                type.isAssignableFrom(returnType);
+    }
+    
+    /**
+     * An index created for a (un)registration records the component names it
+     * expects to be present or absent. Until the registry matches these 
+     * expectations lookups bypass the index, so a lookup served by the old 
+     * registry state cannot fill the new index. Lookups that observe a 
+     * settled index before querying the registry may still race with a later
+     * change, but such an index is replaced by that change's notification.
+     */
+    private static final class Index {
+        private final Set<String> present;
+        private final Set<String> absent;
+        private volatile boolean settled;
+        
+        final ConcurrentMap<String, BeanletFactory<?>> factories =
+                new ConcurrentHashMap<String, BeanletFactory<?>>();
+        final AtomicReference<Set<String>> names = 
+                new AtomicReference<Set<String>>();
+        final ConcurrentMap<Class<?>, Set<String>> namesForType = 
+                new ConcurrentHashMap<Class<?>, Set<String>>();
+        final ConcurrentMap<Class<?>, Set<String>> namesForFactoryType = 
+                new ConcurrentHashMap<Class<?>, Set<String>>();
+        final ConcurrentMap<Class<?>, Set<String>> prefixedNamesForFactoryType = 
+                new ConcurrentHashMap<Class<?>, Set<String>>();
+        
+        Index() {
+            this.present = Collections.emptySet();
+            this.absent = Collections.emptySet();
+            this.settled = true;
+        }
+        
+        Index(Index previous, Set<String> names, boolean registered) {
+            Set<String> present = new HashSet<String>();
+            Set<String> absent = new HashSet<String>();
+            if (!previous.settled) {
+                present.addAll(previous.present);
+                absent.addAll(previous.absent);
+            }
+            if (registered) {
+                absent.removeAll(names);
+                present.addAll(names);
+            } else {
+                present.removeAll(names);
+                absent.addAll(names);
+            }
+            this.present = present;
+            this.absent = absent;
+        }
+        
+        boolean isSettled() {
+            if (!settled) {
+                ComponentApplicationContext ctx = 
+                        ComponentApplicationContext.instance();
+                for (String name : present) {
+                    if (!ctx.exists(name)) {
+                        return false;
+                    }
+                }
+                for (String name : absent) {
+                    if (ctx.exists(name)) {
+                        return false;
+                    }
+                }
+                settled = true;
+            }
+            return true;
+        }
+    }
+}
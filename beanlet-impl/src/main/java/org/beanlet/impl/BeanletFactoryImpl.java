@@ -72,7 +72,7 @@ public final class BeanletFactoryImpl<T> implements BeanletFactory<T> {
     public BeanletReference<T> create(Map<String, ?> info) throws 
             BeanletCreationException {
         try {
-            return new BeanletReferenceImpl<T>(factory.create(info));
+            return new BeanletReferenceImpl<T>(factory.create(info), metaData);
         } catch (ComponentNotActiveException e) {
             throw new BeanletNotActiveException(e.getComponentName(), 
                     CHAIN_JARGO_EXCEPTIONS ? e : e.getCause());
@@ -59,8 +59,14 @@ public final class BeanletReferenceImpl<T> implements BeanletReference<T> {
     }    
     
     public BeanletReferenceImpl(ComponentReference<T> reference) {
+        this(reference, new BeanletMetaDataImpl<T>(
+                reference.getComponentMetaData()));
+    }
+    
+    BeanletReferenceImpl(ComponentReference<T> reference, 
+            BeanletMetaData<T> metaData) {
         this.reference = reference;
-        this.metaData = new BeanletMetaDataImpl<T>(reference.getComponentMetaData());
+        this.metaData = metaData;
     }
 
     public BeanletMetaData<T> getBeanletMetaData() {
@@ -0,0 +1,87 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Beanlet - JSE Application Container.
+ * Copyright (C) 2006  Leon van Zantvoort
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ * 
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://beanlet.org
+ */
+package org.beanlet.impl;
+
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Provides a single daemon thread that is shared by all container tasks that 
+ * need to be executed at a certain point in time. Tasks executed by this 
+ * timer must complete quickly; long running work is to be handed off to 
+ * another executor.
+ *
+ * @author Leon van Zantvoort
+ */
+final class BeanletTimer {
+    
+    private static ScheduledThreadPoolExecutor executor;
+    
+    private BeanletTimer() {
+    }
+    
+    public static synchronized ScheduledExecutorService getInstance() {
+        if (executor == null) {
+            final ClassLoader loader = BeanletTimer.class.getClassLoader();
+            final AtomicInteger count = new AtomicInteger();
+            executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                public Thread newThread(final Runnable r) {
+                    return AccessController.doPrivileged(
+                            new PrivilegedAction<Thread>() {
+                        public Thread run() {
+                            // PERMISSION: java.lang.RuntimePermission modifyThread
+                            Thread thread = new Thread(r, "beanlet-timer-" + 
+                                    count.incrementAndGet());
+                            thread.setDaemon(true);
+                            // PERMISSION: java.lang.RuntimePermission setContextClassLoader
+                            thread.setContextClassLoader(loader);
+                            return thread;
+                        }
+                    });
+                }
+            });
+        }
+        return executor;
+    }
+    
+    /**
+     * Removes cancelled tasks from the timer's queue.
+     */
+    public static synchronized void purge() {
+        if (executor != null) {
+            executor.purge();
+        }
+    }
+}
@@ -31,49 +31,125 @@
 package org.beanlet.impl;
 
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Calendar;
 import java.util.Date;
-import java.util.EnumSet;
 import java.util.List;
-import java.util.ListIterator;
-import java.util.Set;
 import java.util.TimeZone;
-import static org.beanlet.impl.CronExpression.CronCharacter.*;
 import static org.beanlet.impl.CronExpression.CronField.*;
 
 /**
+ * <p>The expression is compiled into one bit mask per field at construction
+ * time. Fire times are computed by scanning these masks on plain epoch
+ * arithmetic; no {@code Calendar} is created per call.</p>
+ *
  * @author Leon van Zantvoort
  */
 public final class CronExpression {
     
+    private static final long SECOND_MILLIS = 1000L;
+    private static final long DAY_MILLIS = 24L * 60L * 60L * SECOND_MILLIS;
+    
+    /**
+     * Number of years searched ahead if the expression does not specify a
+     * year. The Gregorian calendar repeats itself every 400 years.
+     */
+    private static final int YEAR_WINDOW = 400;
+    
+    private static final long NONE = Long.MIN_VALUE;
+    
     private final String expression;
-    private final String[] fields;
-    private final List<CronField> fieldList;
     private final TimeZone tz;
     
+    // Bit n is set if value n matches.
+    private final long seconds;
+    private final long minutes;
+    private final long hours;
+    private final long daysOfMonth;
+    private final long months;
+    private final long daysOfWeek;
+    private final BitSet years;
+    
+    private final boolean anyDayOfMonth;
+    private final boolean anyDayOfWeek;
+    private final boolean lastDayOfMonth;
+    private final boolean lastWeekdayOfMonth;
+    private final int nearestWeekday;
+    private final int lastDayOfWeek;
+    private final int nthDayOfWeek;
+    private final int nth;
+    
     public CronExpression(String expression) throws IllegalArgumentException {
         this.expression = expression;
-        this.fields = expression.split(" ");
+        String[] fields = expression.trim().split("\\s+");
         if (fields.length < 6 || fields.length > 8) {
             throw new IllegalArgumentException("Cron expression MUST specify " +
                     "at least 6, but no more than 8 options.");
         }
-        this.fieldList = new ArrayList<CronField>(Arrays.asList(CronField.values()));
-        if (fields.length < 7) {
-            fieldList.remove(0);
-        }
-        if (fields.length == 8) {
-            if (fields[7].equalsIgnoreCase(ALL.character)) {
-                this.tz = TimeZone.getDefault();
-            } else {
-                this.tz = TimeZone.getTimeZone(fields[7]);
+        this.seconds = toLong(parse(SECOND, fields[SECOND.index]));
+        this.minutes = toLong(parse(MINUTE, fields[MINUTE.index]));
+        this.hours = toLong(parse(HOUR, fields[HOUR.index]));
+        this.months = toLong(parse(MONTH, fields[MONTH.index]));
+        
+        String dom = fields[DAY_OF_MONTH.index].toUpperCase();
+        long domBits = 0;
+        int weekday = 0;
+        if (dom.equals("LW")) {
+            weekday = -1;
+        } else if (dom.length() > 1 && dom.endsWith("W")) {
+            weekday = DAY_OF_MONTH.getValue(dom.substring(0, dom.length() - 1));
+        } else if (!dom.equals("L") && !dom.equals("?") && !dom.equals("*")) {
+            domBits = toLong(parse(DAY_OF_MONTH, dom));
+        }
+        this.anyDayOfMonth = dom.equals("?") || dom.equals("*");
+        this.lastDayOfMonth = dom.equals("L");
+        this.lastWeekdayOfMonth = weekday == -1;
+        this.nearestWeekday = Math.max(0, weekday);
+        this.daysOfMonth = domBits;
+        
+        String dow = fields[DAY_OF_WEEK.index].toUpperCase();
+        long dowBits = 0;
+        int lastDay = 0;
+        int nthDay = 0;
+        int n = 0;
+        int hash = dow.indexOf('#');
+        if (hash != -1) {
+            nthDay = DAY_OF_WEEK.getValue(dow.substring(0, hash));
+            try {
+                n = Integer.parseInt(dow.substring(hash + 1));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(
+                        "Value after the '#' option must be an integer: '" + 
+                        dow.substring(hash + 1) + "''.");
+            }
+            if (n < 1 || n > 5) {
+                throw new IllegalArgumentException(
+                        "Value after the '#' option must be between 1 and 5.");
             }
+        } else if (dow.equals("L")) {
+            // Used by itself it simply means SAT.
+            dowBits = 1L << Calendar.SATURDAY;
+        } else if (dow.endsWith("L")) {
+            lastDay = DAY_OF_WEEK.getValue(dow.substring(0, dow.length() - 1));
+        } else if (!dow.equals("?") && !dow.equals("*")) {
+            dowBits = toLong(parse(DAY_OF_WEEK, dow));
+        }
+        this.anyDayOfWeek = dow.equals("?") || dow.equals("*");
+        this.daysOfWeek = dowBits;
+        this.lastDayOfWeek = lastDay;
+        this.nthDayOfWeek = nthDay;
+        this.nth = n;
+        
+        if (fields.length < 7 || fields[YEAR.index].equals("*")) {
+            this.years = null;
+        } else {
+            this.years = parse(YEAR, fields[YEAR.index]);
+        }
+        if (fields.length == 8 && !fields[7].equals("*")) {
+            this.tz = TimeZone.getTimeZone(fields[7]);
         } else {
             this.tz = TimeZone.getDefault();
         }
-        // Call to check expression.
-        nextFireTime();
     }
     
     /**
@@ -84,368 +160,363 @@ public final class CronExpression {
     }
     
     /**
-     * Returns next fire time computed from given date.
+     * Returns next fire time computed from given date, or {@code null} if
+     * this expression does not fire after {@code fromDate}.
      */
     public Date nextFireTime(Date fromDate) {
-        Calendar calendar = Calendar.getInstance(tz);
-        calendar.setTime(fromDate);
-        calendar.set(Calendar.MILLISECOND, 0);
-        calendar.add(Calendar.SECOND, 1);
-        
-        CronField prev = null;
-        for (ListIterator<CronField> i = fieldList.listIterator();
-                i.hasNext();) {
-            CronField field = i.next();
-            Integer prevValue = null;
-            if (prev != null) {
-                prevValue = calendar.get(prev.calendar);
-            }
-            int added = setField(calendar, field);
-            Integer unitSize = field.getUnitSize(calendar);
-            if (unitSize == null && added < 0) {
-                return null;
-            }
-            if (added > 0) {
-                clear(calendar, field);
-            }
-            if (prevValue != null) {
-                if (!prevValue.equals(calendar.get(prev.calendar))) {
-                    i = fieldList.listIterator();
-                    prev = null;
-                    continue;
-                }
+        long time = nextFireTime(fromDate.getTime());
+        return time == -1 ? null : new Date(time);
+    }
+    
+    /**
+     * Returns the next {@code count} fire times following {@code fromDate}.
+     * The returned list holds less than {@code count} elements if this
+     * expression stops firing.
+     */
+    public List<Date> nextFireTimes(Date fromDate, int count) {
+        List<Date> dates = new ArrayList<Date>(count);
+        long time = fromDate.getTime();
+        for (int i = 0; i < count; i++) {
+            time = nextFireTime(time);
+            if (time == -1) {
+                break;
             }
-            prev = field;
+            dates.add(new Date(time));
         }
-        return calendar.getTime();
+        return dates;
     }
     
-    private int setField(Calendar calendar, CronField field) {
-        String fieldValue = fields[field.index];
-        CronCharacter character = CronCharacter.parse(fieldValue);
-        if (character == null) {
-            return setNoneField(calendar, field);
-        } else {
-            if (!field.allowedCharacters.contains(character)) {
-                throw new IllegalArgumentException("Option '" + character.character + "' " +
-                        "not supported for field " + field + ".");
+    /**
+     * Returns next fire time in milliseconds computed from given time, or
+     * {@code -1} if this expression does not fire after {@code fromTime}.
+     */
+    public long nextFireTime(long fromTime) {
+        long start = floorDiv(fromTime, SECOND_MILLIS) * SECOND_MILLIS + 
+                SECOND_MILLIS;
+        long local = start + tz.getOffset(start);
+        while (true) {
+            long match = next(local);
+            if (match == NONE) {
+                return -1;
             }
-            switch (character) {
-            case ALL:
-                return setAllField(calendar, field);
-            case ANY:
-                return setAnyField(calendar, field);
-            case RANGE:
-                return setRangeField(calendar, field);
-            case ADDITIONAL:
-                return setAdditionalField(calendar, field);
-            case INCREMENT:
-                return setIncrementField(calendar, field);
-            case LAST:
-                return setLastField(calendar, field);
-            case WEEKDAY:
-                return setWeekdayField(calendar, field);
-            case NTH_DAY_OF_MONTH:
-                return setNthDayOfMonthField(calendar, field);
+            long time = toTime(match, start);
+            if (time >= start) {
+                return time;
             }
+            // Local time repeated after a daylight saving transition.
+            local = match + SECOND_MILLIS;
         }
-        return 0;
     }
     
-    private int setNoneField(Calendar calendar, CronField field) {
-        int current = calendar.get(field.calendar);
-        int value = field.getValue(fields[field.index]);
-        final int add;
-        Integer unitSize = field.getUnitSize(calendar);
-        if (unitSize == null) {
-            add = value - current;
-        } else {
-            add = (unitSize - current + value) % unitSize;
+    public String toString() {
+        return expression;
+    }
+    
+    /**
+     * Returns the first local time, expressed in milliseconds, on or after
+     * {@code local} that matches this expression.
+     */
+    private long next(long local) {
+        long days = floorDiv(local, DAY_MILLIS);
+        int time = (int) ((local - days * DAY_MILLIS) / SECOND_MILLIS);
+        int date = toDate(days);
+        int year = date >> 9;
+        int month = (date >> 5) & 0xf;
+        int day = date & 0x1f;
+        int hour = time / 3600;
+        int minute = time / 60 % 60;
+        int second = time % 60;
+        int maxYear = years == null ? year + YEAR_WINDOW : YEAR.max;
+        
+        // Each overflow of a field is picked up by the next iteration, as
+        // next() finds no bits beyond the range of a field.
+        while (year <= maxYear) {
+            if (years != null && !years.get(year)) {
+                int y = years.nextSetBit(year);
+                if (y == -1) {
+                    break;
+                }
+                year = y;
+                month = 0;
+                day = 1;
+                hour = minute = second = 0;
+            }
+            int m = next(months, month);
+            if (m == -1) {
+                year++;
+                month = 0;
+                day = 1;
+                hour = minute = second = 0;
+                continue;
+            }
+            if (m != month) {
+                month = m;
+                day = 1;
+                hour = minute = second = 0;
+            }
+            int d = nextDay(year, month, day);
+            if (d == -1) {
+                month++;
+                day = 1;
+                hour = minute = second = 0;
+                continue;
+            }
+            if (d != day) {
+                day = d;
+                hour = minute = second = 0;
+            }
+            int h = next(hours, hour);
+            if (h == -1) {
+                day++;
+                hour = minute = second = 0;
+                continue;
+            }
+            if (h != hour) {
+                hour = h;
+                minute = second = 0;
+            }
+            int mi = next(minutes, minute);
+            if (mi == -1) {
+                hour++;
+                minute = second = 0;
+                continue;
+            }
+            if (mi != minute) {
+                minute = mi;
+                second = 0;
+            }
+            int s = next(seconds, second);
+            if (s == -1) {
+                minute++;
+                second = 0;
+                continue;
+            }
+            return toDays(year, month, day) * DAY_MILLIS + 
+                    (hour * 3600L + minute * 60L + s) * SECOND_MILLIS;
         }
-        calendar.add(field.calendar, add);
-        return add;
+        return NONE;
     }
     
-    private int setAllField(Calendar calendar, CronField field) {
-        // Do nothing.
-        return 0;
+    /**
+     * Returns the first day of month on or after {@code day} that matches
+     * both the day-of-month and day-of-week fields, or {@code -1}.
+     */
+    private int nextDay(int year, int month, int day) {
+        int length = lengthOfMonth(year, month);
+        if (anyDayOfMonth && anyDayOfWeek) {
+            return day <= length ? day : -1;
+        }
+        int first = dayOfWeek(toDays(year, month, 1));
+        int weekday = 0;
+        if (lastWeekdayOfMonth) {
+            weekday = weekday(length, length, first);
+        } else if (nearestWeekday != 0) {
+            weekday = weekday(Math.min(nearestWeekday, length), length, first);
+        }
+        for (int d = day; d <= length; d++) {
+            if (matchesDayOfMonth(d, length, weekday) && 
+                    matchesDayOfWeek(d, length, (first + d - 2) % 7 + 1)) {
+                return d;
+            }
+        }
+        return -1;
     }
     
-    private int setAnyField(Calendar calendar, CronField field) {
-        // Do nothing.
-        return 0;
+    private boolean matchesDayOfMonth(int day, int length, int weekday) {
+        return anyDayOfMonth || (daysOfMonth & (1L << day)) != 0 ||
+                (lastDayOfMonth && day == length) || day == weekday;
     }
     
-    private int setRangeField(Calendar calendar, CronField field) {
-        String[] range = fields[field.index].split(RANGE.character);
-        if (range.length != 2) {
-            throw new IllegalArgumentException("Invalid " + field + " value: '" + 
-                    fields[field.index] + "'.");
+    private boolean matchesDayOfWeek(int day, int length, int dayOfWeek) {
+        if (anyDayOfWeek || (daysOfWeek & (1L << dayOfWeek)) != 0) {
+            return true;
         }
-        int lowerBound = field.getValue(range[0]);
-        int upperBound = field.getValue(range[1]);
-        int current = calendar.get(field.calendar);
-        final int value;
-        if (current < lowerBound || current > upperBound) {
-            value = lowerBound;
-        } else {
-            value = current;
+        if (dayOfWeek == lastDayOfWeek) {
+            return day + 7 > length;
         }
-        final int add;
-        Integer unitSize = field.getUnitSize(calendar);
-        if (unitSize == null) {
-            add = value - current;
-        } else {
-            add = (unitSize - current + value) % unitSize;
+        if (dayOfWeek == nthDayOfWeek) {
+            return (day + 6) / 7 == nth;
         }
-        calendar.add(field.calendar, add);
-        return add;
+        return false;
     }
     
-    private int setAdditionalField(Calendar calendar, CronField field) {
-        String[] tmp = fields[field.index].split(ADDITIONAL.character);
-        if (tmp.length == 0) {
-            throw new IllegalArgumentException("Invalid " + field + " value: '" + 
-                    fields[field.index] + "'.");
-        }
-        int[] values = new int[tmp.length];
-        for (int i = 0; i < values.length; i++) {
-            values[i] = field.getValue(tmp[i]);
-        }
-        Arrays.sort(values);
-        int current = calendar.get(field.calendar);
-        int value = values[0];
-        for (int i = 0; i < values.length; i++) {
-            if (values[i] >= current) {
-                value = values[i];
-                break;
-            }
-        }
-        final int add;
-        Integer unitSize = field.getUnitSize(calendar);
-        if (unitSize == null) {
-            add = value - current;
-        } else {
-            add = (unitSize - current + value) % unitSize;
-        }
-        calendar.add(field.calendar, add);
-        return add;
+    /**
+     * Returns the weekday nearest to {@code day}, without leaving the month.
+     */
+    private static int weekday(int day, int length, int first) {
+        int dayOfWeek = (first + day - 2) % 7 + 1;
+        if (dayOfWeek == Calendar.SATURDAY) {
+            return day == 1 ? 3 : day - 1;
+        } else if (dayOfWeek == Calendar.SUNDAY) {
+            return day == length ? day - 2 : day + 1;
+        }
+        return day;
     }
     
-    private int setIncrementField(Calendar calendar, CronField field) {
-        String[] tmp = fields[field.index].split(INCREMENT.character);
-        if (tmp.length != 2) {
-            throw new IllegalArgumentException("Invalid " + field + " value: '" + 
-                    fields[field.index] + "'.");
-        }
-        int initial = tmp[0].equals("*") ? 0 : field.getValue(tmp[0]);
-        int increment = field.getValue(tmp[1]);
-        int current = calendar.get(field.calendar);
-        final int add;
-        Integer unitSize = field.getUnitSize(calendar);
-        if (unitSize == null) {
-            int start = current - ((current % increment) - initial);
-            int value = start;
-            while (value < current) {
-                value += increment;
-            }
-            add = value - current;
-        } else {
-            int value = initial;
-            for (int i = initial; i <= unitSize; i+=increment) {
-                if (i >= current) {
-                    value = i;
-                    break;
-                }
-            }
-            add = (unitSize - current + value) % unitSize;
-        }
-        calendar.add(field.calendar, add);
-        return add;
+    /**
+     * Converts the specified local time to epoch time. Times that fall in a
+     * daylight saving gap are shifted forward, just like a lenient
+     * {@code Calendar} does. For repeated times the earliest instant on or
+     * after {@code start} is preferred.
+     */
+    private long toTime(long local, long start) {
+        int raw = tz.getRawOffset();
+        int before = tz.getOffset(local - raw - DAY_MILLIS);
+        int after = tz.getOffset(local - raw + DAY_MILLIS);
+        long time = local - before;
+        if (before == after) {
+            return time;
+        }
+        long other = local - after;
+        boolean valid = tz.getOffset(time) == before;
+        boolean otherValid = tz.getOffset(other) == after;
+        if (valid && otherValid) {
+            long lower = Math.min(time, other);
+            return lower >= start ? lower : Math.max(time, other);
+        }
+        return otherValid ? other : time;
     }
     
-    private int setLastField(Calendar calendar, CronField field) {
-        String last = fields[field.index].toUpperCase();
-        int current = calendar.get(field.calendar);
-        int add = 0;
-        if (last.equalsIgnoreCase("LW")) {
-            if (field != DAY_OF_MONTH) {
-                throw new IllegalArgumentException("'LW' option only supported " +
-                        "for Day-of-Month.");
-            }
-            int now = calendar.get(DAY_OF_MONTH.calendar);
-            int max = calendar.getActualMaximum(DAY_OF_MONTH.calendar);
-            for (int i = max ; i > 0; i++) {
-                calendar.set(DAY_OF_MONTH.calendar, i);
-                int day = calendar.get(DAY_OF_WEEK.calendar);
-                if (day >= Calendar.MONDAY || day <= Calendar.FRIDAY) {
-                    break;
-                }
-            }
-            add = calendar.get(DAY_OF_MONTH.calendar) - now;
-            assert add >= 0;
-        } else if (!last.startsWith("L")) {
-            if (field != DAY_OF_WEEK) {
-                throw new IllegalArgumentException(
-                        "'L' option only supported for Day-of-Week.");
-            }
-            int day = field.getValue(last.substring(0, last.length() - 1));
-            int now = calendar.get(DAY_OF_MONTH.calendar);
-            int value = ((7 + day - current) % 7);
-            add += value;
-            calendar.add(DAY_OF_MONTH.calendar, value);
-            while (calendar.getActualMaximum(DAY_OF_MONTH.calendar) - 7 >=
-                    calendar.get(DAY_OF_MONTH.calendar)) {
-                add += 7;
-                calendar.add(DAY_OF_MONTH.calendar, 7);
-            }
-            assert add >= 0;
-        } else {
-            int value = calendar.getActualMaximum(field.calendar);
-            calendar.set(field.calendar, value);
-            add = value - current;
-            assert add >= 0;
-        }
-        return add;
+    private static int next(long bits, int from) {
+        long remaining = bits & (-1L << from);
+        return remaining == 0 ? -1 : Long.numberOfTrailingZeros(remaining);
+    }
+    
+    private static long floorDiv(long x, long y) {
+        long q = x / y;
+        return (x % y < 0) ? q - 1 : q;
     }
     
-    private int setWeekdayField(Calendar calendar, CronField field) {
-        if (field != DAY_OF_MONTH) {
-            throw new IllegalArgumentException(
-                    "'W' option only supported for Day-of-Month.");
+    /**
+     * Returns the day of week, {@code 1} being Sunday, of the specified epoch
+     * day.
+     */
+    private static int dayOfWeek(long days) {
+        // 1970-01-01 is a Thursday.
+        return (int) ((days % 7 + 11) % 7) + 1;
+    }
+    
+    private static int lengthOfMonth(int year, int month) {
+        switch (month) {
+            case Calendar.FEBRUARY:
+                return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0 ?
+                    29 : 28;
+            case Calendar.APRIL:
+            case Calendar.JUNE:
+            case Calendar.SEPTEMBER:
+            case Calendar.NOVEMBER:
+                return 30;
+            default:
+                return 31;
         }
-        String tmp = fields[field.index];
-        int current = calendar.get(field.calendar);
-        int max = calendar.getActualMaximum(DAY_OF_MONTH.calendar);
-        int weekday = Math.min(max,
-                field.getValue(tmp.substring(0, tmp.length() - 1)));
-        calendar.set(DAY_OF_MONTH.calendar, weekday);
-        int day = calendar.get(DAY_OF_WEEK.calendar);
-        
-        final int value;
-        if (day >= Calendar.MONDAY || day <= Calendar.FRIDAY) {
-            value = weekday;
-        } else {
-            if (day == Calendar.SATURDAY) {
-                if (weekday == 1) {
-                    value = 3;
-                } else {
-                    value = weekday - 1;
+    }
+    
+    /**
+     * Returns the epoch day of the specified proleptic Gregorian date. Month
+     * is zero-based.
+     */
+    private static long toDays(int year, int month, int day) {
+        int m = month + 1;
+        long y = m <= 2 ? year - 1 : year;
+        long era = (y >= 0 ? y : y - 399) / 400;
+        int yoe = (int) (y - era * 400);
+        int doy = (153 * (m > 2 ? m - 3 : m + 9) + 2) / 5 + day - 1;
+        int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097 + doe - 719468;
+    }
+    
+    /**
+     * Returns the proleptic Gregorian date of the specified epoch day, packed
+     * as {@code year << 9 | month << 5 | day}. Month is zero-based.
+     */
+    private static int toDate(long days) {
+        long z = days + 719468;
+        long era = (z >= 0 ? z : z - 146096) / 146097;
+        int doe = (int) (z - era * 146097);
+        int yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        int doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        int mp = (5 * doy + 2) / 153;
+        int day = doy - (153 * mp + 2) / 5 + 1;
+        int month = mp < 10 ? mp + 2 : mp - 10;
+        int year = (int) (yoe + era * 400) + (month <= 1 ? 1 : 0);
+        return (year << 9) | (month << 5) | day;
+    }
+    
+    /**
+     * Parses a list of values, ranges and increments into a bit set.
+     */
+    private static BitSet parse(CronField field, String value) {
+        BitSet bits = new BitSet();
+        int size = field.max - field.min + 1;
+        for (String item : value.split(",", -1)) {
+            String range = item;
+            int step = 1;
+            int slash = item.indexOf('/');
+            if (slash != -1) {
+                range = item.substring(0, slash);
+                try {
+                    step = Integer.parseInt(item.substring(slash + 1));
+                } catch (NumberFormatException e) {
+                    step = 0;
                 }
-            } else if (day == Calendar.SUNDAY) {
-                if (weekday == max) {
-                    value = weekday - 2;
-                } else {
-                    value = weekday + 1;
+                if (step < 1) {
+                    throw new IllegalArgumentException("Invalid " + field + 
+                            " value: '" + value + "'.");
                 }
-            } else {
-                assert false;
-                value = weekday;
             }
-            calendar.set(DAY_OF_MONTH.calendar, value);
-        }
-        int add = value - current;
-        assert add >= 0;
-        return add;
-    }
-    
-    private int setNthDayOfMonthField(Calendar calendar, CronField field) {
-        String[] tmp = fields[field.index].split(NTH_DAY_OF_MONTH.character);
-        if (tmp.length != 2) {
-            throw new IllegalArgumentException("Invalid " + field + " value: '" + 
-                    fields[field.index] + "'.");
-        }
-        int day = field.getValue(tmp[0]);
-        int nth = 0;
-        try {
-            nth = Integer.parseInt(tmp[1]);
-        } catch (NumberFormatException e) {
-            throw new IllegalArgumentException(
-                    "Value after the '#' option must be an integer: '" + 
-                    tmp[1] + "''.");
-        }
-        if (nth < 1 || nth > 5) {
-            throw new IllegalArgumentException(
-                    "Value after the '#' option must be between 1 and 5.");
-        }
-        int current = calendar.get(DAY_OF_MONTH.calendar);
-        int add = -current;
-        while (true) {
-            calendar.set(DAY_OF_MONTH.calendar, 1);
-            int max = calendar.getActualMaximum(DAY_OF_MONTH.calendar);
-            int firstDay = calendar.get(DAY_OF_WEEK.calendar);
-            int v = 1 + (7 + day - firstDay) % 7;
-            int i = 1;
-            while (i < nth && (v + 7) <= max) {
-                i++;
-                v += 7;
+            final int lowerBound;
+            final int upperBound;
+            int dash = range.indexOf('-');
+            if (range.equals("*")) {
+                lowerBound = field.min;
+                upperBound = field.max;
+            } else if (dash != -1) {
+                lowerBound = field.getValue(range.substring(0, dash));
+                upperBound = field.getValue(range.substring(dash + 1));
+            } else {
+                lowerBound = field.getValue(range);
+                upperBound = slash == -1 ? lowerBound : field.max;
             }
-            if (i == nth) {
-                add += v;
-                calendar.set(DAY_OF_MONTH.calendar, v);
-                if (add >= 0) {
-                    break;
-                }
+            // Ranges may wrap around, for instance FRI-MON.
+            int span = (upperBound - lowerBound + size) % size;
+            for (int i = 0; i <= span; i += step) {
+                bits.set(field.min + (lowerBound - field.min + i) % size);
             }
-            calendar.add(MONTH.calendar, 1);
-            add += max;
         }
-        return add;
+        return bits;
     }
     
-    private void clear(Calendar calendar, CronField field) {
-        if (field == YEAR) {
-            calendar.set(MONTH.calendar, calendar.getActualMinimum(MONTH.calendar));
-            field = MONTH;
-        }
-        if (field == MONTH) {
-            calendar.set(DAY_OF_MONTH.calendar, calendar.getActualMinimum(DAY_OF_MONTH.calendar));
-            field = DAY_OF_MONTH;
-        }
-        if (field == DAY_OF_MONTH) {
-            field = DAY_OF_WEEK;
-        }
-        if (field == DAY_OF_WEEK) {
-            calendar.set(HOUR.calendar, calendar.getActualMinimum(HOUR.calendar));
-            field = HOUR;
-        }
-        if (field == HOUR) {
-            calendar.set(MINUTE.calendar, calendar.getActualMinimum(MINUTE.calendar));
-            field = MINUTE;
-        }
-        if (field == MINUTE) {
-            calendar.set(SECOND.calendar, calendar.getActualMinimum(SECOND.calendar));
+    private static long toLong(BitSet bits) {
+        long l = 0;
+        for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+            l |= 1L << i;
         }
+        return l;
     }
     
     enum CronField {
-        YEAR(6, Calendar.YEAR, EnumSet.<CronCharacter>of(
-                ALL, RANGE, ADDITIONAL, INCREMENT)),
-        MONTH(4, Calendar.MONTH, EnumSet.<CronCharacter>of(
-                ALL, RANGE, ADDITIONAL, INCREMENT)),
-        DAY_OF_WEEK(5, Calendar.DAY_OF_WEEK, EnumSet.<CronCharacter>of(
-                ALL, RANGE, ADDITIONAL, INCREMENT, ANY, LAST, NTH_DAY_OF_MONTH)),
-        DAY_OF_MONTH(3, Calendar.DAY_OF_MONTH, EnumSet.<CronCharacter>of(
-                ALL, RANGE, ADDITIONAL, INCREMENT, ANY, LAST, WEEKDAY)),
-        HOUR(2, Calendar.HOUR_OF_DAY, EnumSet.<CronCharacter>of(
-                ALL, RANGE, ADDITIONAL, INCREMENT)),
-        MINUTE(1, Calendar.MINUTE, EnumSet.<CronCharacter>of(
-                ALL, RANGE, ADDITIONAL, INCREMENT)),
-        SECOND(0, Calendar.SECOND, EnumSet.<CronCharacter>of(
-                ALL, RANGE, ADDITIONAL, INCREMENT));
+        YEAR(6, 1970, 2099),
+        MONTH(4, 0, 11),
+        DAY_OF_WEEK(5, 1, 7),
+        DAY_OF_MONTH(3, 1, 31),
+        HOUR(2, 0, 23),
+        MINUTE(1, 0, 59),
+        SECOND(0, 0, 59);
         
         private final int index;
-        private final int calendar;
-        private final Set<CronCharacter> allowedCharacters;
+        private final int min;
+        private final int max;
         
-        CronField(int index, int calendar,
-                Set<CronCharacter> allowedCharacters) {
+        CronField(int index, int min, int max) {
             this.index = index;
-            this.calendar = calendar;
-            this.allowedCharacters = allowedCharacters;
+            this.min = min;
+            this.max = max;
         }
         
         public int getValue(String str) {
+            if (str.length() == 0) {
+                throw new IllegalArgumentException(this + " value missing.");
+            }
             final int value;
             try {
                 switch (this) {
@@ -544,69 +615,6 @@ public final class CronExpression {
                         " value not an integer: '" + str + "'.");
             }
         }
-        
-        public Integer getUnitSize(Calendar c) {
-            switch (this) {
-                case YEAR:
-                    return null;
-                case MONTH:
-                    return 12;
-                case DAY_OF_WEEK:
-                    return 7;
-                case DAY_OF_MONTH:
-                    return c.getActualMaximum(calendar);
-                case HOUR:
-                    return 24;
-                case MINUTE:
-                    return 60;
-                case SECOND:
-                    return 60;
-                default:
-                    return null;
-            }
-        }
-    }
-    
-    enum CronCharacter {
-        RANGE("-"),
-        ADDITIONAL(","),
-        INCREMENT("/"),
-        NTH_DAY_OF_MONTH("#"),
-        LAST("L"),
-        WEEKDAY("W"),
-        ALL("*"),
-        ANY("?");
-        
-        private String character;
-        CronCharacter(String character) {
-            this.character = character;
-        }
-        
-        public static CronCharacter parse(String value) throws
-                IllegalArgumentException {
-            CronCharacter c = null;
-            Set<CronCharacter> all = EnumSet.allOf(CronCharacter.class);
-            for (CronCharacter cc : all) {
-                if (value.toUpperCase().indexOf(cc.character) != -1) {
-                    if (value.startsWith("WED")) {
-                        continue;
-                    }
-                    if (c != null) {
-                        // Special cases:
-                        if (value.equalsIgnoreCase("LW")) {
-                            break;
-                        } else if (value.startsWith("*/")) {
-                            break;
-                        } else if (value.indexOf("#") != -1) {
-                            break;
-                        }
-                        throw new IllegalArgumentException(value);
-                    }
-                    c = cc;
-                }
-            }
-            return c;
-        }
     }
     
     enum CronMonth {
@@ -0,0 +1,117 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Beanlet - JSE Application Container.
+ * Copyright (C) 2006  Leon van Zantvoort
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ * 
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://beanlet.org
+ */
+package org.beanlet.impl;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Beanlet domains that are visible by name while beanlets are being 
+ * defined. A scope that is created for an outer scope sees the domains of 
+ * the outer scope that were defined before the scope was created, plus the 
+ * domains that are put into the scope itself.</p>
+ *
+ * <p>This gives each beanlet the same view as a copy of the outer map would,
+ * without copying.</p>
+ *
+ * @author Leon van Zantvoort
+ */
+final class DomainScope {
+    
+    private static final class Entry {
+        
+        final XMLAnnotationDomain<?> domain;
+        final int ordinal;
+        final Entry previous;
+        
+        Entry(XMLAnnotationDomain<?> domain, int ordinal, Entry previous) {
+            this.domain = domain;
+            this.ordinal = ordinal;
+            this.previous = previous;
+        }
+    }
+    
+    private final DomainScope outer;
+    private final int limit;
+    private final Map<String, Entry> entries;
+    private int count;
+    
+    public DomainScope() {
+        this(null);
+    }
+    
+    public DomainScope(DomainScope outer) {
+        this.outer = outer;
+        this.limit = outer == null ? 0 : outer.count;
+        this.entries = new LinkedHashMap<String, Entry>();
+    }
+    
+    public XMLAnnotationDomain<?> get(String beanletName) {
+        return get(beanletName, Integer.MAX_VALUE);
+    }
+    
+    private XMLAnnotationDomain<?> get(String beanletName, int max) {
+        // Replaced entries are kept, as inner scopes may still see them.
+        for (Entry entry = entries.get(beanletName); entry != null; 
+                entry = entry.previous) {
+            if (entry.ordinal < max) {
+                return entry.domain;
+            }
+        }
+        return outer == null ? null : outer.get(beanletName, limit);
+    }
+    
+    /**
+     * Returns the domain that was previously put into this scope under the
+     * specified name, if any.
+     */
+    public XMLAnnotationDomain<?> put(String beanletName, 
+            XMLAnnotationDomain<?> domain) {
+        Entry previous = entries.get(beanletName);
+        entries.put(beanletName, new Entry(domain, count++, previous));
+        return previous == null ? null : previous.domain;
+    }
+    
+    /**
+     * Returns the domains of this scope, in the order in which they were
+     * defined.
+     */
+    public List<XMLAnnotationDomain<?>> values() {
+        List<XMLAnnotationDomain<?>> list = 
+                new ArrayList<XMLAnnotationDomain<?>>(entries.size());
+        for (Entry entry : entries.values()) {
+            list.add(entry.domain);
+        }
+        return list;
+    }
+}
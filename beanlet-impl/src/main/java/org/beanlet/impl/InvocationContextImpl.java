@@ -43,17 +43,35 @@ import org.jargo.Invocation;
  */
 public abstract class InvocationContextImpl implements InvocationContext {
     
+    /**
+     * Returns the beanlet view of the specified {@code ctx}. The view is 
+     * attached to {@code ctx}, so that all interceptors of a chain share the 
+     * same instance, without thread locals or allocations per interceptor.
+     */
+    public static InvocationContext getInstance(
+            org.jargo.InvocationContext ctx) {
+        Object attachment = ctx.get();
+        if (attachment instanceof AttachedInvocationContext) {
+            AttachedInvocationContext a = 
+                    (AttachedInvocationContext) attachment;
+            if (a.ctx == ctx) {
+                return a;
+            }
+            // Context data is shared with the rest of the chain.
+            a = new AttachedInvocationContext(ctx, a.root);
+            ctx.set(a);
+            return a;
+        }
+        AttachedInvocationContext a = new AttachedInvocationContext(ctx, null);
+        ctx.set(a);
+        return a;
+    }
+    
     protected abstract org.jargo.InvocationContext getInvocationContext();
     
     public Map<String, Object> getContextData() {
-        org.jargo.InvocationContext ctx = getInvocationContext();
-        @SuppressWarnings("unchecked")
-        Map<String, Object> map = (Map<String, Object>) ctx.get();
-        if (map == null) {
-            map = new HashMap<String, Object>();
-            ctx.set(map);
-        }
-        return map;
+        return ((AttachedInvocationContext) getInstance(
+                getInvocationContext())).getContextData();
     }
     
     public Method getMethod() {
@@ -98,4 +116,29 @@ public abstract class InvocationContextImpl implements InvocationContext {
     public Object getTarget() {
         return getInvocationContext().getTarget();
     }
+    
+    private static final class AttachedInvocationContext extends 
+            InvocationContextImpl {
+        
+        private final org.jargo.InvocationContext ctx;
+        private final AttachedInvocationContext root;
+        private Map<String, Object> data;
+        
+        private AttachedInvocationContext(org.jargo.InvocationContext ctx,
+                AttachedInvocationContext root) {
+            this.ctx = ctx;
+            this.root = root == null ? this : root;
+        }
+        
+        protected org.jargo.InvocationContext getInvocationContext() {
+            return ctx;
+        }
+        
+        public Map<String, Object> getContextData() {
+            if (root.data == null) {
+                root.data = new HashMap<String, Object>();
+            }
+            return root.data;
+        }
+    }
 }
@@ -42,10 +42,11 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import org.beanlet.common.AbstractProvider;
-import org.beanlet.common.InvocationImpl;
+import org.beanlet.common.MethodInvoker;
+import org.beanlet.common.WeakIdentityMap;
 import org.jargo.ComponentConfiguration;
 import org.beanlet.AroundInvoke;
 import org.beanlet.BeanletException;
@@ -85,13 +86,38 @@ public final class InvocationInterceptorFactoryProviderImpl extends AbstractProv
         }
     }
     
-    // PENDING: apply equality check based on identity on this map?
-    private final Map<Object, Map<Class, List<Interceptor>>> interceptorMap;
+    /**
+     * Interceptor instances per beanlet instance, scoped by component. 
+     * Beanlet instances are held weakly and compared by identity.
+     */
+    private final ConcurrentMap<ComponentConfiguration, 
+            WeakIdentityMap<Object, Map<Class, List<Interceptor>>>> interceptorMaps;
     
     public InvocationInterceptorFactoryProviderImpl() {
-        // PENDING: replace WeakHashMap by a WeakIdentityHashMap.
-        interceptorMap = Collections.synchronizedMap(
-                new WeakHashMap<Object, Map<Class, List<Interceptor>>>());
+        interceptorMaps = new ConcurrentHashMap<ComponentConfiguration, 
+                WeakIdentityMap<Object, Map<Class, List<Interceptor>>>>();
+    }
+    
+    private WeakIdentityMap<Object, Map<Class, List<Interceptor>>> 
+            getInterceptorMap(final ComponentConfiguration configuration) {
+        WeakIdentityMap<Object, Map<Class, List<Interceptor>>> interceptorMap =
+                interceptorMaps.get(configuration);
+        if (interceptorMap == null) {
+            interceptorMap = 
+                    new WeakIdentityMap<Object, Map<Class, List<Interceptor>>>();
+            WeakIdentityMap<Object, Map<Class, List<Interceptor>>> tmp = 
+                    interceptorMaps.putIfAbsent(configuration, interceptorMap);
+            if (tmp == null) {
+                configuration.getComponentUnit().addDestroyHook(new Runnable() {
+                    public void run() {
+                        interceptorMaps.remove(configuration);
+                    }
+                });
+            } else {
+                interceptorMap = tmp;
+            }
+        }
+        return interceptorMap;
     }
     
     public List<InvocationInterceptorFactory> getInvocationInterceptorFactories(
@@ -222,14 +248,6 @@ public final class InvocationInterceptorFactoryProviderImpl extends AbstractProv
         InvocationInterceptorFactory factory = null;
         if (configuration instanceof BeanletConfiguration) {
             if (Interceptor.class.isAssignableFrom(configuration.getType())) {
-                final ThreadLocal<org.jargo.InvocationContext> local =
-                        new ThreadLocal<org.jargo.InvocationContext>();
-                final InvocationContext newCtx = new InvocationContextImpl() {
-                    protected org.jargo.InvocationContext
-                            getInvocationContext() {
-                        return local.get();
-                    }
-                };
                 factory = new InvocationInterceptorFactory() {
                     public Class<?> getType() {
                         return configuration.getType();
@@ -248,8 +266,8 @@ public final class InvocationInterceptorFactoryProviderImpl extends AbstractProv
                             }
                             public Object intercept(final org.jargo.InvocationContext ctx)
                                     throws Exception {
-                                local.set(ctx);
-                                return ((Interceptor) instance).intercept(newCtx);
+                                return ((Interceptor) instance).intercept(
+                                        InvocationContextImpl.getInstance(ctx));
                             }
                             public String toString() {
                                 return "InvocationInterceptorAdapter[" + getInstance() + "]@" +
@@ -280,14 +298,7 @@ public final class InvocationInterceptorFactoryProviderImpl extends AbstractProv
                     throw new BeanletValidationException(configuration.getComponentName(),
                             "Method MUST specify InvocationContext as parameter: '" + method + "'.");
                 }
-                final ThreadLocal<org.jargo.InvocationContext> local =
-                        new ThreadLocal<org.jargo.InvocationContext>();
-                final InvocationContext newCtx = new InvocationContextImpl() {
-                    protected org.jargo.InvocationContext
-                            getInvocationContext() {
-                        return local.get();
-                    }
-                };
+                final MethodInvoker invoker = new MethodInvoker(method);
                 factory = new InvocationInterceptorFactory() {
                     public Class<?> getType() {
                         return configuration.getType();
@@ -306,8 +317,8 @@ public final class InvocationInterceptorFactoryProviderImpl extends AbstractProv
                             }
                             public Object intercept(final org.jargo.InvocationContext ctx)
                                     throws Exception {
-                                local.set(ctx);
-                                return InvocationImpl.invoke(instance, method, newCtx);
+                                return invoker.invoke(instance, 
+                                        InvocationContextImpl.getInstance(ctx));
                             }
                             public String toString() {
                                 return "InvocationInterceptorAdapter[" + getInstance() + "]@" +
@@ -326,22 +337,14 @@ public final class InvocationInterceptorFactoryProviderImpl extends AbstractProv
         List<InvocationInterceptor> transformed =
                 new ArrayList<InvocationInterceptor>();
         for (final Interceptor interceptor : interceptors) {
-            final ThreadLocal<org.jargo.InvocationContext> local =
-                    new ThreadLocal<org.jargo.InvocationContext>();
-            final InvocationContext newCtx = new InvocationContextImpl() {
-                protected org.jargo.InvocationContext
-                        getInvocationContext() {
-                    return local.get();
-                }
-            };
+            final Object instance;
+            if (interceptor instanceof InterceptorAdapter) {
+                instance = ((InterceptorAdapter) interceptor).getInstance();
+            } else {
+                instance = interceptor;
+            }
             transformed.add(new InvocationInterceptorAdapter() {
                 public Object getInstance() {
-                    final Object instance;
-                    if (interceptor instanceof InterceptorAdapter) {
-                        instance = ((InterceptorAdapter) interceptor).getInstance();
-                    } else {
-                        instance = interceptor;
-                    }
                     return instance;
                 }
                 public boolean isLifecycleInterceptor() {
@@ -349,8 +352,8 @@ public final class InvocationInterceptorFactoryProviderImpl extends AbstractProv
                 }
                 public Object intercept(final org.jargo.InvocationContext ctx)
                         throws Exception {
-                    local.set(ctx);
-                    return interceptor.intercept(newCtx);
+                    return interceptor.intercept(
+                            InvocationContextImpl.getInstance(ctx));
                 }
                 public String toString() {
                     return "InvocationInterceptorAdapter[" + getInstance() + "]@" +
@@ -365,6 +368,8 @@ public final class InvocationInterceptorFactoryProviderImpl extends AbstractProv
             ConstructorInjection injection, Class<?> cls, 
             BeanletConfiguration configuration) {
         final List<Interceptor> interceptors;
+        WeakIdentityMap<Object, Map<Class, List<Interceptor>>> interceptorMap =
+                getInterceptorMap(configuration);
         Map<Class, List<Interceptor>> map = interceptorMap.get(instance);
         if (map != null && map.containsKey(cls)) {
             interceptors = map.get(cls);
@@ -435,10 +440,12 @@ public final class InvocationInterceptorFactoryProviderImpl extends AbstractProv
                                     continue;
                                 }
                             }
+                            final MethodInvoker invoker = 
+                                    new MethodInvoker(method);
                             interceptors.add(new InterceptorAdapter() {
                                 public Object intercept(InvocationContext ctx)
                                         throws Exception {
-                                    return InvocationImpl.invoke(o, method, ctx);
+                                    return invoker.invoke(o, ctx);
                                 }
                                 public Object getInstance() {
                                     return o;
@@ -476,7 +483,11 @@ public final class InvocationInterceptorFactoryProviderImpl extends AbstractProv
 
             if (map == null) {
                 map = new ConcurrentHashMap<Class, List<Interceptor>>();
-                interceptorMap.put(instance, map);
+                Map<Class, List<Interceptor>> existing = 
+                        interceptorMap.putIfAbsent(instance, map);
+                if (existing != null) {
+                    map = existing;
+                }
             }
             map.put(cls, interceptors);
         }
@@ -264,14 +264,7 @@ public final class LifecycleProviderImpl extends AbstractProvider implements
             public Object[] getParameters() {
                 final org.jargo.InvocationContext ctx  = 
                         (org.jargo.InvocationContext) super.getParameters()[0];
-                return new Object[] {
-                    new InvocationContextImpl() {
-                        protected org.jargo.InvocationContext 
-                                getInvocationContext() {
-                            return ctx;
-                        }
-                    }
-                };
+                return new Object[] {InvocationContextImpl.getInstance(ctx)};
             }
         };
     }
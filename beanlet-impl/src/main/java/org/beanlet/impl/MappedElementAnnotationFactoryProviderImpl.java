@@ -67,6 +67,7 @@ public final class MappedElementAnnotationFactoryProviderImpl extends AbstractPr
         map.put("pre-destroy", PreDestroy.class);
         map.put("proxy-method", ProxyMethod.class);
         map.put("operation", Operation.class);
+        map.put("pool", Pool.class);
         map.put("remove", Remove.class);
         map.put("execute", Execute.class);
         map.put("schedule", Schedule.class);
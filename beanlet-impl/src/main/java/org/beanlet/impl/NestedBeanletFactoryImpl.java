@@ -31,7 +31,6 @@
 package org.beanlet.impl;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -53,7 +52,7 @@ final class NestedBeanletFactoryImpl implements NestedBeanletFactory {
     private final ClassLoader loader;
     private final ElementAnnotationFactory annotationFactory;
     private final ClassResolver resolver;
-    private final Map<String, XMLAnnotationDomain<?>> map;
+    private final DomainScope scope;
 
     private final Map<String, Node> nodes;
 
@@ -63,12 +62,12 @@ final class NestedBeanletFactoryImpl implements NestedBeanletFactory {
             ClassLoader loader, 
             ElementAnnotationFactory annotationFactory, 
             ClassResolver resolver, 
-            Map<String, XMLAnnotationDomain<?>> map) {
+            DomainScope scope) {
         this.outerBeanletName = outerBeanletName;
         this.loader = loader;
         this.annotationFactory = annotationFactory;
         this.resolver = resolver;
-        this.map = map;
+        this.scope = scope;
         this.nodes = new LinkedHashMap<String, Node>();
         this.inContext = new AtomicBoolean(true);
     }
@@ -119,27 +118,26 @@ final class NestedBeanletFactoryImpl implements NestedBeanletFactory {
             Node parentNode = attributes.getNamedItem("parent");
             if (parentNode != null) {
                 String parent = parentNode.getNodeValue();
-                parentDomain = map.get(parent);
+                parentDomain = scope.get(parent);
                 if (parentDomain == null) {
                     throw new BeanletDefinitionException(beanletName,
                             "Parent does not exist: '" + parent + "'.");
                 }
             }
-            // Add domain to map, so that it is available at nestedFactory.get.
-            Map<String, XMLAnnotationDomain<?>> parentDomains = 
-                    new HashMap<String, XMLAnnotationDomain<?>>(map);
+            // Add domain to scope, so that it is available at nestedFactory.get.
+            DomainScope parentDomains = new DomainScope(scope);
             NestedBeanletFactoryImpl nestedFactory = 
                     new NestedBeanletFactoryImpl(beanletName, loader, 
                     annotationFactory, resolver, parentDomains);
             XMLAnnotationDomain<?> domain = XMLAnnotationDomain.createNestedDomain(beanletName, 
                     beanletNode, loader, annotationFactory, resolver, 
                     parentDomain, nestedFactory);
-            map.put(beanletName, domain);
+            scope.put(beanletName, domain);
             parentDomains.put(beanletName, domain);
             String nestedBeanletName = beanletName.substring(
                     outerBeanletName.length() + 1);
             if (!nestedBeanletName.startsWith("$")) {
-                map.put(nestedBeanletName, domain);
+                scope.put(nestedBeanletName, domain);
                 parentDomains.put(nestedBeanletName, domain);
             }
             list.add(domain);
@@ -32,9 +32,12 @@ package org.beanlet.impl;
 
 import java.lang.reflect.Method;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Set;
 import org.beanlet.common.InvocationImpl;
+import org.beanlet.common.MethodInvoker;
 import org.beanlet.event.OperationEvent;
 import org.beanlet.common.event.OperationEventImpl;
 import org.jargo.ComponentConfiguration;
@@ -51,6 +54,7 @@ public final class OperationInvocationFactoryImpl implements
     private final Operations operations;
     private final ProxyMethods proxyMethods;
     private final Set<Method> methods;
+    private final Map<Method, MethodInvoker> invokers;
     
     public OperationInvocationFactoryImpl(ComponentConfiguration 
             configuration) {
@@ -65,6 +69,13 @@ public final class OperationInvocationFactoryImpl implements
         }
         
         this.methods = Collections.unmodifiableSet(tmp);
+        
+        // Compiled once, the map is read-only from here on.
+        Map<Method, MethodInvoker> map = new HashMap<Method, MethodInvoker>();
+        for (Method method : methods) {
+            map.put(method, new MethodInvoker(method));
+        }
+        this.invokers = map;
     }
 
     public Set<Method> getMethods() {
@@ -85,7 +96,7 @@ public final class OperationInvocationFactoryImpl implements
             Method method = operations.getMethod(operationEvent.getOperationName(), 
                     operationEvent.getParameterTypes());
             if (method != null) {
-                invocation = new InvocationImpl(method, 
+                invocation = new InvocationImpl(getInvoker(method), 
                         operationEvent.getParameters());
             } else {
                 method = proxyMethods.getProxyMethod();
@@ -95,7 +106,7 @@ public final class OperationInvocationFactoryImpl implements
                         operationEvent.getParameterTypes(),
                         operationEvent.getParameters()
                     };
-                    invocation = new InvocationImpl(method, args);
+                    invocation = new InvocationImpl(getInvoker(method), args);
                 } else {
                     invocation = null;
                 }
@@ -105,4 +116,9 @@ public final class OperationInvocationFactoryImpl implements
         }
         return invocation;
     }
+    
+    private MethodInvoker getInvoker(Method method) {
+        MethodInvoker invoker = invokers.get(method);
+        return invoker == null ? new MethodInvoker(method) : invoker;
+    }
 }
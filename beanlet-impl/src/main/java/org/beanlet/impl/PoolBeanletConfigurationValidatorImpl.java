@@ -0,0 +1,80 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Beanlet - JSE Application Container.
+ * Copyright (C) 2006  Leon van Zantvoort
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ * 
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://beanlet.org
+ */
+package org.beanlet.impl;
+
+import org.beanlet.BeanletValidationException;
+import org.beanlet.Pool;
+import org.beanlet.Stateless;
+import org.beanlet.annotation.AnnotationDomain;
+import org.beanlet.annotation.TypeElement;
+import org.beanlet.plugin.BeanletConfiguration;
+import org.beanlet.plugin.BeanletConfigurationValidator;
+
+/**
+ *
+ * @author Leon van Zantvoort
+ */
+public final class PoolBeanletConfigurationValidatorImpl implements 
+        BeanletConfigurationValidator {
+    
+    public void validate(BeanletConfiguration configuration) throws
+            BeanletValidationException {
+        AnnotationDomain domain = configuration.getAnnotationDomain();
+        TypeElement element = TypeElement.instance(configuration.getType());
+        Pool pool = domain.getDeclaration(Pool.class).getAnnotation(element);
+        if (pool != null) {
+            Stateless stateless = domain.getDeclaration(Stateless.class).
+                    getAnnotation(element);
+            if (stateless == null || stateless.reentrant()) {
+                throw new BeanletValidationException(configuration.getComponentName(),
+                        "Pool annotation is only supported for non-reentrant " +
+                        "stateless beanlets: '" + pool + "'.");
+            }
+            if (pool.minSize() < 0 || pool.maxSize() < 0 || 
+                    pool.maxIdle() < 0 || pool.warmUp() < 0 || 
+                    pool.idleTimeout() < 0) {
+                throw new BeanletValidationException(configuration.getComponentName(),
+                        "Pool settings MUST NOT be negative: '" + pool + "'.");
+            }
+            if (pool.evictionInterval() <= 0) {
+                throw new BeanletValidationException(configuration.getComponentName(),
+                        "Pool eviction interval MUST be positive: '" + pool + "'.");
+            }
+            int maxSize = stateless.singleton() ? 1 : pool.maxSize();
+            if (maxSize > 0 && (pool.minSize() > maxSize || 
+                    pool.warmUp() > maxSize)) {
+                throw new BeanletValidationException(configuration.getComponentName(),
+                        "Pool minimum size and warm up MUST NOT exceed " +
+                        "maximum size: '" + pool + "'.");
+            }
+        }
+    }
+}
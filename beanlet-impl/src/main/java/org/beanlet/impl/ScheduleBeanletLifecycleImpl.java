@@ -39,10 +39,13 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import org.beanlet.common.event.ScheduleEventImpl;
 import org.jargo.ComponentEventException;
 import org.jargo.ComponentFactory;
@@ -51,12 +54,22 @@ import org.jargo.ComponentReferenceLifecycle;
 import org.jargo.ComponentLifecycle;
 import org.jargo.Event;
 
+/**
+ * Deadlines are tracked by the shared {@code BeanletTimer}. A thread of the 
+ * beanlet's executor is only claimed once a deadline has passed, and it is
+ * released again after the schedule method has been executed.
+ *
+ * @author Leon van Zantvoort
+ */
 public final class ScheduleBeanletLifecycleImpl<T> implements ComponentLifecycle<T>,
         ComponentReferenceLifecycle<T> {
 
     private static final Event event = new ScheduleEventImpl();
+    private static final Logger logger = 
+            Logger.getLogger(ScheduleBeanletLifecycleImpl.class.getName());
     
     private final Executor executor;
+    private final ScheduledExecutorService timer;
     private final int threads;
     private final boolean once;
     private final long initialDelay;
@@ -72,14 +85,12 @@ public final class ScheduleBeanletLifecycleImpl<T> implements ComponentLifecycle
     private final ThreadLocal<Future> threadLocal;
     private final CountDownLatch latch;
     
-    private final Lock lock;
-    private final Condition condition;
-    
     public ScheduleBeanletLifecycleImpl(Executor executor,
             boolean once, long initialDelay, long delay, long rate, 
             CronExpression cron, boolean fireAll, boolean interrupt, 
             boolean join) {
         this.executor = executor;
+        this.timer = BeanletTimer.getInstance();
         this.threads = 1;
         this.once = once;
         this.initialDelay = initialDelay;
@@ -96,8 +107,6 @@ public final class ScheduleBeanletLifecycleImpl<T> implements ComponentLifecycle
         for (int i = 0; i < threads; i++) {
             futures.add(i, new AtomicReference<Future>());
         }
-        this.lock = new ReentrantLock();
-        this.condition = lock.newCondition();
     }
     
     public void onCreate(ComponentFactory<T> factory) {
@@ -142,202 +151,69 @@ public final class ScheduleBeanletLifecycleImpl<T> implements ComponentLifecycle
             }
         });
         for (int i = 0; i < threads; i++) {
-            final AtomicReference<Future> future = futures.get(i);
-            
-            final AtomicReference<Throwable> throwable = 
-                    new AtomicReference<Throwable>();
-
-            final Runnable runnable = new Runnable() {
-                public void run() {
-                    try {
-                        ref.execute(event);
-                    } catch (ComponentEventException e) {
-                        throwable.set(e);
-                        throw e;
-                    } catch (RuntimeException e) {
-                        throwable.set(e);
-                        throw e;
-                    } catch (Error e) {
-                        throwable.set(e);
-                        throw e;
-                    }
-                }
-            };
-
-            final long start = System.currentTimeMillis();
-            class Task extends FutureTask<Object> {
-                private Date deadline;
-                Task(Runnable runnable) {
-                    this(runnable, null);
-                }
-                Task(Runnable runnable, Date deadline) {
-                    super(runnable, null);
-                    this.deadline = deadline;
+            Trigger trigger = new Trigger(ref, loader, futures.get(i));
+            long start = System.currentTimeMillis();
+            Date deadline = new Date(start + initialDelay);
+            if (cron != null) {
+                deadline = cron.nextFireTime(deadline);
+            }
+            if (deadline == null) {
+                trigger.finish();
+            } else {
+                Task task = new Task(trigger, deadline);
+                trigger.future.set(task);
+                trigger.dispatch(task);
+            }
+        }
+    }
+    
+    private Date nextFireTime(Date deadline) {
+        if (delay > 0) {
+            return new Date(System.currentTimeMillis() + delay);
+        } else if (cron != null || rate > 0) {
+            if (fireAll) {
+                if (cron != null) {
+                    return cron.nextFireTime(deadline);
+                } else {
+                    return new Date(deadline.getTime() + rate);
                 }
-                public void run() {
-                    final ClassLoader org = AccessController.doPrivileged(
-                            new PrivilegedAction<ClassLoader>() {
-                        public ClassLoader run() {
-                            Thread thread = Thread.currentThread();
-                            // PERMISSION: java.lang.RuntimePermission getClassLoader
-                            ClassLoader tmp = thread.getContextClassLoader();
-                            // PERMISSION: java.lang.RuntimePermission getClassLoader
-                            thread.setContextClassLoader(loader);
-                            return tmp;
-                        }
-                    });
-                    try {
-                        try {
-                            threadLocal.set(this);
-                            do {
-                                if (deadline == null) {
-                                    // This is only executed once.
-                                    if (initialDelay > 0 || cron != null) {
-                                        deadline = new Date(start + initialDelay);
-                                        if (cron != null) {
-                                            deadline = cron.nextFireTime(deadline);
-                                        }
-                                        while (!isDone() && ref.isValid()) {
-                                            lock.lock();
-                                            try {
-                                                if (!condition.awaitUntil(deadline)) {
-                                                    break;
-                                                }
-                                            } catch (InterruptedException e) {
-                                                // Ignore.
-                                            } finally {
-                                                lock.unlock();
-                                            }
-                                        }
-                                        if (isDone() || !ref.isValid()) {
-                                            // Prevent first execution if 
-                                            // component is destroyed during
-                                            // initial delay.
-                                            break;
-                                        }
-                                    } else {
-                                        deadline = new Date(start);
-                                    }
-                                } else {
-                                    while (!once && !isDone() && ref.isValid() && 
-                                            deadline != null) {
-                                        lock.lock();
-                                        try {
-                                            if (!condition.awaitUntil(deadline)) {
-                                                break;
-                                            }
-                                        } catch (InterruptedException e) {
-                                            // Ignore.
-                                        } finally {
-                                            lock.unlock();
-                                        }
-                                    }
-                                }
-                                runAndReset();
-                                if (delay > 0) {
-                                    deadline = new Date(
-                                            System.currentTimeMillis() + delay);
-                                } else if (cron != null || rate > 0) {
-                                    if (fireAll) {
-                                        if (cron != null) {
-                                            deadline = cron.nextFireTime(deadline);
-                                        } else if (rate > 0) {
-                                            deadline = new Date(deadline.getTime() + rate);
-                                        } else {
-                                            assert false;
-                                        }
-                                    } else {
-                                        Date now = new Date();
-                                        do {
-                                            if (cron != null) {
-                                                deadline = cron.nextFireTime(now);
-                                            } else if (rate > 0) {
-                                                deadline = new Date(deadline.getTime() + rate);
-                                            } else {
-                                                assert false;
-                                            }
-                                        } while (deadline != null && 
-                                                deadline.before(now));
-                                    }
-                                }
-                            } while (!once && !isDone() && ref.isValid() &&
-                                    deadline != null);
-                        } finally {
-                            if (!once && ref.isValid() && deadline != null) {
-                                Task task = new Task(runnable, deadline);
-                                future.set(task);
-                                if (!isCancelled()) {
-                                    executor.execute(task);
-                                } else {
-                                    future.set(null);
-                                    if (threadLocal.get() != null) {
-                                        latch.countDown();
-                                        threadLocal.remove();
-                                    }
-                                }
-                            } else {
-                                if (threadLocal.get() != null) {
-                                    latch.countDown();
-                                    threadLocal.remove();
-                                }
-                            }
-                            try {
-                                Throwable t = throwable.get();
-                                if (t != null) {
-                                    throw t;
-                                }
-                            } catch (RuntimeException e) {
-                                throw e;
-                            } catch (Error e) {
-                                throw e;
-                            } catch (Throwable t) {
-                                assert false : t;
-                            }
-                        }
-                    } finally {
-                        // Cleary possible interrupted state.
-                        Thread.interrupted();
-                        
-                        AccessController.doPrivileged(
-                                new PrivilegedAction<Object>() {
-                            public Object run() {
-                                // PERMISSION: java.lang.RuntimePermission setContextClassLoader
-                                Thread.currentThread().setContextClassLoader(org);
-                                return null;
-                            }
-                        });
+            } else {
+                Date now = new Date();
+                do {
+                    if (cron != null) {
+                        deadline = cron.nextFireTime(now);
+                    } else {
+                        deadline = new Date(deadline.getTime() + rate);
                     }
-                }
-            };
-            
-            Task task = new Task(runnable);
-            future.set(task);
-            executor.execute(task);
+                } while (deadline != null && deadline.before(now));
+                return deadline;
+            }
+        } else {
+            // Execute again right away.
+            return deadline;
         }
     }
     
     private void doDestroy(ComponentReference reference) {
         Future localFuture = threadLocal.get();
+        boolean purge = false;
         for (AtomicReference<Future> future : futures) {
             Future f = future.getAndSet(null);
             if (f != localFuture) {
                 if (f != null) {
                     f.cancel(interrupt);
+                    purge |= ((Task) f).abandon();
                 }
             }
         }
-
-        lock.lock();
-        try {
-            condition.signalAll();
-        } finally {
-            lock.unlock();
+        if (purge) {
+            BeanletTimer.purge();
         }
         
         if (join) {
             if (localFuture != null) {
                 // Prevent a deadlock.
-                latch.countDown();
+                ((Task) localFuture).trigger.finish();
                 threadLocal.remove();
             }
             try {
@@ -351,4 +227,183 @@ public final class ScheduleBeanletLifecycleImpl<T> implements ComponentLifecycle
             localFuture.cancel(interrupt);
         }
     }
+    
+    /**
+     * Keeps track of the tasks that execute the schedule method for a single
+     * beanlet reference. 
+     */
+    private final class Trigger {
+        
+        private final ComponentReference ref;
+        private final ClassLoader loader;
+        private final AtomicReference<Future> future;
+        private final AtomicBoolean finished;
+        private final Runnable runnable;
+        private Throwable throwable;
+        
+        Trigger(final ComponentReference ref, ClassLoader loader, 
+                AtomicReference<Future> future) {
+            this.ref = ref;
+            this.loader = loader;
+            this.future = future;
+            this.finished = new AtomicBoolean();
+            this.runnable = new Runnable() {
+                public void run() {
+                    try {
+                        ref.execute(event);
+                    } catch (ComponentEventException e) {
+                        throwable = e;
+                        throw e;
+                    } catch (RuntimeException e) {
+                        throwable = e;
+                        throw e;
+                    } catch (Error e) {
+                        throwable = e;
+                        throw e;
+                    }
+                }
+            };
+        }
+        
+        void dispatch(final Task task) {
+            long wait = task.deadline.getTime() - System.currentTimeMillis();
+            try {
+                if (wait <= 0) {
+                    executor.execute(task);
+                } else {
+                    task.timerFuture = timer.schedule(new Runnable() {
+                        public void run() {
+                            try {
+                                executor.execute(task);
+                            } catch (RejectedExecutionException e) {
+                                // Never run the task on the timer thread.
+                                future.compareAndSet(task, null);
+                                finish();
+                                logger.log(Level.SEVERE, "Schedule ended, " +
+                                        "because the executor rejected it.", e);
+                            }
+                        }
+                    }, wait, TimeUnit.MILLISECONDS);
+                }
+            } catch (RejectedExecutionException e) {
+                finish();
+                throw e;
+            }
+        }
+        
+        /**
+         * Schedules the next task, unless the schedule has been destroyed
+         * in the meantime.
+         */
+        boolean reschedule(Task current, Date deadline) {
+            Task task = new Task(this, deadline);
+            if (!future.compareAndSet(current, task)) {
+                return false;
+            }
+            dispatch(task);
+            return true;
+        }
+        
+        void finish() {
+            if (finished.compareAndSet(false, true)) {
+                latch.countDown();
+            }
+        }
+    }
+    
+    private final class Task extends FutureTask<Object> {
+        
+        private final Trigger trigger;
+        private final Date deadline;
+        private final AtomicBoolean claimed;
+        private volatile Future<?> timerFuture;
+        
+        Task(Trigger trigger, Date deadline) {
+            super(trigger.runnable, null);
+            this.trigger = trigger;
+            this.deadline = deadline;
+            this.claimed = new AtomicBoolean();
+        }
+        
+        /**
+         * Ends the schedule if this task has not yet been started.
+         * 
+         * @return {@code true} if the task has been removed from the timer.
+         */
+        boolean abandon() {
+            boolean removed = false;
+            if (claimed.compareAndSet(false, true)) {
+                Future<?> f = timerFuture;
+                if (f != null) {
+                    removed = f.cancel(false);
+                }
+                trigger.finish();
+            }
+            return removed;
+        }
+        
+        public void run() {
+            if (!claimed.compareAndSet(false, true)) {
+                return;
+            }
+            final ClassLoader org = AccessController.doPrivileged(
+                    new PrivilegedAction<ClassLoader>() {
+                public ClassLoader run() {
+                    Thread thread = Thread.currentThread();
+                    // PERMISSION: java.lang.RuntimePermission getClassLoader
+                    ClassLoader tmp = thread.getContextClassLoader();
+                    // PERMISSION: java.lang.RuntimePermission getClassLoader
+                    thread.setContextClassLoader(trigger.loader);
+                    return tmp;
+                }
+            });
+            try {
+                Date next = null;
+                try {
+                    threadLocal.set(this);
+                    trigger.throwable = null;
+                    // Prevent execution if component is destroyed while 
+                    // waiting for the deadline.
+                    if (!isCancelled() && trigger.ref.isValid()) {
+                        runAndReset();
+                        if (!once) {
+                            next = nextFireTime(deadline);
+                        }
+                    }
+                } finally {
+                    threadLocal.remove();
+                    if (next == null || isCancelled() || 
+                            !trigger.ref.isValid() || 
+                            !trigger.reschedule(this, next)) {
+                        trigger.future.compareAndSet(this, null);
+                        trigger.finish();
+                    }
+                    try {
+                        Throwable t = trigger.throwable;
+                        if (t != null) {
+                            throw t;
+                        }
+                    } catch (RuntimeException e) {
+                        throw e;
+                    } catch (Error e) {
+                        throw e;
+                    } catch (Throwable t) {
+                        assert false : t;
+                    }
+                }
+            } finally {
+                // Cleary possible interrupted state.
+                Thread.interrupted();
+
+                AccessController.doPrivileged(
+                        new PrivilegedAction<Object>() {
+                    public Object run() {
+                        // PERMISSION: java.lang.RuntimePermission setContextClassLoader
+                        Thread.currentThread().setContextClassLoader(org);
+                        return null;
+                    }
+                });
+            }
+        }
+    }
 }
@@ -37,6 +37,7 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.Executor;
 import org.beanlet.BeanletValidationException;
@@ -136,6 +137,7 @@ public final class ScheduleBeanletProviderImpl extends
                 Schedule schedule = domain.getDeclaration(Schedule.class).
                         getAnnotation(MethodElement.instance(method));
                 check(schedule, configuration.getComponentName());
+                checkRejectionPolicy(configuration);
                 CronExpression cron = schedule.cron().equals("") ? null :
                     new CronExpression(schedule.cron());
                 lifecycles.add(new ScheduleBeanletLifecycleImpl<T>(
@@ -161,6 +163,7 @@ public final class ScheduleBeanletProviderImpl extends
                 Schedule schedule = domain.getDeclaration(Schedule.class).
                         getAnnotation(MethodElement.instance(method));
                 check(schedule, configuration.getComponentName());
+                checkRejectionPolicy(configuration);
                 CronExpression cron = schedule.cron().equals("") ? null :
                     new CronExpression(schedule.cron());
                 lifecycles.add(new ScheduleBeanletLifecycleImpl<T>(
@@ -194,6 +197,23 @@ public final class ScheduleBeanletProviderImpl extends
         return metaData;
     }
     
+    /**
+     * Schedule tasks are handed off from the shared timer thread. Policies 
+     * that drop these tasks would silently end the schedule, and 
+     * {@code caller-runs} would run the schedule method on the timer thread.
+     */
+    private void checkRejectionPolicy(ComponentConfiguration<?> configuration) {
+        Properties properties = BeanletConfigurationProviderImpl.getProperties(
+                configuration.getComponentUnit().getClassLoader());
+        if (!BeanletExecutorHandleImpl.isRejectionReported(properties)) {
+            throw new BeanletValidationException(
+                    configuration.getComponentName(), 
+                    "Rejection policy NOT supported for scheduled beanlets: '" +
+                    properties.getProperty(
+                    BeanletExecutorHandleImpl.REJECTION_POLICY) + "'.");
+        }
+    }
+    
     private void check(Schedule schedule, String componentName) {
         assert schedule != null;
         if (schedule.initialDelay() < 0) {
@@ -30,27 +30,70 @@
  */
 package org.beanlet.impl;
 
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import org.beanlet.common.event.StartEventImpl;
+import org.jargo.ComponentConfiguration;
 import org.jargo.ComponentFactory;
 import org.jargo.ComponentReferenceLifecycle;
 import org.jargo.ComponentLifecycle;
 import org.jargo.ComponentReference;
+import org.jargo.DependencyInspector;
 import org.jargo.Event;
+import org.jargo.spi.DependencyInspectorProvider;
 
+/**
+ * Executes the start event for each beanlet instance. Static beanlets are 
+ * started as soon as their factory is created, either by the deploying 
+ * thread, or by the {@code StartScheduler} if parallel start is enabled.
+ *
+ * @author Leon van Zantvoort
+ */
 public final class StartBeanletLifecycleImpl<T> implements 
         ComponentLifecycle<T>, ComponentReferenceLifecycle<T> {
 
     private static final Event event = new StartEventImpl();
     
-    public void onCreate(ComponentFactory<T> factory) {
+    private final ComponentConfiguration<T> configuration;
+    private final List<DependencyInspectorProvider> providers;
+    
+    /**
+     * @param providers the dependency inspector providers of the container,
+     * used to determine the order of parallel starts.
+     */
+    public StartBeanletLifecycleImpl(ComponentConfiguration<T> configuration,
+            List<DependencyInspectorProvider> providers) {
+        this.configuration = configuration;
+        this.providers = providers;
+    }
+    
+    public void onCreate(final ComponentFactory<T> factory) {
         if (factory.getComponentMetaData().isStatic()) {
-            ComponentReference<T> reference = factory.create();
-            assert reference.isExecutable(event);
-            reference.execute(event);
+            Runnable start = new Runnable() {
+                public void run() {
+                    ComponentReference<T> reference = factory.create();
+                    assert reference.isExecutable(event);
+                    reference.execute(event);
+                }
+            };
+            Set<String> dependencies = getDependencies();
+            if (dependencies == null) {
+                start.run();
+            } else {
+                StartScheduler.schedule(configuration.getComponentUnit(),
+                        factory.getComponentMetaData().getComponentName(),
+                        dependencies, start);
+            }
         }
     }
     
     public void onDestroy(ComponentFactory<T> factory) {
+        if (factory.getComponentMetaData().isStatic() && 
+                StartScheduler.isParallel()) {
+            StartScheduler.remove(
+                    factory.getComponentMetaData().getComponentName());
+        }
     }
 
     public void onCreate(ComponentReference<T> reference) {
@@ -62,4 +105,26 @@ public final class StartBeanletLifecycleImpl<T> implements
     
     public void onDestroy(ComponentReference<T> reference) {
     }
+    
+    /**
+     * Returns the names of the beanlets this beanlet depends on, or 
+     * {@code null} if the beanlet is to be started by the calling thread.
+     */
+    private Set<String> getDependencies() {
+        if (!StartScheduler.isParallel()) {
+            return null;
+        }
+        Set<String> dependencies = new HashSet<String>();
+        for (DependencyInspectorProvider provider : providers) {
+            for (DependencyInspector inspector : 
+                    provider.getDependencyInspectors(configuration)) {
+                Set<String> tmp = inspector.getDependencies(
+                        configuration.getType());
+                if (tmp != null) {
+                    dependencies.addAll(tmp);
+                }
+            }
+        }
+        return dependencies;
+    }
 }
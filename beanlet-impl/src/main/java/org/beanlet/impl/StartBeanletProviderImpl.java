@@ -38,6 +38,7 @@ import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executor;
 import org.beanlet.impl.metadata.StartMetaDataImpl;
 import org.beanlet.common.AbstractBeanletProvider;
@@ -57,7 +58,10 @@ import org.jargo.spi.InvocationFactoryProvider;
 import org.jargo.Invocation;
 import org.jargo.ComponentLifecycle;
 import org.jargo.ComponentReferenceLifecycle;
+import org.jargo.deploy.Deployable;
+import org.jargo.deploy.Deployer;
 import org.jargo.spi.ComponentLifecycleProvider;
+import org.jargo.spi.DependencyInspectorProvider;
 import org.jargo.spi.ComponentReferenceLifecycleProvider;
 import org.jargo.spi.MetaDataProvider;
 
@@ -67,7 +71,26 @@ import org.jargo.spi.MetaDataProvider;
 public final class StartBeanletProviderImpl extends 
         AbstractBeanletProvider implements InvocationFactoryProvider, 
         EventFactoryProvider, ComponentLifecycleProvider, 
-        ComponentReferenceLifecycleProvider, MetaDataProvider {
+        ComponentReferenceLifecycleProvider, MetaDataProvider, Deployer {
+    
+    private final List<DependencyInspectorProvider> inspectorProviders = 
+            new CopyOnWriteArrayList<DependencyInspectorProvider>();
+    
+    public void setParent(Deployer deployer) {
+        // Do nothing.
+    }
+    
+    public void deploy(Deployable deployable) throws Exception {
+        if (deployable instanceof DependencyInspectorProvider) {
+            inspectorProviders.add((DependencyInspectorProvider) deployable);
+        }
+    }
+    
+    public void undeploy(Deployable deployable) throws Exception {
+        if (deployable instanceof DependencyInspectorProvider) {
+            inspectorProviders.remove((DependencyInspectorProvider) deployable);
+        }
+    }
     
     public Sequence sequence(SequentialDeployable deployable) {
         return Sequence.BEFORE;
@@ -103,7 +126,7 @@ public final class StartBeanletProviderImpl extends
             // but that is silently ignored by returning a dummy 
             // invocation factory.
             methods = Collections.emptySet();
-            invocation = new InvocationImpl(null) {
+            invocation = new InvocationImpl((Method) null) {
                 public Object invoke(Object instance) throws Exception {
                     return null;
                 }
@@ -157,7 +180,8 @@ public final class StartBeanletProviderImpl extends
                 new ArrayList<ComponentLifecycle<T>>();
         Method method = getMethod(configuration);
         if (method != null) {
-            lifecycles.add(new StartBeanletLifecycleImpl<T>());
+            lifecycles.add(new StartBeanletLifecycleImpl<T>(configuration, 
+                    inspectorProviders));
         }
         return Collections.unmodifiableList(lifecycles);
     }
@@ -168,7 +192,8 @@ public final class StartBeanletProviderImpl extends
                 new ArrayList<ComponentReferenceLifecycle<T>>();
         Method method = getMethod(configuration);
         if (method != null) {
-            lifecycles.add(new StartBeanletLifecycleImpl<T>());
+            lifecycles.add(new StartBeanletLifecycleImpl<T>(configuration, 
+                    inspectorProviders));
         }
         return Collections.unmodifiableList(lifecycles);
     }
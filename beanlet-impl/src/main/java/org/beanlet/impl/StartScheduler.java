@@ -0,0 +1,461 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Beanlet - JSE Application Container.
+ * Copyright (C) 2006  Leon van Zantvoort
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ * 
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://beanlet.org
+ */
+package org.beanlet.impl;
+
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.beanlet.BeanletDefinitionException;
+import org.beanlet.BeanletException;
+import org.jargo.ComponentConfiguration;
+import org.jargo.ComponentRegistration;
+import org.jargo.ComponentUnit;
+import org.jargo.deploy.Deployable;
+import org.jargo.deploy.Deployer;
+
+/**
+ * <p>Starts static beanlets on a pool of daemon threads, so that beanlets 
+ * that do not depend on each other are started in parallel. A beanlet is 
+ * started once all scheduled beanlets it depends on have been started. 
+ * Beanlets that depend on a beanlet that failed to start, are not started 
+ * at all.</p>
+ *
+ * <p>Starts are tracked per component unit. Once the unit's components have
+ * been registered, the deploying thread waits for the unit's pending starts
+ * and the first failure is thrown to the deployer of that unit. Beanlets 
+ * that are created after that point are started by the calling thread, 
+ * after the beanlets they depend on have been started.</p>
+ *
+ * <p>Parallel start is disabled by default, and is enabled by setting the
+ * {@code org.beanlet.parallelStart} system property to {@code true}. The 
+ * number of threads defaults to the number of available processors, and 
+ * can be changed with the {@code org.beanlet.parallelStart.threads} system
+ * property.</p>
+ *
+ * @author Leon van Zantvoort
+ */
+public final class StartScheduler implements Deployer {
+    
+    private static final boolean PARALLEL;
+    private static final int THREADS;
+    
+    static {
+        // PERMISSION: java.util.PropertyPermission "org.beanlet.parallelStart" "read"
+        PARALLEL = Boolean.getBoolean("org.beanlet.parallelStart");
+        // PERMISSION: java.util.PropertyPermission "org.beanlet.parallelStart.threads" "read"
+        THREADS = Math.max(1, Integer.getInteger(
+                "org.beanlet.parallelStart.threads", 
+                Runtime.getRuntime().availableProcessors()));
+    }
+    
+    private static final Logger logger = 
+            Logger.getLogger(StartScheduler.class.getName());
+    
+    // Guarded by StartScheduler.class.
+    private static final Map<String, Task> tasks = new HashMap<String, Task>();
+    private static final Map<ComponentUnit, Unit> units = 
+            new IdentityHashMap<ComponentUnit, Unit>();
+    private static ExecutorService executor;
+    private static long sequence;
+    
+    public static boolean isParallel() {
+        return PARALLEL;
+    }
+    
+    public void setParent(Deployer deployer) {
+    }
+    
+    public void deploy(Deployable deployable) throws Exception {
+        if (PARALLEL && deployable instanceof ComponentRegistration) {
+            ComponentUnit unit = getComponentUnit(
+                    (ComponentRegistration) deployable);
+            if (unit != null) {
+                await(unit);
+            }
+        }
+    }
+    
+    public void undeploy(Deployable deployable) throws Exception {
+        if (PARALLEL && deployable instanceof ComponentRegistration) {
+            ComponentUnit unit = getComponentUnit(
+                    (ComponentRegistration) deployable);
+            if (unit != null) {
+                synchronized (StartScheduler.class) {
+                    units.remove(unit);
+                }
+            }
+        }
+    }
+    
+    private static ComponentUnit getComponentUnit(
+            ComponentRegistration registration) {
+        List<ComponentConfiguration<?>> configurations = 
+                registration.getComponentConfigurations();
+        return configurations.isEmpty() ? null : 
+                configurations.get(0).getComponentUnit();
+    }
+    
+    /**
+     * Schedules the specified {@code runnable} to start the specified beanlet
+     * once the scheduled beanlets of {@code dependencies} have been started.
+     * If the pending starts of {@code unit} have already been awaited, the 
+     * beanlet is started by the calling thread instead.
+     *
+     * @throws BeanletDefinitionException if the beanlet depends on itself 
+     * through the scheduled beanlets.
+     * @throws BeanletException if the beanlet is started by the calling 
+     * thread, and it, or a beanlet it depends on, failed to start.
+     */
+    public static void schedule(ComponentUnit unit, String beanletName, 
+            Set<String> dependencies, Runnable runnable) 
+            throws BeanletException {
+        Task task = new Task(unit, beanletName, dependencies, runnable);
+        final boolean inline;
+        synchronized (StartScheduler.class) {
+            List<String> path = getPath(dependencies, beanletName);
+            if (path != null) {
+                throw new BeanletDefinitionException(beanletName, 
+                        "Cyclic dependency: " + path + ".");
+            }
+            for (String dependency : dependencies) {
+                Task d = tasks.get(dependency);
+                if (d != null && d != task) {
+                    if (!d.done) {
+                        d.dependents.add(task);
+                        task.pending++;
+                    } else if (d.failure != null && task.failure == null) {
+                        task.failure = d.failure;
+                    }
+                }
+            }
+            tasks.put(beanletName, task);
+            Unit u = getUnit(unit);
+            inline = u.awaited;
+            if (inline) {
+                boolean interrupted = false;
+                while (task.pending > 0) {
+                    try {
+                        StartScheduler.class.wait();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                task.inline = true;
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            } else {
+                u.tasks.add(task);
+                if (task.pending > 0) {
+                    return;
+                }
+            }
+        }
+        if (inline) {
+            task.run();
+            if (task.failure != null) {
+                throw failure(task);
+            }
+        } else {
+            getExecutor().execute(task);
+        }
+    }
+    
+    /**
+     * Waits until the pending starts of the specified {@code unit} have 
+     * completed. Beanlets of this unit that are scheduled hereafter are 
+     * started by the calling thread.
+     *
+     * @throws BeanletException if one of the pending starts failed. The 
+     * first failure is thrown.
+     */
+    static void await(ComponentUnit unit) throws BeanletException {
+        Task failed = null;
+        synchronized (StartScheduler.class) {
+            Unit u = getUnit(unit);
+            u.awaited = true;
+            boolean interrupted = false;
+            for (Task task : u.tasks) {
+                while (!task.done) {
+                    try {
+                        StartScheduler.class.wait();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                if (task.failure != null && (failed == null || 
+                        task.sequence < failed.sequence)) {
+                    failed = task;
+                }
+            }
+            u.tasks.clear();
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (failed != null) {
+            throw failure(failed);
+        }
+    }
+    
+    private static BeanletException failure(Task task) {
+        return new BeanletException(task.beanletName, 
+                "Failed to start beanlet.", task.failure);
+    }
+    
+    /**
+     * Caller must hold the class lock.
+     */
+    private static Unit getUnit(ComponentUnit unit) {
+        Unit u = units.get(unit);
+        if (u == null) {
+            u = new Unit();
+            units.put(unit, u);
+        }
+        return u;
+    }
+    
+    /**
+     * Waits until the specified beanlet has been started, and forgets about 
+     * it. Returns immediately if the beanlet is not scheduled.
+     */
+    public static void remove(String beanletName) {
+        synchronized (StartScheduler.class) {
+            Task task = tasks.get(beanletName);
+            if (task == null) {
+                return;
+            }
+            boolean interrupted = false;
+            while (!task.done) {
+                try {
+                    StartScheduler.class.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (tasks.get(beanletName) == task) {
+                tasks.remove(beanletName);
+            }
+            Unit u = units.get(task.unit);
+            if (u != null) {
+                u.tasks.remove(task);
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    
+    /**
+     * Returns the dependency path from {@code dependencies} to 
+     * {@code beanletName} through the scheduled beanlets, or {@code null} if
+     * no such path exists. Caller must hold the class lock.
+     */
+    private static List<String> getPath(Set<String> dependencies, 
+            String beanletName) {
+        Map<String, String> via = new HashMap<String, String>();
+        LinkedList<String> queue = new LinkedList<String>();
+        for (String dependency : dependencies) {
+            if (!via.containsKey(dependency)) {
+                via.put(dependency, beanletName);
+                queue.add(dependency);
+            }
+        }
+        Set<String> visited = new HashSet<String>();
+        String name = null;
+        while ((name = queue.poll()) != null) {
+            if (name.equals(beanletName)) {
+                LinkedList<String> path = new LinkedList<String>();
+                path.add(beanletName);
+                do {
+                    name = via.get(name);
+                    path.addFirst(name);
+                } while (!name.equals(beanletName));
+                return path;
+            }
+            Task task = tasks.get(name);
+            if (task != null && visited.add(name)) {
+                for (String dependency : task.dependencies) {
+                    if (!via.containsKey(dependency)) {
+                        via.put(dependency, name);
+                        queue.add(dependency);
+                    }
+                }
+            }
+        }
+        return null;
+    }
+    
+    private static void complete(Task task, Throwable t) {
+        List<Task> ready = new ArrayList<Task>();
+        synchronized (StartScheduler.class) {
+            task.done = true;
+            task.failure = t;
+            task.sequence = ++sequence;
+            for (Task d : task.dependents) {
+                if (t != null && d.failure == null) {
+                    d.failure = t;
+                }
+                if (--d.pending == 0) {
+                    ready.add(d);
+                }
+            }
+            task.dependents.clear();
+            StartScheduler.class.notifyAll();
+        }
+        for (Task d : ready) {
+            getExecutor().execute(d);
+        }
+    }
+    
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            final ClassLoader loader = StartScheduler.class.getClassLoader();
+            final AtomicInteger count = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(THREADS, new ThreadFactory() {
+                public Thread newThread(final Runnable r) {
+                    return AccessController.doPrivileged(
+                            new PrivilegedAction<Thread>() {
+                        public Thread run() {
+                            // PERMISSION: java.lang.RuntimePermission modifyThread
+                            Thread thread = new Thread(r, "beanlet-start-" + 
+                                    count.incrementAndGet());
+                            thread.setDaemon(true);
+                            // PERMISSION: java.lang.RuntimePermission setContextClassLoader
+                            thread.setContextClassLoader(loader);
+                            return thread;
+                        }
+                    });
+                }
+            });
+        }
+        return executor;
+    }
+    
+    private static final class Unit {
+        
+        // Guarded by StartScheduler.class.
+        final List<Task> tasks = new ArrayList<Task>();
+        boolean awaited;
+    }
+    
+    private static final class Task implements Runnable {
+        
+        final ComponentUnit unit;
+        final String beanletName;
+        final Set<String> dependencies;
+        final Runnable runnable;
+        final ClassLoader loader;
+        
+        // Guarded by StartScheduler.class.
+        final List<Task> dependents;
+        int pending;
+        boolean done;
+        boolean inline;
+        long sequence;
+        Throwable failure;
+        
+        Task(ComponentUnit unit, String beanletName, Set<String> dependencies,
+                Runnable runnable) {
+            this.unit = unit;
+            this.beanletName = beanletName;
+            this.dependencies = dependencies;
+            this.runnable = runnable;
+            this.loader = AccessController.doPrivileged(
+                    new PrivilegedAction<ClassLoader>() {
+                public ClassLoader run() {
+                    // PERMISSION: java.lang.RuntimePermission getClassLoader
+                    return Thread.currentThread().getContextClassLoader();
+                }
+            });
+            this.dependents = new ArrayList<Task>();
+        }
+        
+        public void run() {
+            Throwable t;
+            boolean inline;
+            synchronized (StartScheduler.class) {
+                t = failure;
+                inline = this.inline;
+            }
+            if (t == null) {
+                final ClassLoader org = AccessController.doPrivileged(
+                        new PrivilegedAction<ClassLoader>() {
+                    public ClassLoader run() {
+                        Thread thread = Thread.currentThread();
+                        // PERMISSION: java.lang.RuntimePermission getClassLoader
+                        ClassLoader tmp = thread.getContextClassLoader();
+                        // PERMISSION: java.lang.RuntimePermission setContextClassLoader
+                        thread.setContextClassLoader(loader);
+                        return tmp;
+                    }
+                });
+                try {
+                    runnable.run();
+                } catch (RuntimeException e) {
+                    t = e;
+                } catch (Error e) {
+                    t = e;
+                } finally {
+                    AccessController.doPrivileged(
+                            new PrivilegedAction<Object>() {
+                        public Object run() {
+                            // PERMISSION: java.lang.RuntimePermission setContextClassLoader
+                            Thread.currentThread().setContextClassLoader(org);
+                            return null;
+                        }
+                    });
+                }
+                if (t != null && !inline) {
+                    logger.log(Level.SEVERE, "Failed to start beanlet '" + 
+                            beanletName + "'.", t);
+                }
+            } else if (!inline) {
+                logger.warning("Beanlet '" + beanletName + "' not started, " +
+                        "because a beanlet it depends on failed to start.");
+            }
+            complete(this, t);
+        }
+    }
+}
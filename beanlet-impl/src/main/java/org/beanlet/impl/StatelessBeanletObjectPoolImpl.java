@@ -30,9 +30,20 @@
  */
 package org.beanlet.impl;
 
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.beanlet.Pool;
 import org.beanlet.common.ObjectPool;
 import org.beanlet.common.NonReentrantObjectPool;
 import org.beanlet.common.ReentrantObjectPool;
+import org.beanlet.common.StripedObjectPool;
 import org.jargo.ComponentCreationException;
 import org.jargo.ComponentObject;
 import org.jargo.ComponentObjectBuilder;
@@ -48,18 +59,60 @@ public final class StatelessBeanletObjectPoolImpl<T> implements
     private final boolean reentrant;
     private final boolean destroyOnDiscard;
     private final ObjectPool<ComponentObject<T>> pool;
+    private final long acquireTimeout;
+    private final long evictionInterval;
+    private final Logger logger;
+    
+    private ScheduledFuture<?> evictor;
+    private volatile ClassLoader loader;
+    private volatile Executor executor;
     
     public StatelessBeanletObjectPoolImpl(String componentName, boolean lazy, 
             boolean reentrant, boolean singleton, boolean destroyOnDiscard) {
+        this(componentName, lazy, reentrant, singleton, destroyOnDiscard, 
+                false);
+    }
+    
+    public StatelessBeanletObjectPoolImpl(String componentName, boolean lazy, 
+            boolean reentrant, boolean singleton, boolean destroyOnDiscard,
+            boolean striped) {
+        this(componentName, lazy, reentrant, singleton, destroyOnDiscard, 
+                striped, null);
+    }
+    
+    /**
+     * @param policy pool policy, or {@code null} if not specified.
+     */
+    public StatelessBeanletObjectPoolImpl(String componentName, boolean lazy, 
+            boolean reentrant, boolean singleton, boolean destroyOnDiscard,
+            boolean striped, Pool policy) {
         int minSize = lazy ? 0 : 1;
         int maxSize = singleton ? 1 : 0;
+        int initialSize = minSize;
+        int maxIdle = 0;
+        long idleTimeout = 0L;
+        if (policy != null && !reentrant) {
+            minSize = lazy ? policy.minSize() : Math.max(policy.minSize(), 1);
+            maxSize = singleton ? 1 : policy.maxSize();
+            initialSize = lazy ? 0 : Math.max(minSize, policy.warmUp());
+            maxIdle = policy.maxIdle();
+            idleTimeout = policy.idleTimeout();
+        }
         
         this.componentName = componentName;
         this.reentrant = reentrant;
         this.pool = reentrant ?
                 new ReentrantObjectPool<ComponentObject<T>>(minSize, maxSize) :
-                new NonReentrantObjectPool<ComponentObject<T>>(minSize, maxSize);
+                (striped ?
+                new StripedObjectPool<ComponentObject<T>>(minSize, maxSize, 
+                        initialSize, maxIdle, idleTimeout) :
+                new NonReentrantObjectPool<ComponentObject<T>>(minSize, maxSize,
+                        initialSize, maxIdle, idleTimeout));
         this.destroyOnDiscard = destroyOnDiscard;
+        this.acquireTimeout = policy == null ? -1L : policy.acquireTimeout();
+        this.evictionInterval = maxIdle > 0 || idleTimeout > 0 ? 
+                policy.evictionInterval() : 0L;
+        this.logger = Logger.getLogger(getClass().getName());
     }
 
     public boolean isStatic() {
@@ -73,14 +126,97 @@ public final class StatelessBeanletObjectPoolImpl<T> implements
                 return builder.newInstance();
             }
         });
+        if (evictionInterval > 0) {
+            synchronized (this) {
+                evictor = BeanletTimer.getInstance().scheduleWithFixedDelay(
+                        new Runnable() {
+                    public void run() {
+                        evict();
+                    }
+                }, evictionInterval, evictionInterval, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+    
+    /**
+     * Sets the executor that destroys evicted instances with the specified
+     * class loader as context class loader. Eviction does not start before
+     * the executor is set.
+     */
+    void setExecutor(Executor executor, ClassLoader loader) {
+        this.loader = loader;
+        this.executor = executor;
+    }
+    
+    /**
+     * Runs on the shared timer thread, evicted instances are destroyed by the
+     * unit's executor.
+     */
+    private void evict() {
+        try {
+            Executor executor = this.executor;
+            if (executor == null) {
+                return;
+            }
+            final List<ComponentObject<T>> evicted = pool.evict();
+            if (!evicted.isEmpty()) {
+                executor.execute(new Runnable() {
+                    public void run() {
+                        destroy(evicted);
+                    }
+                });
+            }
+        } catch (Throwable t) {
+            // Keep the fixed-delay task alive.
+            logger.log(Level.SEVERE, componentName + 
+                    ": Failed to evict idle beanlet instances.", t);
+        }
+    }
+    
+    private void destroy(List<ComponentObject<T>> evicted) {
+        final ClassLoader loader = this.loader;
+        final ClassLoader org = AccessController.doPrivileged(
+                new PrivilegedAction<ClassLoader>() {
+            public ClassLoader run() {
+                Thread thread = Thread.currentThread();
+                // PERMISSION: java.lang.RuntimePermission getClassLoader
+                ClassLoader tmp = thread.getContextClassLoader();
+                // PERMISSION: java.lang.RuntimePermission setContextClassLoader
+                thread.setContextClassLoader(loader);
+                return tmp;
+            }
+        });
+        try {
+            for (ComponentObject<T> object : evicted) {
+                try {
+                    object.destroy();
+                } catch (RuntimeException e) {
+                    logger.log(Level.WARNING, componentName + 
+                            ": Failed to destroy evicted beanlet instance.", 
+                            e);
+                }
+            }
+        } finally {
+            AccessController.doPrivileged(new PrivilegedAction<Object>() {
+                public Object run() {
+                    // PERMISSION: java.lang.RuntimePermission setContextClassLoader
+                    Thread.currentThread().setContextClassLoader(org);
+                    return null;
+                }
+            });
+        }
     }
     
     public ComponentObject<T> getComponentObject() throws 
             ComponentCreationException {
         try {
-            return pool.getInstance();
+            return acquireTimeout < 0 ? pool.getInstance() : 
+                pool.getInstance(acquireTimeout, TimeUnit.MILLISECONDS);
         } catch (InterruptedException e) {
             throw new ComponentCreationException(componentName, e);
+        } catch (TimeoutException e) {
+            throw new ComponentCreationException(componentName, 
+                    new PoolExhaustedException(e));
         }
     }
     
@@ -107,6 +243,13 @@ public final class StatelessBeanletObjectPoolImpl<T> implements
     }
     
     public void destroy() {
+        synchronized (this) {
+            if (evictor != null) {
+                evictor.cancel(false);
+                evictor = null;
+                BeanletTimer.purge();
+            }
+        }
         RuntimeException x = null;
         for (ComponentObject<T> object : pool.destroy()) {
             try {
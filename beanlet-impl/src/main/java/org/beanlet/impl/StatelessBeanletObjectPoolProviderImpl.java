@@ -30,10 +30,17 @@
  */
 package org.beanlet.impl;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executor;
 import org.beanlet.RetentionPolicy;
 import org.beanlet.common.AbstractProvider;
 import org.beanlet.common.Beanlets;
+import org.jargo.ComponentLifecycle;
 import org.jargo.ComponentObjectPool;
+import org.jargo.spi.ComponentLifecycleProvider;
 import org.jargo.spi.ComponentObjectFactoryProvider;
 import org.jargo.ComponentConfiguration;
 
@@ -41,21 +48,72 @@ import org.jargo.ComponentConfiguration;
  * @author Leon van Zantvoort
  */
 public final class StatelessBeanletObjectPoolProviderImpl extends 
-        AbstractProvider implements ComponentObjectFactoryProvider {
+        AbstractProvider implements ComponentObjectFactoryProvider, 
+        ComponentLifecycleProvider {
+
+    private static final boolean STRIPED;
+    
+    static {
+        // PERMISSION: java.util.PropertyPermission "org.beanlet.stripedObjectPool" "read"
+        STRIPED = Boolean.getBoolean("org.beanlet.stripedObjectPool");
+    }
+    
+    // Pools waiting for the component's executor, and executors waiting for 
+    // the component's pool, whichever is created first. The WeakHashMap's key
+    // is not referenced by the map's values.
+    private final Map<ComponentConfiguration<?>, 
+            StatelessBeanletObjectPoolImpl<?>> pools = new WeakHashMap<
+            ComponentConfiguration<?>, StatelessBeanletObjectPoolImpl<?>>();
+    private final Map<ComponentConfiguration<?>, Executor> executors = 
+            new WeakHashMap<ComponentConfiguration<?>, Executor>();
 
     public <T> ComponentObjectPool<T> getComponentObjectFactory(
             ComponentConfiguration<T> configuration) {
-        final ComponentObjectPool<T> pool;
+        final StatelessBeanletObjectPoolImpl<T> pool;
         Beanlets beanlets = Beanlets.getInstance(configuration);
         if (beanlets.isStateless()) {
             pool = new StatelessBeanletObjectPoolImpl<T>(
                     configuration.getComponentName(), beanlets.isLazy(),
                     beanlets.getStateless().reentrant(), 
                     beanlets.getStateless().singleton(), 
-                    beanlets.getRetentionPolicy() == RetentionPolicy.INVALIDATE);
+                    beanlets.getRetentionPolicy() == RetentionPolicy.INVALIDATE,
+                    STRIPED, beanlets.getPool());
+            if (beanlets.getPool() != null) {
+                synchronized (this) {
+                    Executor executor = executors.remove(configuration);
+                    if (executor == null) {
+                        pools.put(configuration, pool);
+                    } else {
+                        pool.setExecutor(executor, configuration.
+                                getComponentUnit().getClassLoader());
+                    }
+                }
+            }
         } else {
             pool = null;
         }
         return pool;
     }
+    
+    /**
+     * Hands the component's executor to the pool, which uses it to destroy 
+     * evicted instances.
+     */
+    public <T> List<ComponentLifecycle<T>> getComponentLifecycles(
+            ComponentConfiguration<T> configuration, Executor executor) {
+        Beanlets beanlets = Beanlets.getInstance(configuration);
+        if (beanlets.isStateless() && beanlets.getPool() != null) {
+            synchronized (this) {
+                StatelessBeanletObjectPoolImpl<?> pool = 
+                        pools.remove(configuration);
+                if (pool == null) {
+                    executors.put(configuration, executor);
+                } else {
+                    pool.setExecutor(executor, configuration.
+                            getComponentUnit().getClassLoader());
+                }
+            }
+        }
+        return Collections.emptyList();
+    }
 }
@@ -103,7 +103,7 @@ public final class StopBeanletProviderImpl extends
             // but that is silently ignored by returning a dummy 
             // invocation factory.
             methods = Collections.emptySet();
-            invocation = new InvocationImpl(null) {
+            invocation = new InvocationImpl((Method) null) {
                 public Object invoke(Object instance) throws Exception {
                     return null;
                 }
@@ -42,6 +42,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -49,11 +50,6 @@ import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpression;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 import org.beanlet.BeanletDefinitionException;
 import org.beanlet.BeanletValidationException;
 import org.beanlet.annotation.AbstractAnnotationDomain;
@@ -68,7 +64,6 @@ import org.beanlet.plugin.XMLElementAnnotation;
 import org.w3c.dom.Document;
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 
 /**
  * First, an intermediate {@code AnnotationDomain} is created from the 
@@ -86,30 +81,84 @@ public final class XMLAnnotationDomain<T> extends AbstractAnnotationDomain {
     // PENDING: This class requires some clean up, I know!
     
     private static final ConcurrentMap<String, AtomicInteger> anonymousCounterMap;
-    private static final XPath xpath;
-    private static final XPathExpression BEANLET_EXPRESSION;
-    private static final XPathExpression GLOBAL_PACKAGE_ANNOTATIONS_EXPRESSION;
-    private static final XPathExpression GLOBAL_ANNOTATIONS_EXPRESSION;
-    private static final XPathExpression MERGE_EXPRESSION;
-    private static final XPathExpression ALL_EXPRESSION;
+    private static final String DOCUMENT_INDEX_KEY = 
+            DocumentIndex.class.getName();
     
     static {
         // Records in this map are never cleared!
         anonymousCounterMap = new ConcurrentHashMap<String, AtomicInteger>();
-        xpath = XPathFactory.newInstance().newXPath();
-        xpath.setNamespaceContext(BEANLET_NAMESPACE_CONTEXT);
-        try {
-            BEANLET_EXPRESSION = xpath.compile("/:beanlets/:beanlet");
-            GLOBAL_PACKAGE_ANNOTATIONS_EXPRESSION = xpath.compile(
-                    "/:beanlets/:package-annotations[not(@package)]");
-            GLOBAL_ANNOTATIONS_EXPRESSION = xpath.compile(
-                    "/:beanlets/:annotations[not(@type)]");
-            MERGE_EXPRESSION = xpath.compile("@merge");
-            ALL_EXPRESSION = xpath.compile("*");
-        } catch (XPathExpressionException e) {
-            throw new AssertionError(e);
+    }
+    
+    /**
+     * Index of the top level elements of a beanlet document. The index is 
+     * built with a single pass over the root element, and is stored as user 
+     * data of the document, so that the global annotation elements need not
+     * be searched for every beanlet and every class.
+     */
+    private static final class DocumentIndex {
+        
+        final List<Node> beanlets;
+        final Map<String, Node> annotations;
+        final Map<String, Node> packageAnnotations;
+        Node globalAnnotations;
+        Node globalPackageAnnotations;
+        
+        DocumentIndex(Document document) {
+            beanlets = new ArrayList<Node>();
+            annotations = new HashMap<String, Node>();
+            packageAnnotations = new HashMap<String, Node>();
+            Node root = document.getDocumentElement();
+            if (root == null || !isBeanletElement(root, "beanlets")) {
+                return;
+            }
+            for (Node node = root.getFirstChild(); node != null; 
+                    node = node.getNextSibling()) {
+                if (isBeanletElement(node, "beanlet")) {
+                    beanlets.add(node);
+                } else if (isBeanletElement(node, "annotations")) {
+                    Node typeNode = node.getAttributes().getNamedItem("type");
+                    if (typeNode == null) {
+                        if (globalAnnotations == null) {
+                            globalAnnotations = node;
+                        }
+                    } else if (!annotations.containsKey(
+                            typeNode.getNodeValue())) {
+                        annotations.put(typeNode.getNodeValue(), node);
+                    }
+                } else if (isBeanletElement(node, "package-annotations")) {
+                    Node pkgNode = node.getAttributes().getNamedItem("package");
+                    if (pkgNode == null) {
+                        if (globalPackageAnnotations == null) {
+                            globalPackageAnnotations = node;
+                        }
+                    } else if (!packageAnnotations.containsKey(
+                            pkgNode.getNodeValue())) {
+                        packageAnnotations.put(pkgNode.getNodeValue(), node);
+                    }
+                }
+            }
+        }
+        
+        static DocumentIndex getInstance(Node node) {
+            Document document = node instanceof Document ? (Document) node : 
+                    node.getOwnerDocument();
+            synchronized (document) {
+                DocumentIndex index = (DocumentIndex) 
+                        document.getUserData(DOCUMENT_INDEX_KEY);
+                if (index == null) {
+                    index = new DocumentIndex(document);
+                    document.setUserData(DOCUMENT_INDEX_KEY, index, null);
+                }
+                return index;
+            }
         }
     }
+    
+    private static boolean isBeanletElement(Node node, String localName) {
+        return node.getNodeType() == Node.ELEMENT_NODE &&
+                BEANLET_NAMESPACE_URI.equals(node.getNamespaceURI()) &&
+                localName.equals(node.getLocalName());
+    }
 
     static String getAnonymousBeanletName(String prefix) {
         if (prefix == null) {
@@ -162,92 +211,113 @@ public final class XMLAnnotationDomain<T> extends AbstractAnnotationDomain {
     public static List<XMLAnnotationDomain<?>> list(List<Document> documents, 
             ClassLoader loader, ElementAnnotationFactory annotationFactory, 
             ClassResolver resolver) throws BeanletDefinitionException {
-        try {
-            List<NestedBeanletFactoryImpl> nestedFactories = 
-                    new ArrayList<NestedBeanletFactoryImpl>();
-            Queue<Node> derived = 
-                    new LinkedList<Node>();
-            Map<String, XMLAnnotationDomain<?>> map = 
-                    new HashMap<String, XMLAnnotationDomain<?>>();
-            Set<String> names = new HashSet<String>();
-            for (Document document : documents) {
-                NodeList nodes = (NodeList) BEANLET_EXPRESSION.evaluate(document, 
-                        XPathConstants.NODESET);
-                for (int i = 0; i < nodes.getLength(); i++) {
-                    Node beanletNode = nodes.item(i);
-                    NamedNodeMap attributes = beanletNode.getAttributes();
-                    String beanletName = attributes.getNamedItem("name") == null 
-                            ? null : attributes.getNamedItem("name").getNodeValue();
-                    Node parentNode = attributes.getNamedItem("parent");
-                    String parent = parentNode == null ? null : parentNode.getNodeValue();
-                    if (parent != null) {
-                        if (beanletName != null && beanletName.equals(parent)) {
-                            throw new BeanletDefinitionException(beanletName, "Cyclic inheritance.");
-                        }
-                        derived.offer(beanletNode);
-                        continue;
-                    } else {
-                        if (beanletName == null) {
-                            beanletName = getBeanletName(beanletNode, null);
-                        }
+        List<NestedBeanletFactoryImpl> nestedFactories = 
+                new ArrayList<NestedBeanletFactoryImpl>();
+        // Derived beanlets, keyed by the name of their parent.
+        Map<String, List<Node>> derived = new LinkedHashMap<String, List<Node>>();
+        DomainScope scope = new DomainScope();
+        for (Document document : documents) {
+            for (Node beanletNode : DocumentIndex.getInstance(document).beanlets) {
+                NamedNodeMap attributes = beanletNode.getAttributes();
+                String beanletName = attributes.getNamedItem("name") == null 
+                        ? null : attributes.getNamedItem("name").getNodeValue();
+                Node parentNode = attributes.getNamedItem("parent");
+                String parent = parentNode == null ? null : parentNode.getNodeValue();
+                if (parent != null) {
+                    if (beanletName != null && beanletName.equals(parent)) {
+                        throw new BeanletDefinitionException(beanletName, "Cyclic inheritance.");
                     }
-                    Map<String, XMLAnnotationDomain<?>> parentDomains = 
-                            new HashMap<String, XMLAnnotationDomain<?>>(map);
-                    NestedBeanletFactoryImpl nestedFactory = 
-                            new NestedBeanletFactoryImpl(beanletName, loader, 
-                            annotationFactory, resolver, parentDomains);
-                    XMLAnnotationDomain<?> domain = createNestedDomain(beanletName, 
-                            beanletNode, loader, annotationFactory, resolver, 
-                            null, nestedFactory);
-                    if (map.put(beanletName, domain) != null) {
-                        throw new BeanletDefinitionException(beanletName,
-                                "Duplicate definition of beanlet.");
+                    List<Node> nodes = derived.get(parent);
+                    if (nodes == null) {
+                        nodes = new ArrayList<Node>();
+                        derived.put(parent, nodes);
+                    }
+                    nodes.add(beanletNode);
+                    continue;
+                } else {
+                    if (beanletName == null) {
+                        beanletName = getBeanletName(beanletNode, null);
                     }
-                    parentDomains.put(beanletName, domain);
-                    nestedFactories.add(nestedFactory);
                 }
+                define(beanletName, beanletNode, loader, annotationFactory, 
+                        resolver, null, scope, nestedFactories);
             }
+        }
 
-            String beanletName = null;
-            Node beanletNode = null;
-            while ((beanletNode = derived.poll()) != null) {
-                NamedNodeMap attributes = beanletNode.getAttributes();
-                String parent = attributes.getNamedItem("parent").getNodeValue();
-                XMLAnnotationDomain<?> parentDomain = 
-                        (XMLAnnotationDomain<?>) map.get(parent);
-                if (parentDomain == null) {
-                    if (!names.contains(parent)) {
-                        throw new BeanletDefinitionException(
-                                getBeanletName(beanletNode, null), 
-                                "Parent does not exist: '" + parent + "'.");
-                    } else {
-                        derived.add(beanletNode);
+        // Derived beanlets are defined as soon as their parent is defined, 
+        // so that every derived beanlet is visited once.
+        Queue<String> parents = new LinkedList<String>(derived.keySet());
+        String parent = null;
+        while ((parent = parents.poll()) != null) {
+            XMLAnnotationDomain<?> parentDomain = scope.get(parent);
+            if (parentDomain == null) {
+                continue;
+            }
+            List<Node> nodes = derived.remove(parent);
+            if (nodes == null) {
+                continue;
+            }
+            for (Node beanletNode : nodes) {
+                String beanletName = getBeanletName(beanletNode, parentDomain);
+                define(beanletName, beanletNode, loader, annotationFactory, 
+                        resolver, parentDomain, scope, nestedFactories);
+                if (derived.containsKey(beanletName)) {
+                    parents.offer(beanletName);
+                }
+            }
+        }
+        if (!derived.isEmpty()) {
+            Set<String> names = new HashSet<String>();
+            for (List<Node> nodes : derived.values()) {
+                for (Node beanletNode : nodes) {
+                    Node nameNode = beanletNode.getAttributes().getNamedItem("name");
+                    if (nameNode != null) {
+                        names.add(nameNode.getNodeValue());
                     }
-                    continue;
                 }
-                beanletName = getBeanletName(beanletNode, parentDomain);
-                Map<String, XMLAnnotationDomain<?>> parentDomains = 
-                        new HashMap<String, XMLAnnotationDomain<?>>(map);
-                NestedBeanletFactoryImpl nestedFactory = 
-                        new NestedBeanletFactoryImpl(beanletName, loader, 
-                        annotationFactory, resolver, parentDomains);
-                XMLAnnotationDomain<?> domain = createNestedDomain(beanletName,
-                        beanletNode, loader, annotationFactory, resolver, 
-                        parentDomain, nestedFactory);
-                map.put(beanletName, domain);
-                parentDomains.put(beanletName, domain);
-                nestedFactories.add(nestedFactory);
             }
-            List<XMLAnnotationDomain<?>> list = 
-                    new ArrayList<XMLAnnotationDomain<?>>(map.values());
-            for (NestedBeanletFactoryImpl nestedFactory : nestedFactories) {
-                list.addAll(nestedFactory.get());
+            Map.Entry<String, List<Node>> entry = 
+                    derived.entrySet().iterator().next();
+            Node beanletNode = entry.getValue().get(0);
+            if (names.contains(entry.getKey())) {
+                throw new BeanletDefinitionException(
+                        getBeanletName(beanletNode, null), 
+                        "Cyclic inheritance.");
+            } else {
+                throw new BeanletDefinitionException(
+                        getBeanletName(beanletNode, null), 
+                        "Parent does not exist: '" + entry.getKey() + "'.");
             }
-            return Collections.unmodifiableList(list);
-                    
-        } catch (XPathExpressionException e) {
-            throw new AssertionError(e);
         }
+        List<XMLAnnotationDomain<?>> list = scope.values();
+        for (NestedBeanletFactoryImpl nestedFactory : nestedFactories) {
+            list.addAll(nestedFactory.get());
+        }
+        return Collections.unmodifiableList(list);
+    }
+    
+    /**
+     * Creates the domain for the specified top level beanlet and adds it to
+     * the specified {@code scope}.
+     */
+    private static void define(String beanletName, Node beanletNode,
+            ClassLoader loader, ElementAnnotationFactory annotationFactory, 
+            ClassResolver resolver, XMLAnnotationDomain<?> parentDomain,
+            DomainScope scope, List<NestedBeanletFactoryImpl> nestedFactories) 
+            throws BeanletDefinitionException {
+        DomainScope parentDomains = new DomainScope(scope);
+        NestedBeanletFactoryImpl nestedFactory = 
+                new NestedBeanletFactoryImpl(beanletName, loader, 
+                annotationFactory, resolver, parentDomains);
+        XMLAnnotationDomain<?> domain = createNestedDomain(beanletName, 
+                beanletNode, loader, annotationFactory, resolver, 
+                parentDomain, nestedFactory);
+        if (scope.put(beanletName, domain) != null) {
+            throw new BeanletDefinitionException(beanletName,
+                    "Duplicate definition of beanlet.");
+        }
+        parentDomains.put(beanletName, domain);
+        nestedFactories.add(nestedFactory);
     }
     
     static <T> XMLAnnotationDomain<? extends T> createNestedDomain(
@@ -406,25 +476,21 @@ public final class XMLAnnotationDomain<T> extends AbstractAnnotationDomain {
      * {@code null} if node does not exist.
      */
     private static Node getGlobalPackageAnnotationsNode(Node beanletNode, 
-            String packageName) throws XPathExpressionException {
-        Node node = (Node) xpath.evaluate(
-                "/:beanlets/:package-annotations[@package='" + 
-                packageName  + "']", beanletNode, XPathConstants.NODE);
+            String packageName) {
+        DocumentIndex index = DocumentIndex.getInstance(beanletNode);
+        Node node = index.packageAnnotations.get(packageName);
         if (node == null) {
-            node = (Node) GLOBAL_PACKAGE_ANNOTATIONS_EXPRESSION.evaluate(
-                    beanletNode, XPathConstants.NODE);
+            node = index.globalPackageAnnotations;
         }
         return node;
     }
 
     private static Node getGlobalAnnotationsNode(Node beanletNode, 
-            String typeName) throws XPathExpressionException {
-        Node node = (Node) xpath.evaluate(
-                "/:beanlets/:annotations[@type='" + 
-                typeName + "']", beanletNode, XPathConstants.NODE);
+            String typeName) {
+        DocumentIndex index = DocumentIndex.getInstance(beanletNode);
+        Node node = index.annotations.get(typeName);
         if (node == null) {
-            node = (Node) GLOBAL_ANNOTATIONS_EXPRESSION.evaluate(
-                    beanletNode, XPathConstants.NODE);
+            node = index.globalAnnotations;
         }
         return node;
     }
@@ -440,22 +506,28 @@ public final class XMLAnnotationDomain<T> extends AbstractAnnotationDomain {
      * {@code null} if node does not exist.
      */
     private static Node getLocalAnnotationsNode(Node beanletNode, 
-            String beanletName, Class<?> beanletType, String typeName) throws 
-            XPathExpressionException {
+            String beanletName, Class<?> beanletType, String typeName) {
         // PENDING: update this method's javadoc.
-        Node node = (Node) xpath.evaluate(
-                "./:annotations[@type='" + typeName + "']", 
-                beanletNode, XPathConstants.NODE);
-        if (beanletType.getName().equals(typeName)) {
-            NodeList list = (NodeList) xpath.evaluate("./:annotations", 
-                        beanletNode, XPathConstants.NODESET);
-            final Node tmp;
-            if (list.getLength() == 0) {
-                tmp = beanletNode;
-            } else {
-                tmp = (Node) xpath.evaluate("./:annotations[not(@type)]", 
-                        beanletNode, XPathConstants.NODE);
+        Node node = null;
+        Node untyped = null;
+        boolean annotations = false;
+        for (Node child = beanletNode.getFirstChild(); child != null; 
+                child = child.getNextSibling()) {
+            if (isBeanletElement(child, "annotations")) {
+                annotations = true;
+                Node typeNode = child.getAttributes().getNamedItem("type");
+                if (typeNode == null) {
+                    if (untyped == null) {
+                        untyped = child;
+                    }
+                } else if (node == null && 
+                        typeName.equals(typeNode.getNodeValue())) {
+                    node = child;
+                }
             }
+        }
+        if (beanletType.getName().equals(typeName)) {
+            final Node tmp = annotations ? untyped : beanletNode;
             if (node == null) {
                 node = tmp;
             } else if (tmp != null) {
@@ -492,10 +564,16 @@ public final class XMLAnnotationDomain<T> extends AbstractAnnotationDomain {
         // Add annotations for other classes specified by XML.
         String className = null;
         try {
-            NodeList list = (NodeList) xpath.evaluate("./:annotations/@type", 
-                    beanletNode, XPathConstants.NODESET);
-            for (int i = 0; i < list.getLength(); i++) {
-                className = list.item(i).getNodeValue();
+            for (Node child = beanletNode.getFirstChild(); child != null; 
+                    child = child.getNextSibling()) {
+                if (!isBeanletElement(child, "annotations")) {
+                    continue;
+                }
+                Node typeNode = child.getAttributes().getNamedItem("type");
+                if (typeNode == null) {
+                    continue;
+                }
+                className = typeNode.getNodeValue();
                 Class<?> cls = loader.loadClass(className);
                 if (dupes.add(cls)) {
                     intermediate = intermediate.mergeDomain(
@@ -508,8 +586,6 @@ public final class XMLAnnotationDomain<T> extends AbstractAnnotationDomain {
         } catch (ClassNotFoundException e) {
             throw new BeanletValidationException(beanletName, 
                     "Class not found: " + className + ".");
-        } catch (XPathExpressionException e) {
-            throw new AssertionError(e);
         }
 
         // Add annotations for resolved classes.
@@ -535,57 +611,52 @@ public final class XMLAnnotationDomain<T> extends AbstractAnnotationDomain {
             ElementAnnotationFactory annotationFactory, 
             AnnotationDomain parentDomain, 
             NestedBeanletFactory nestedFactory) {
-        try {
-            if (parentDomain == null) {
-                parentDomain = AccessController.doPrivileged(new PrivilegedAction<AnnotationDomain>() {
-                    public AnnotationDomain run() {
-                        return AbstractAnnotationDomain.instance(cls);
-                    }
-                });
-            }
-            List<ElementAnnotation> list = new ArrayList<ElementAnnotation>();
-            Package pkg = cls.getPackage();
-            if (pkg != null) {
-                Node node = getGlobalPackageAnnotationsNode(
-                        beanletNode, pkg.getName());
-                if (node != null) {
-                    list.addAll(getPackageElementAnnotations(beanletName, node, 
-                            pkg, loader, annotationFactory, parentDomain,
-                            nestedFactory));
-                }
-            }
-            Node localNode = getLocalAnnotationsNode(beanletNode, beanletName, 
-                    beanletType, cls.getName());
-            if (localNode != null) {
-                list.addAll(getClassElementAnnotations(beanletName, localNode, 
-                        cls, loader, annotationFactory, parentDomain,
-                        nestedFactory));
-            }
-            @SuppressWarnings("unchecked")
-            XMLAnnotationDomain<?> tmp = (XMLAnnotationDomain<?>) 
-                    new XMLAnnotationDomain(
-                    list, beanletName, beanletType, description, abstr, parent, 
-                    factory, factoryMethod, loader, nestedFactory, false);
-            
-            Node globalNode = getGlobalAnnotationsNode(
-                    beanletNode, cls.getName());
-            if (globalNode != null) {
-                tmp = tmp.mergeDomain(getClassElementAnnotations(beanletName,
-                        globalNode, cls, loader, annotationFactory, 
-                        parentDomain, nestedFactory));
-            }
-            
-            AnnotationDomain domain = AccessController.doPrivileged(
-                    new PrivilegedAction<AnnotationDomain>() {
+        if (parentDomain == null) {
+            parentDomain = AccessController.doPrivileged(new PrivilegedAction<AnnotationDomain>() {
                 public AnnotationDomain run() {
                     return AbstractAnnotationDomain.instance(cls);
                 }
             });
-            return tmp.mergeList(domain.getElements());
-        } catch (XPathExpressionException e) {
-            assert false : e;
-            return Collections.emptyList();
         }
+        List<ElementAnnotation> list = new ArrayList<ElementAnnotation>();
+        Package pkg = cls.getPackage();
+        if (pkg != null) {
+            Node node = getGlobalPackageAnnotationsNode(
+                    beanletNode, pkg.getName());
+            if (node != null) {
+                list.addAll(getPackageElementAnnotations(beanletName, node, 
+                        pkg, loader, annotationFactory, parentDomain,
+                        nestedFactory));
+            }
+        }
+        Node localNode = getLocalAnnotationsNode(beanletNode, beanletName, 
+                beanletType, cls.getName());
+        if (localNode != null) {
+            list.addAll(getClassElementAnnotations(beanletName, localNode, 
+                    cls, loader, annotationFactory, parentDomain,
+                    nestedFactory));
+        }
+        @SuppressWarnings("unchecked")
+        XMLAnnotationDomain<?> tmp = (XMLAnnotationDomain<?>) 
+                new XMLAnnotationDomain(
+                list, beanletName, beanletType, description, abstr, parent, 
+                factory, factoryMethod, loader, nestedFactory, false);
+        
+        Node globalNode = getGlobalAnnotationsNode(
+                beanletNode, cls.getName());
+        if (globalNode != null) {
+            tmp = tmp.mergeDomain(getClassElementAnnotations(beanletName,
+                    globalNode, cls, loader, annotationFactory, 
+                    parentDomain, nestedFactory));
+        }
+        
+        AnnotationDomain domain = AccessController.doPrivileged(
+                new PrivilegedAction<AnnotationDomain>() {
+            public AnnotationDomain run() {
+                return AbstractAnnotationDomain.instance(cls);
+            }
+        });
+        return tmp.mergeList(domain.getElements());
     }
     
     private XMLAnnotationDomain<T> merge(
@@ -676,13 +747,12 @@ public final class XMLAnnotationDomain<T> extends AbstractAnnotationDomain {
             NestedBeanletFactory nestedFactory) {
         List<ElementAnnotation<PackageElement, Annotation>> eas = 
                 new ArrayList<ElementAnnotation<PackageElement, Annotation>>();
-        try {
-            NodeList nodeList = (NodeList) ALL_EXPRESSION.evaluate(pkgNode, 
-                    XPathConstants.NODESET);
-            for (int i = 0; i < nodeList.getLength(); i++) {
-                Node annotationNode = nodeList.item(i);
-                Node mergeNode = (Node) MERGE_EXPRESSION.evaluate(
-                        annotationNode, XPathConstants.NODE);
+        for (Node annotationNode = pkgNode.getFirstChild(); 
+                annotationNode != null; 
+                annotationNode = annotationNode.getNextSibling()) {
+            if (annotationNode.getNodeType() == Node.ELEMENT_NODE) {
+                Node mergeNode = annotationNode.getAttributes().
+                        getNamedItem("merge");
                 boolean merge = mergeNode == null ? false : Boolean.valueOf(
                         mergeNode.getNodeValue());
 
@@ -697,8 +767,6 @@ public final class XMLAnnotationDomain<T> extends AbstractAnnotationDomain {
                     eas.add(e);
                 }
             }
-        } catch (XPathExpressionException e) {
-            assert false : e;
         }
         return eas;
     }
@@ -715,13 +783,12 @@ public final class XMLAnnotationDomain<T> extends AbstractAnnotationDomain {
             ElementAnnotationFactory factory, AnnotationDomain parent,
             NestedBeanletFactory nestedFactory) {
         List<ElementAnnotation> eas = new ArrayList<ElementAnnotation>();
-        try {
-            NodeList nodeList = (NodeList) ALL_EXPRESSION.evaluate(node, 
-                    XPathConstants.NODESET);
-            for (int i = 0; i < nodeList.getLength(); i++) {
-                Node annotationNode = nodeList.item(i);
-                Node mergeNode = (Node) MERGE_EXPRESSION.evaluate(
-                        annotationNode, XPathConstants.NODE);
+        for (Node annotationNode = node.getFirstChild(); 
+                annotationNode != null; 
+                annotationNode = annotationNode.getNextSibling()) {
+            if (annotationNode.getNodeType() == Node.ELEMENT_NODE) {
+                Node mergeNode = annotationNode.getAttributes().
+                        getNamedItem("merge");
                 boolean merge = mergeNode == null ? false : Boolean.valueOf(
                         mergeNode.getNodeValue());
 
@@ -736,8 +803,6 @@ public final class XMLAnnotationDomain<T> extends AbstractAnnotationDomain {
                     eas.add(e);
                 }
             }
-        } catch (XPathExpressionException e) {
-            assert false : e;
         }
         return eas;
     }
@@ -30,13 +30,12 @@
  */
 package org.beanlet.persistence.impl;
 
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.PersistenceContext;
 import javax.persistence.PersistenceException;
@@ -53,18 +52,23 @@ public final class BeanletEntityManagerFactoryRegistry {
     
     // Do not mix container and application factories to prevent clients from
     // closing container factories.
-    private static final Map<BeanletPersistenceUnitInfo,
-            BeanletEntityManagerFactory> containerRegistry = new HashMap
-            <BeanletPersistenceUnitInfo, BeanletEntityManagerFactory>();
-    private static final Map<BeanletPersistenceUnitInfo,
-            BeanletEntityManagerFactory> applicationRegistry = new HashMap
-            <BeanletPersistenceUnitInfo, BeanletEntityManagerFactory>();
-
-    // Locking introduced, as 3CPO can run into deadlocks in the previous optimistic approach.
-    private static final Lock lock = new ReentrantLock();
-    private static final Map<BeanletPersistenceUnitInfo, ReadWriteLock> containerLockMap = new HashMap<BeanletPersistenceUnitInfo, ReadWriteLock>();
-    private static final Map<BeanletPersistenceUnitInfo, ReadWriteLock> applicationLockMap = new HashMap<BeanletPersistenceUnitInfo, ReadWriteLock>();
+    private static final ConcurrentMap<BeanletPersistenceUnitInfo, Entry> 
+            containerRegistry = 
+            new ConcurrentHashMap<BeanletPersistenceUnitInfo, Entry>();
+    private static final ConcurrentMap<BeanletPersistenceUnitInfo, Entry> 
+            applicationRegistry = 
+            new ConcurrentHashMap<BeanletPersistenceUnitInfo, Entry>();
 
+    /**
+     * Holds the factory of a single unit. Factories are created while holding
+     * the lock of their own entry only, as 3CPO can run into deadlocks in an
+     * optimistic approach.
+     */
+    private static final class Entry {
+        final Lock lock = new ReentrantLock();
+        volatile BeanletEntityManagerFactory emf;
+    }
+    
     private static BeanletEntityManagerFactory createEntityManagerFactory(
             BeanletPersistenceUnitInfo unitInfo, final Map<?, ?> map) {
         EntityManagerFactory emf = PersistenceHelper.
@@ -76,97 +80,67 @@ public final class BeanletEntityManagerFactoryRegistry {
         return new InternalEntityManagerFactory(emf, map, unitInfo);
     }
     
-    public static BeanletEntityManagerFactory getInstance(PersistenceUnit unit,
-            ComponentUnit componentUnit) throws PersistenceException {
-        BeanletPersistenceUnitInfoFactory factory = 
-                BeanletPersistenceUnitInfoFactory.getInstance(componentUnit);
-        final BeanletPersistenceUnitInfo unitInfo = factory.getPersistenceUnitInfo(
-                unit.unitName());
-        lock.lock();
-        ReadWriteLock rwLock;
-        try {
-            rwLock = applicationLockMap.get(unitInfo);
-            if (rwLock == null) {
-                rwLock = new ReentrantReadWriteLock();
-                applicationLockMap.put(unitInfo, rwLock);
+    private static BeanletEntityManagerFactory getInstance(
+            final ConcurrentMap<BeanletPersistenceUnitInfo, Entry> registry,
+            final BeanletPersistenceUnitInfo unitInfo, 
+            PersistenceProperty[] props, ComponentUnit componentUnit) throws 
+            PersistenceException {
+        Entry entry = registry.get(unitInfo);
+        if (entry == null) {
+            Entry tmp = registry.putIfAbsent(unitInfo, entry = new Entry());
+            if (tmp != null) {
+                entry = tmp;
             }
-        } finally {
-            lock.unlock();
         }
-
-        rwLock.readLock().lock();
-        BeanletEntityManagerFactory emf = applicationRegistry.get(unitInfo);
-        rwLock.readLock().unlock();
+        BeanletEntityManagerFactory emf = entry.emf;
         if (emf == null) {
             try {
-                rwLock.writeLock().lockInterruptibly();
-                emf = applicationRegistry.get(unitInfo);
+                entry.lock.lockInterruptibly();
+            } catch (InterruptedException e) {
+                throw new PersistenceException(e);
+            }
+            try {
+                emf = entry.emf;
                 if (emf == null) {
-                    emf = createEntityManagerFactory(unitInfo, Collections.emptyMap());
-                    applicationRegistry.put(unitInfo, emf);
+                    Map<String, String> map = new HashMap<String, String>();
+                    for (PersistenceProperty p : props) {
+                        map.put(p.name(), p.value());
+                    }
+                    emf = createEntityManagerFactory(unitInfo, map);
+                    entry.emf = emf;
+                    final Entry e = entry;
                     componentUnit.addDestroyHook(new Runnable() {
                         public void run() {
-                            applicationLockMap.remove(unitInfo);
-                            applicationRegistry.remove(unitInfo).close();
+                            registry.remove(unitInfo, e);
+                            e.emf.close();
                         }
                     });
                 }
-            } catch (InterruptedException e) {
-                throw new PersistenceException(e);
             } finally {
-                rwLock.writeLock().unlock();
+                entry.lock.unlock();
             }
         }
         assert emf != null;
         return emf;
     }
     
+    public static BeanletEntityManagerFactory getInstance(PersistenceUnit unit,
+            ComponentUnit componentUnit) throws PersistenceException {
+        BeanletPersistenceUnitInfoFactory factory = 
+                BeanletPersistenceUnitInfoFactory.getInstance(componentUnit);
+        BeanletPersistenceUnitInfo unitInfo = factory.getPersistenceUnitInfo(
+                unit.unitName());
+        return getInstance(applicationRegistry, unitInfo, 
+                new PersistenceProperty[0], componentUnit);
+    }
+    
     public static BeanletEntityManagerFactory getInstance(PersistenceContext pctx,
             ComponentUnit componentUnit) throws PersistenceException {
-        PersistenceProperty[] props = pctx.properties();
-        Map<String, String> map = new HashMap<String, String>();
-        for (PersistenceProperty p : props) {
-            map.put(p.name(), p.value());
-        }
         BeanletPersistenceUnitInfoFactory factory = 
                 BeanletPersistenceUnitInfoFactory.getInstance(componentUnit);
-        final BeanletPersistenceUnitInfo unitInfo = factory.getPersistenceUnitInfo(
+        BeanletPersistenceUnitInfo unitInfo = factory.getPersistenceUnitInfo(
                 pctx.unitName());
-        lock.lock();
-        ReadWriteLock rwLock;
-        try {
-            rwLock = containerLockMap.get(unitInfo);
-            if (rwLock == null) {
-                rwLock = new ReentrantReadWriteLock();
-                containerLockMap.put(unitInfo, rwLock);
-            }
-        } finally {
-            lock.unlock();
-        }
-        rwLock.readLock().lock();
-        BeanletEntityManagerFactory emf = containerRegistry.get(unitInfo);
-        rwLock.readLock().unlock();
-        if (emf == null) {
-            try {
-                rwLock.writeLock().lockInterruptibly();
-                emf = containerRegistry.get(unitInfo);
-                if (emf == null) {
-                    emf = createEntityManagerFactory(unitInfo, map);
-                    containerRegistry.put(unitInfo, emf);
-                    componentUnit.addDestroyHook(new Runnable() {
-                        public void run() {
-                            containerLockMap.remove(unitInfo);
-                            containerRegistry.remove(unitInfo).close();
-                        }
-                    });
-                }
-            } catch (InterruptedException e) {
-                throw new PersistenceException(e);
-            } finally {
-                rwLock.writeLock().unlock();
-            }
-        }
-        assert emf != null;
-        return emf;
+        return getInstance(containerRegistry, unitInfo, pctx.properties(), 
+                componentUnit);
     }
 }
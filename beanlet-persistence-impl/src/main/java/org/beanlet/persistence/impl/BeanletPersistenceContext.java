@@ -105,7 +105,10 @@ public final class BeanletPersistenceContext {
                 if (transactionRegistry.putIfAbsent(emf, new BeanletPersistenceContext(emf, false, false)) == null) {
                     componentUnit.addDestroyHook(new Runnable() {
                         public void run() {
-                            transactionRegistry.remove(emf);
+                            BeanletPersistenceContext c = transactionRegistry.remove(emf);
+                            if (c != null) {
+                                c.destroy();
+                            }
                         }
                     });
                 }
@@ -159,6 +162,12 @@ public final class BeanletPersistenceContext {
         getEntityManager().preInvoke();
     }
     
+    private void destroy() {
+        if (containerManaged instanceof TransactionScopedEntityManager) {
+            ((TransactionScopedEntityManager) containerManaged).destroy();
+        }
+    }
+    
     void postInvoke(boolean commit) {
         getEntityManager().postInvoke(commit);
     }
@@ -31,16 +31,12 @@
 package org.beanlet.persistence.impl;
 
 import java.io.BufferedInputStream;
-import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.net.URI;
-import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLConnection;
 import java.security.AccessController;
-import java.security.PrivilegedAction;
 import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
 import java.util.ArrayList;
@@ -62,6 +58,11 @@ import javax.xml.XMLConstants;
 import javax.xml.namespace.NamespaceContext;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.Validator;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpression;
@@ -69,11 +70,10 @@ import javax.xml.xpath.XPathExpressionException;
 import javax.xml.xpath.XPathFactory;
 import org.jargo.ComponentUnit;
 import org.w3c.dom.Document;
+import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
-import org.xml.sax.EntityResolver;
 import org.xml.sax.ErrorHandler;
-import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
 
@@ -102,6 +102,8 @@ public final class BeanletPersistenceUnitInfoFactory {
     private static final XPathExpression VALIDATION_MODE;
 
     private static final Map<ClassLoader, BeanletPersistenceUnitInfoFactory> factories;
+    private static final Map<String, Schema> schemas;
+    private static final DocumentBuilderFactory builderFactory;
     
     static {
         try {
@@ -146,6 +148,9 @@ public final class BeanletPersistenceUnitInfoFactory {
             }
             factories = new HashMap<ClassLoader,
                     BeanletPersistenceUnitInfoFactory>();
+            schemas = new HashMap<String, Schema>();
+            builderFactory = DocumentBuilderFactory.newInstance();
+            builderFactory.setNamespaceAware(true);
         } catch (Exception e) {
             throw new AssertionError(e);
         }
@@ -169,9 +174,41 @@ public final class BeanletPersistenceUnitInfoFactory {
         return factory;
     }
     
+    /**
+     * Returns the compiled schema for the specified persistence.xml 
+     * {@code version}. Schemas are compiled once, and shared by all class 
+     * loaders.
+     */
+    private static synchronized Schema getSchema(String version) throws 
+            SAXException {
+        String name = "1.0".equals(version) ? "persistence_1_0.xsd" : 
+                "persistence_2_0.xsd";
+        Schema schema = schemas.get(name);
+        if (schema == null) {
+            URL url = BeanletPersistenceUnitInfoFactory.class.getResource(
+                    "/xml/ns/persistence/" + name);
+            if (url == null) {
+                throw new PersistenceException("Schema not found: " + name + ".");
+            }
+            schema = SchemaFactory.newInstance(
+                    XMLConstants.W3C_XML_SCHEMA_NS_URI).newSchema(url);
+            schemas.put(name, schema);
+        }
+        return schema;
+    }
+    
+    private static synchronized DocumentBuilder newDocumentBuilder() throws
+            ParserConfigurationException {
+        return builderFactory.newDocumentBuilder();
+    }
+    
     private ComponentUnit componentUnit;
     private ConcurrentMap<String, BeanletPersistenceUnitInfo> cache;
     
+    // Guarded by this.
+    private Map<String, Element> units;
+    private List<Element> firstUnits;
+    
     private BeanletPersistenceUnitInfoFactory(ComponentUnit componentUnit) {
         this.componentUnit = componentUnit;
         this.cache = new ConcurrentHashMap<String, BeanletPersistenceUnitInfo>();
@@ -179,103 +216,108 @@ public final class BeanletPersistenceUnitInfoFactory {
     
     public BeanletPersistenceUnitInfo getPersistenceUnitInfo(
             String persistenceUnitName) throws PersistenceException {
+        if (persistenceUnitName == null) {
+            persistenceUnitName = "";
+        }
         BeanletPersistenceUnitInfo unitInfo = cache.get(persistenceUnitName);
         if (unitInfo == null) {
-            try {
-                @SuppressWarnings("unchecked")
-                Enumeration<URL> urls = (Enumeration<URL>) FIND_RESOURCES.
-                        invoke(componentUnit.getClassLoader(), 
-                        "META-INF/persistence.xml");
-                
-                DocumentBuilderFactory factory = DocumentBuilderFactory.
-                        newInstance();
-                factory.setAttribute(
-                        "http://java.sun.com/xml/jaxp/properties/schemaLanguage",
-                        XMLConstants.W3C_XML_SCHEMA_NS_URI);
-                factory.setNamespaceAware(true);
-                factory.setValidating(true);
-                
-                // Validates the document according to the schema definition.
-                DocumentBuilder builder = factory.newDocumentBuilder();
-                builder.setEntityResolver(new SimpleEntityResolver());
-                builder.setErrorHandler(new SimpleErrorHandler());
-                
-                List<Node> nodes = new ArrayList<Node>();
-                while (urls.hasMoreElements()) {
-                    URL url = urls.nextElement();
-                    logger.finest("Looking up persistence unit info '" +
-                            persistenceUnitName + "' at " + url.toExternalForm() + ".");
-                    URLConnection connection = url.openConnection();
-                    connection.setUseCaches(false);
-                    InputStream stream = new BufferedInputStream(connection.getInputStream());
-                    try {
-                        Document document = builder.parse(stream, url.toExternalForm());
-                        final Node node;
-                        if (persistenceUnitName == null || persistenceUnitName.equals("")) {
-                            NodeList tmp = (NodeList) xpath.evaluate(
-                                    "/:persistence/:persistence-unit", document,
-                                    XPathConstants.NODESET);
-                            if (tmp.getLength() == 0) {
-                                continue;
-                            } else if (tmp.getLength() > 1) {
-                                throw new PersistenceException("Multiple persistence units found.");
-                            } else {
-                                node = tmp.item(0);
-                            }
-                        } else {
-                            node = (Node) xpath.evaluate(
-                                    "/:persistence/:persistence-unit[@name='" +
-                                    persistenceUnitName + "']", document,
-                                    XPathConstants.NODE);
-                        }
-                        if (node != null) {
-                            // Alternative for ComponentUnit.getURL().
-//                            if (connection instanceof JarURLConnection) {
-//                                rootUrl = ((JarURLConnection) connection).
-//                                        getJarFileURL();
-//                            } else {
-//                                rootUrl = url.toURI().resolve("..").toURL();
-//                            }
-                            logger.finest("Found persistence unit info '" +
-                                    persistenceUnitName + "' at " + 
-                                    componentUnit.getURL() + ".");
-                            nodes.add(node);
-                            break;
-                        }
-                    } finally {
-                        stream.close();
-                    }
-                }
-                if (nodes.isEmpty()) {
-                    if (persistenceUnitName == null || persistenceUnitName.equals("")) {
-                        throw new PersistenceException("No persistence unit found.");
-                    } else {
-                        throw new PersistenceException("No persistence unit " +
-                                "found for '" + persistenceUnitName + "'.");
+            synchronized (this) {
+                unitInfo = cache.get(persistenceUnitName);
+                if (unitInfo == null) {
+                    if (units == null) {
+                        index();
                     }
-                } else if (nodes.size() > 1) {
-                    if (persistenceUnitName == null || persistenceUnitName.equals("")) {
-                        throw new PersistenceException("Multiple persistence units found.");
+                    final Element element;
+                    if (persistenceUnitName.equals("")) {
+                        if (firstUnits.isEmpty()) {
+                            throw new PersistenceException("No persistence unit found.");
+                        } else if (firstUnits.size() > 1) {
+                            throw new PersistenceException("Multiple persistence units found.");
+                        }
+                        element = firstUnits.get(0);
                     } else {
-                        throw new PersistenceException("Multiple persistence units " +
-                                "found for '" + persistenceUnitName + "'.");
+                        element = units.get(persistenceUnitName);
+                        if (element == null) {
+                            throw new PersistenceException("No persistence unit " +
+                                    "found for '" + persistenceUnitName + "'.");
+                        }
                     }
+                    logger.finest("Found persistence unit info '" +
+                            persistenceUnitName + "' at " + 
+                            componentUnit.getURL() + ".");
+                    unitInfo = buildPersistenceUnitInfo(element);
+                    cache.put(persistenceUnitName, unitInfo);
                 }
-                unitInfo = buildPersistenceUnitInfo(nodes.get(0));
-                cache.putIfAbsent(persistenceUnitName, unitInfo);
-            } catch (PersistenceException e) {
-                throw e;
-            } catch (InvocationTargetException e) {
-                throw new PersistenceException(e.getTargetException());
-            } catch (Exception e) {
-                throw new PersistenceException(e);
             }
         }
-        unitInfo = cache.get(persistenceUnitName);
         assert unitInfo != null;
         return unitInfo;
     }
     
+    /**
+     * Parses all persistence.xml files of the component unit once, and 
+     * indexes their persistence units by name. Each document is validated 
+     * against the precompiled schema of its version. If a name is used more 
+     * than once, the first unit wins.
+     */
+    private void index() throws PersistenceException {
+        try {
+            @SuppressWarnings("unchecked")
+            Enumeration<URL> urls = (Enumeration<URL>) FIND_RESOURCES.
+                    invoke(componentUnit.getClassLoader(), 
+                    "META-INF/persistence.xml");
+            DocumentBuilder builder = newDocumentBuilder();
+            builder.setErrorHandler(new SimpleErrorHandler());
+            
+            Map<String, Element> tmpUnits = new HashMap<String, Element>();
+            List<Element> tmpFirstUnits = null;
+            while (urls.hasMoreElements()) {
+                URL url = urls.nextElement();
+                logger.finest("Indexing persistence units at " + 
+                        url.toExternalForm() + ".");
+                URLConnection connection = url.openConnection();
+                connection.setUseCaches(false);
+                InputStream stream = new BufferedInputStream(connection.getInputStream());
+                final Document document;
+                try {
+                    document = builder.parse(stream, url.toExternalForm());
+                } finally {
+                    stream.close();
+                }
+                Element root = document.getDocumentElement();
+                Validator validator = getSchema(root.getAttribute("version")).
+                        newValidator();
+                validator.setErrorHandler(new SimpleErrorHandler());
+                validator.validate(new DOMSource(document, url.toExternalForm()));
+                
+                List<Element> list = new ArrayList<Element>();
+                for (Node n = root.getFirstChild(); n != null; 
+                        n = n.getNextSibling()) {
+                    if (n.getNodeType() == Node.ELEMENT_NODE &&
+                            "persistence-unit".equals(n.getLocalName())) {
+                        Element element = (Element) n;
+                        list.add(element);
+                        String name = element.getAttribute("name");
+                        if (!tmpUnits.containsKey(name)) {
+                            tmpUnits.put(name, element);
+                        }
+                    }
+                }
+                if (tmpFirstUnits == null && !list.isEmpty()) {
+                    tmpFirstUnits = list;
+                }
+            }
+            units = tmpUnits;
+            firstUnits = tmpFirstUnits == null ? 
+                    Collections.<Element>emptyList() : tmpFirstUnits;
+        } catch (PersistenceException e) {
+            throw e;
+        } catch (InvocationTargetException e) {
+            throw new PersistenceException(e.getTargetException());
+        } catch (Exception e) {
+            throw new PersistenceException(e);
+        }
+    }
     
     private BeanletPersistenceUnitInfo buildPersistenceUnitInfo(
             Node node) throws PersistenceException {
@@ -434,42 +476,6 @@ public final class BeanletPersistenceUnitInfoFactory {
         );
     }
     
-    private class SimpleEntityResolver implements EntityResolver {
-        
-        public InputSource resolveEntity(String publicId, String systemId)
-        throws SAXException, IOException {
-            try {
-                final InputSource source;
-                URI uri = new URI(systemId);
-                String path = uri.getPath();
-                if (path != null) {
-                    if (path.startsWith("/")) {
-                        path = path.substring(1);
-                    }
-                    final String p = path;
-                    InputStream stream = AccessController.
-                            doPrivileged(new PrivilegedAction<InputStream>() {
-                        public InputStream run() {
-                            return componentUnit.getClassLoader().
-                                    getResourceAsStream(p);
-                        }
-                    });
-                    if (stream != null) {
-                        source = new InputSource(stream);
-                    } else {
-                        source = new InputSource(systemId);
-                    }
-                } else {
-                    source = new InputSource(systemId);
-                }
-                source.setPublicId(publicId);
-                return source;
-            } catch (URISyntaxException e) {
-                throw new SAXException(e);
-            }
-        }
-    }
-    
     private class SimpleErrorHandler implements ErrorHandler {
         
         public void error(SAXParseException e) throws SAXException {
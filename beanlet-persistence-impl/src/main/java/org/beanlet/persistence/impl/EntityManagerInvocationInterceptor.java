@@ -30,7 +30,7 @@
  */
 package org.beanlet.persistence.impl;
 
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
 import javax.persistence.PersistenceContext;
 import org.jargo.ComponentUnit;
@@ -43,31 +43,35 @@ import org.jargo.InvocationInterceptor;
 public final class EntityManagerInvocationInterceptor implements
         InvocationInterceptor {
     
-    private final Set<BeanletPersistenceContext> contexts;
+    private final BeanletPersistenceContext[] contexts;
     
     public EntityManagerInvocationInterceptor(
             Set<PersistenceContext> pctxs, ComponentUnit componentUnit) {
-        contexts = new HashSet<BeanletPersistenceContext>();
+        Set<BeanletPersistenceContext> set = 
+                new LinkedHashSet<BeanletPersistenceContext>();
         for (PersistenceContext pctx : pctxs) {
             BeanletPersistenceContext context = 
                     BeanletPersistenceContext.getInstance(pctx, componentUnit);
-            contexts.add(context);
+            set.add(context);
         }
+        contexts = set.toArray(new BeanletPersistenceContext[set.size()]);
     }
     
     public Object intercept(InvocationContext ctx) throws Exception {
         boolean commit = true;
+        // Only contexts that have been prepared are completed.
+        int prepared = 0;
         try {
-            for (BeanletPersistenceContext pctx : contexts) {
-                pctx.preInvoke();
+            for (; prepared < contexts.length; prepared++) {
+                contexts[prepared].preInvoke();
             }
             return ctx.proceed();
         } catch (RuntimeException e) {
             commit = false;
             throw e;
         } finally {
-            for (BeanletPersistenceContext pctx : contexts) {
-                pctx.postInvoke(commit);
+            while (prepared > 0) {
+                contexts[--prepared].postInvoke(commit);
             }
         }
     }
@@ -30,10 +30,11 @@
  */
 package org.beanlet.persistence.impl;
 
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 import javax.persistence.*;
@@ -75,10 +76,8 @@ import org.jargo.MetaData;
  */
 public final class ExtendedEntityManager extends ContainerManagedEntityManager {
 
-    private static final Map<ComponentReference, ExtendedEntityManager> registry =
-            new HashMap<ComponentReference, ExtendedEntityManager>();
-    private static final Map<ExtendedEntityManager, AtomicInteger> counter = 
-            new HashMap<ExtendedEntityManager, AtomicInteger>();
+    private static final ConcurrentMap<ComponentReference, ExtendedEntityManager> registry =
+            new ConcurrentHashMap<ComponentReference, ExtendedEntityManager>();
     private static final TransactionLocal<?> txLocal = new TransactionLocal<Object>();
     
     private static final ComponentApplicationContext ctx = ComponentApplicationContext.instance();
@@ -97,17 +96,15 @@ public final class ExtendedEntityManager extends ContainerManagedEntityManager {
         return false;
     }
     
-    public static synchronized ExtendedEntityManager getInstance(BeanletEntityManagerFactory emf) {
+    public static ExtendedEntityManager getInstance(BeanletEntityManagerFactory emf) {
         List<ComponentReference<?>> callStack = ctx.referenceStack();
         assert !callStack.isEmpty();
         Iterator<ComponentReference<?>> i = callStack.iterator();
         ComponentReference<?> current = i.next().weakReference();
         assert !current.getComponentMetaData().isStatic();
         
-        final ExtendedEntityManager em;
-        if (registry.containsKey(current)) {
-            em = registry.get(current);
-        } else {
+        ExtendedEntityManager em = registry.get(current);
+        if (em == null) {
             // No em registered for current reference; lookup root pctx reference.
             ComponentReference<?> root = current;
             while (i.hasNext()) {
@@ -121,79 +118,100 @@ public final class ExtendedEntityManager extends ContainerManagedEntityManager {
                     break;
                 }
             }
-            if (current == root) {
-                logger.finest("Creating new extended persistence context for " + root + ".");
-                em = new ExtendedEntityManager(emf.createEntityManager());
-                registry.put(root, em);
-                counter.put(em, new AtomicInteger(1));
-                txLocal.onUserTransaction(root.weakReference(), new Runnable() {
-                    public void run() {
-                        em.join();
-                    }
-                });
-                registerDestroyHook(root, em);
-            } else {
-                if (registry.containsKey(root)) {
-                    em = registry.get(root);
-                    logger.finest(current + " inherits extended persistence context from " + root + ".");
-                    registry.put(current, em);
-                    AtomicInteger ai = counter.get(current);
-                    assert ai != null;
-                    ai.incrementAndGet();
-                    txLocal.onUserTransaction(current.weakReference(), new Runnable() {
-                        public void run() {
-                            em.join();
-                        }
-                    });
-                    registerDestroyHook(current, em);
-                } else {
-                    logger.finest("Creating new extended persistence context for " + root + ".");
-                    em = new ExtendedEntityManager(emf.createEntityManager());
-                    registry.put(root, em);
-                    counter.put(em, new AtomicInteger(2));
-                    txLocal.onUserTransaction(root.weakReference(), new Runnable() {
-                        public void run() {
-                            em.join();
-                        }
-                    });
-                    registerDestroyHook(root, em);
-                    logger.finest(current + " inherits extended persistence context from " + root + ".");
-                    registry.put(current, em);
-                    txLocal.onUserTransaction(current.weakReference(), new Runnable() {
-                        public void run() {
-                            em.join();
-                        }
-                    });
-                    registerDestroyHook(current, em);
+            while (true) {
+                em = registry.get(root);
+                if (em == null) {
+                    em = register(root, new ExtendedEntityManager(
+                            emf.createEntityManager()));
+                }
+                if (current == root) {
+                    break;
+                }
+                if (em.acquire()) {
+                    em = register(current, em);
+                    break;
                 }
+                // Root's persistence context is being closed, retry with a 
+                // fresh one.
             }
         }
         assert em != null;
         return em;
     }
     
+    /**
+     * Binds the specified {@code em} to {@code reference}, unless another 
+     * entity manager has been bound to it concurrently. Returns the entity 
+     * manager that is bound to the reference. The reference count that the
+     * caller holds on {@code em} is transferred to the binding, or released
+     * if {@code em} is not bound.
+     */
+    private static ExtendedEntityManager register(
+            ComponentReference<?> reference, final ExtendedEntityManager em) {
+        ExtendedEntityManager tmp = registry.putIfAbsent(reference, em);
+        if (tmp != null) {
+            em.release();
+            return tmp;
+        }
+        if (em.references.get() == 1) {
+            logger.finest("Creating new extended persistence context for " + 
+                    reference + ".");
+        } else {
+            logger.finest(reference + " inherits extended persistence context.");
+        }
+        txLocal.onUserTransaction(reference.weakReference(), new Runnable() {
+            public void run() {
+                em.join();
+            }
+        });
+        registerDestroyHook(reference, em);
+        return em;
+    }
+    
     private static void registerDestroyHook(final ComponentReference<?> reference, 
             final ExtendedEntityManager em) {
         reference.addDestroyHook(new Runnable() {
             public void run() {
-                ExtendedEntityManager tmp = registry.remove(reference);
-                assert tmp == em;
-                AtomicInteger ai = counter.get(em);
-                assert ai != null;
-                if (ai.decrementAndGet() == 0) {
-                    counter.remove(em);
-                    em.getEntityManager().close();
-                }
+                boolean removed = registry.remove(reference, em);
+                assert removed;
+                em.release();
             }
         });
     }
     
     private final BeanletEntityManager em;
     
+    // Number of references that are bound to this persistence context, plus
+    // the one held by its creator. Never incremented once it has dropped to 
+    // zero, as the entity manager is closed by then.
+    private final AtomicInteger references = new AtomicInteger(1);
+    
     public ExtendedEntityManager(BeanletEntityManager em) {
         this.em = em;
     }
     
+    /**
+     * Takes a reference count on this persistence context. Returns 
+     * {@code false} if it has been closed already.
+     */
+    private boolean acquire() {
+        while (true) {
+            int n = references.get();
+            if (n == 0) {
+                return false;
+            }
+            if (references.compareAndSet(n, n + 1)) {
+                return true;
+            }
+        }
+    }
+    
+    private void release() {
+        if (references.decrementAndGet() == 0) {
+            em.close();
+        }
+    }
+    
     public EntityManager getEntityManager() {
         return em;
     }
@@ -77,8 +77,7 @@ final class InternalJTAEntityManagerFactory implements EntityManagerFactory {
             if (tmp == null) {
                 try {
                     final EntityManager em = emf.createEntityManager();
-                    Transaction tx = txLocal.getTransaction();
-                    tx.registerSynchronization(new Synchronization() {
+                    txLocal.registerSynchronization(new Synchronization() {
                         public void beforeCompletion() {
                         }
                         public void afterCompletion(int i) {
@@ -30,9 +30,12 @@
  */
 package org.beanlet.persistence.impl;
 
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 import javax.persistence.Cache;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
@@ -40,40 +43,138 @@ import javax.persistence.PersistenceUnitUtil;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.metamodel.Metamodel;
 
-import org.beanlet.common.BeanletStack;
-
 /**
  * This class is used internally and should never be passed to the client 
  * application. This class has package private visibility.
  *
+ * <p>If the {@code org.beanlet.persistence.reuseEntityManager} system property
+ * is set to {@code true}, the entity manager of an outermost invocation is
+ * cleared instead of closed, and reused by the next invocation on the same 
+ * thread. This avoids creating an entity manager for each short call, at the
+ * cost of keeping one entity manager open per thread. Only entity managers 
+ * that have been created without properties, and that have no active 
+ * resource-local transaction, are reused. Idle entity managers are closed 
+ * by {@code destroy}.</p>
+ *
  * @author Leon van Zantvoort
  */
 final class InternalNonJTAEntityManagerFactory implements EntityManagerFactory {
     
+    private static final boolean REUSE;
+    
+    static {
+        // PERMISSION: java.util.PropertyPermission "org.beanlet.persistence.reuseEntityManager" "read"
+        REUSE = Boolean.getBoolean("org.beanlet.persistence.reuseEntityManager");
+    }
+    
+    /**
+     * Entity managers of the invocations that are running on a thread, 
+     * indexed by invocation depth.
+     */
+    private static final class Frames {
+        EntityManager[] ems = new EntityManager[8];
+        boolean[] reusable = new boolean[8];
+        int depth;
+        // Cleared by other threads on destroy.
+        final AtomicReference<EntityManager> idle = 
+                new AtomicReference<EntityManager>();
+    }
+    
     private final EntityManagerFactory emf;
-    private final ThreadLocal<BeanletStack<Map<Object, EntityManager>>> localStack;
+    private final ThreadLocal<Frames> local;
+    
+    // The WeakHashMap's key is not referenced by the map's value.
+    private final Map<Frames, Boolean> registered;
+    private volatile boolean destroyed;
     
     public InternalNonJTAEntityManagerFactory(EntityManagerFactory emf) {
         this.emf = emf;
-        this.localStack = new ThreadLocal<BeanletStack<Map<Object, EntityManager>>>() {
-            protected BeanletStack<Map<Object, EntityManager>> initialValue() {
-                return new BeanletStack<Map<Object, EntityManager>>();
+        this.registered = Collections.synchronizedMap(
+                new WeakHashMap<Frames, Boolean>());
+        this.local = new ThreadLocal<Frames>() {
+            protected Frames initialValue() {
+                Frames f = new Frames();
+                if (REUSE) {
+                    registered.put(f, Boolean.TRUE);
+                }
+                return f;
             }
         };
     }
     
     public void preInvoke() {
-        localStack.get().push(new IdentityHashMap<Object, EntityManager>());
+        Frames frames = local.get();
+        if (frames.depth == frames.ems.length) {
+            EntityManager[] tmp = new EntityManager[frames.depth * 2];
+            System.arraycopy(frames.ems, 0, tmp, 0, frames.depth);
+            frames.ems = tmp;
+            boolean[] tmp2 = new boolean[frames.depth * 2];
+            System.arraycopy(frames.reusable, 0, tmp2, 0, frames.depth);
+            frames.reusable = tmp2;
+        }
+        frames.reusable[frames.depth] = false;
+        frames.ems[frames.depth++] = null;
     }
     
     public void postInvoke() {
-        Map<Object, EntityManager> map = localStack.get().pop();
-        for (EntityManager em : map.values()) {
-            try {
-                em.close();
-            } catch (Exception e) {
-                // Ignore.
+        Frames frames = local.get();
+        assert frames.depth > 0;
+        EntityManager em = frames.ems[--frames.depth];
+        boolean reusable = frames.reusable[frames.depth];
+        frames.ems[frames.depth] = null;
+        if (em != null) {
+            if (REUSE && reusable && !destroyed && frames.idle.get() == null &&
+                    park(em)) {
+                frames.idle.set(em);
+                if (destroyed && frames.idle.compareAndSet(em, null)) {
+                    // Missed by destroy.
+                    close(em);
+                }
+                return;
             }
+            close(em);
+        }
+    }
+    
+    /**
+     * Prepares the specified entity manager for reuse, returns {@code false}
+     * if it must be closed instead.
+     */
+    private static boolean park(EntityManager em) {
+        try {
+            if (em.isOpen() && !em.getTransaction().isActive()) {
+                em.clear();
+                return true;
+            }
+        } catch (Exception e) {
+            // Close it instead.
+        }
+        return false;
+    }
+    
+    /**
+     * Closes the idle entity managers of all threads. Entity managers are no
+     * longer reused hereafter.
+     */
+    public void destroy() {
+        destroyed = true;
+        final List<Frames> list;
+        synchronized (registered) {
+            list = new ArrayList<Frames>(registered.keySet());
+        }
+        for (Frames f : list) {
+            EntityManager em = f.idle.getAndSet(null);
+            if (em != null) {
+                close(em);
+            }
+        }
+    }
+    
+    private static void close(EntityManager em) {
+        try {
+            em.close();
+        } catch (Exception e) {
+            // Ignore.
         }
     }
 
@@ -82,13 +183,24 @@ final class InternalNonJTAEntityManagerFactory implements EntityManagerFactory {
     }
 
     public EntityManager createEntityManager(Map map) {
-        BeanletStack<Map<Object, EntityManager>> stack = localStack.get();
-        Map<Object, EntityManager> stacked = stack.peek();
-        assert stacked != null;
-        EntityManager em = stacked.get(this);
+        Frames frames = local.get();
+        assert frames.depth > 0;
+        EntityManager em = frames.ems[frames.depth - 1];
         if (em == null) {
-            em = emf.createEntityManager(map);
-            stacked.put(this, em);
+            // Only entity managers without specific properties are reused.
+            boolean reusable = map.isEmpty();
+            if (REUSE && reusable) {
+                em = frames.idle.getAndSet(null);
+                if (em != null && (!emf.isOpen() || !em.isOpen())) {
+                    close(em);
+                    em = null;
+                }
+            }
+            if (em == null) {
+                em = emf.createEntityManager(map);
+            }
+            frames.ems[frames.depth - 1] = em;
+            frames.reusable[frames.depth - 1] = reusable;
         }
         return em;
     }
@@ -98,6 +210,7 @@ final class InternalNonJTAEntityManagerFactory implements EntityManagerFactory {
     }
 
     public void close() {
+        destroy();
         emf.close();
     }
 
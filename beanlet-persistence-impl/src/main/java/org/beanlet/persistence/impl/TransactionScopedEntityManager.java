@@ -89,7 +89,15 @@ public final class TransactionScopedEntityManager extends
     @Override
     void preInvoke() {
         nonJTA.preInvoke();
-        jta.preInvoke();
+        boolean success = false;
+        try {
+            jta.preInvoke();
+            success = true;
+        } finally {
+            if (!success) {
+                nonJTA.postInvoke();
+            }
+        }
     }
     
     /**
@@ -101,6 +109,14 @@ public final class TransactionScopedEntityManager extends
         nonJTA.postInvoke();
     }
     
+    /**
+     * Releases the entity managers that are kept for reuse. This method has 
+     * package private visibility.
+     */
+    void destroy() {
+        nonJTA.destroy();
+    }
+    
     @Override
     public void persist(Object object) {
         verifyTransactionActive();
@@ -39,6 +39,9 @@ import java.security.AccessController;
 import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
 import java.util.Enumeration;
+import javax.transaction.RollbackException;
+import javax.transaction.Synchronization;
+import javax.transaction.SystemException;
 import javax.transaction.Transaction;
 import org.beanlet.BeanletApplicationException;
 import org.jargo.ComponentReference;
@@ -220,6 +223,32 @@ public class TransactionLocal<T> {
         delegate.remove();
     }
     
+    /**
+     * Registers the specified {@code synchronization} with the transaction
+     * that is associated with the calling thread. If supported by the 
+     * container, synchronizations that are registered through this method 
+     * share a single synchronization of the container, which is registered 
+     * with the transaction only once.
+     *
+     * @throws IllegalStateException if not in transactional scope, or if
+     * the transaction has completed.
+     * @throws RollbackException if the transaction is marked for rollback.
+     * @throws SystemException if the transaction manager fails.
+     */
+    public final void registerSynchronization(Synchronization synchronization)
+            throws IllegalStateException, RollbackException, SystemException {
+        if (delegate instanceof TransactionSynchronizationDelegate) {
+            ((TransactionSynchronizationDelegate) delegate).
+                    registerSynchronization(synchronization);
+        } else {
+            Transaction transaction = delegate.getTransaction();
+            if (transaction == null) {
+                throw new IllegalStateException("Not in transactional scope.");
+            }
+            transaction.registerSynchronization(synchronization);
+        }
+    }
+    
     /**
      * Callback interface is invoked when a user transaction is started by the
      * specified {@code reference}.
@@ -0,0 +1,57 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Beanlet - JSE Application Container.
+ * Copyright (C) 2006  Leon van Zantvoort
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ * 
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://beanlet.org
+ */
+package org.beanlet.plugin;
+
+import javax.transaction.RollbackException;
+import javax.transaction.Synchronization;
+import javax.transaction.SystemException;
+
+/**
+ * Optionally implemented by {@code TransactionLocalDelegate} implementations
+ * that dispatch the synchronizations of a transaction through a single 
+ * synchronization of the container. {@code TransactionLocal} registers 
+ * synchronizations with the transaction directly if its delegate does not 
+ * implement this interface.
+ *
+ * @author Leon van Zantvoort
+ */
+public interface TransactionSynchronizationDelegate {
+    
+    /**
+     * Registers the specified {@code synchronization} with the transaction
+     * that is associated with the calling thread.
+     *
+     * @throws IllegalStateException if not in transactional scope, or if
+     * the transaction has completed.
+     */
+    void registerSynchronization(Synchronization synchronization) throws
+            IllegalStateException, RollbackException, SystemException;
+}
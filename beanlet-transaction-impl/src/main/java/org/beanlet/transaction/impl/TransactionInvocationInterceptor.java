@@ -30,12 +30,10 @@ package org.beanlet.transaction.impl;
 
 import java.util.concurrent.atomic.AtomicReference;
 import org.beanlet.BeanletStateException;
+import org.beanlet.common.WeakIdentityMap;
 import static org.beanlet.WiringMode.*;
 import static org.beanlet.transaction.impl.TransactionStatus.*;
 import static java.util.logging.Level.*;
-import java.util.IdentityHashMap;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.transaction.RollbackException;
@@ -64,9 +62,12 @@ public final class TransactionInvocationInterceptor implements
     private static final Logger logger = Logger.getLogger(
             TransactionInvocationInterceptor.class.getName());
     
-    private final IdentityHashMap<Transaction, Object> registrations =
-            new IdentityHashMap<Transaction, Object>();
-    private static final Lock lock = new ReentrantLock(true);
+    /**
+     * Transactions this interceptor has registered a synchronization with.
+     * Unrelated transactions never contend on this map.
+     */
+    private final WeakIdentityMap<Transaction, Object> registrations =
+            new WeakIdentityMap<Transaction, Object>();
     private static final Object DUMMY = new Object();
     
     private final ComponentConfiguration configuration;
@@ -89,19 +90,13 @@ public final class TransactionInvocationInterceptor implements
     }
     
     private void cleanRegistration(Transaction transaction) {
-        lock.lock();
-        try {
-            registrations.remove(transaction);
-        } finally {
-            lock.unlock();
-        }
+        registrations.remove(transaction);
     }
     
     private Transaction preTransaction(InvocationContext ctx) throws
             BeanletStateException {
         try {
             final Transaction transaction;
-            transactionManager.setTransactionTimeout(timeout);
             TransactionStatus status = TransactionStatus.toEnum(
                     transactionManager.getStatus());
             switch (type) {
@@ -121,7 +116,9 @@ public final class TransactionInvocationInterceptor implements
                     if (transactionManager.getTransaction() != null ||
                             status != NO_TRANSACTION) {
                         transaction = transactionManager.suspend();
-                        log("Suspended transaction " + transaction + ".", FINEST);
+                        if (logger.isLoggable(FINEST)) {
+                            log("Suspended transaction " + transaction + ".", FINEST);
+                        }
                     } else {
                         transaction = null;
                     }
@@ -130,9 +127,12 @@ public final class TransactionInvocationInterceptor implements
                                 "callback prohibited for transaction attribute NOT_SUPPORTED.");
                     }
                     break;
-                case MANDATORY:
-                    if (transactionManager.getTransaction() == null ||
-                            status == NO_TRANSACTION) {
+                case MANDATORY: {
+                    // Status is checked first, so that the transaction is 
+                    // only looked up if there is one.
+                    Transaction current = status == NO_TRANSACTION ? null :
+                            transactionManager.getTransaction();
+                    if (current == null) {
                         throw new BeanletStateException("Active transaction " +
                                 "required for attribute MANDATORY.");
                     } else {
@@ -140,11 +140,12 @@ public final class TransactionInvocationInterceptor implements
                             log("Transaction is marked for rollback only.", INFO);
                         } else {
                             // Don't register if registration is fruitless b/c of status.
-                            registerSynchronization(ctx);
+                            registerSynchronization(ctx, current);
                         }
                         transaction = null;
                     }
                     break;
+                }
                 case SUPPORTS:
                     if (status == MARKED_ROLLBACK) {
                         log("Transaction is marked for rollback only.", INFO);
@@ -152,42 +153,55 @@ public final class TransactionInvocationInterceptor implements
                     // Note that EJB does not allow synchronization for attribute SUPPORTS.
                     if (status == ACTIVE) {
                         // Don't register if registration is fruitless b/c of status.
-                        registerSynchronization(ctx);
-                    } else {
+                        registerSynchronization(ctx, 
+                                transactionManager.getTransaction());
+                    } else if (logger.isLoggable(FINEST)) {
                         log("Skipping synchronization registration. " +
                                 "Transaction is not active: " + status + ".", FINEST);
                     }
                     transaction = null;
                     break;
-                case REQUIRED:
-                    if (transactionManager.getTransaction() == null ||
-                            status == NO_TRANSACTION) {
+                case REQUIRED: {
+                    Transaction current = status == NO_TRANSACTION ? null :
+                            transactionManager.getTransaction();
+                    if (current == null) {
+                        transactionManager.setTransactionTimeout(timeout);
                         transactionManager.begin();
                         transaction = transactionManager.getTransaction();
-                        log("Started transaction " + transaction + ".", FINEST);
-                        registerSynchronization(ctx);
+                        if (logger.isLoggable(FINEST)) {
+                            log("Started transaction " + transaction + ".", FINEST);
+                        }
+                        registerSynchronization(ctx, transaction);
                     } else {
                         if (status == MARKED_ROLLBACK) {
                             log("Transaction is marked for rollback only.", INFO);
                         } else {
                             // Don't register if registration is fruitless b/c of status.
-                            registerSynchronization(ctx);
+                            registerSynchronization(ctx, current);
                         }
                         transaction = null;
                     }
                     break;
-                case REQUIRES_NEW:
+                }
+                case REQUIRES_NEW: {
                     if (transactionManager.getTransaction() != null ||
                             status != NO_TRANSACTION) {
                         transaction = transactionManager.suspend();
-                        log("Suspended transaction " + transaction + ".", FINEST);
+                        if (logger.isLoggable(FINEST)) {
+                            log("Suspended transaction " + transaction + ".", FINEST);
+                        }
                     } else {
                         transaction = null;
                     }
+                    transactionManager.setTransactionTimeout(timeout);
                     transactionManager.begin();
-                    log("Started transaction " + transactionManager.getTransaction() + ".", FINEST);
-                    registerSynchronization(ctx);
+                    Transaction current = transactionManager.getTransaction();
+                    if (logger.isLoggable(FINEST)) {
+                        log("Started transaction " + current + ".", FINEST);
+                    }
+                    registerSynchronization(ctx, current);
                     break;
+                }
                 default:
                     transaction = null;
                     assert false;
@@ -205,18 +219,14 @@ public final class TransactionInvocationInterceptor implements
             BeanletStateException{
         if (transactionManager != null) {
             try {
-                TransactionStatus status = TransactionStatus.toEnum(
-                        transactionManager.getStatus());
-                log("Transaction status: " + status + ".", FINEST);
-                if (status == MARKED_ROLLBACK || status == ROLLEDBACK) {
-                    commit = false;
-                }
                 switch (type) {
                     case NEVER:
                         break;
                     case NOT_SUPPORTED:
                         if (transaction != null) {
-                            log("Resuming transaction " + transaction + ".", FINEST);
+                            if (logger.isLoggable(FINEST)) {
+                                log("Resuming transaction " + transaction + ".", FINEST);
+                            }
                             transactionManager.resume(transaction);
                         }
                         break;
@@ -226,41 +236,15 @@ public final class TransactionInvocationInterceptor implements
                         break;
                     case REQUIRED:
                         if (transaction != null) {
-                            try {
-                                if (commit) {
-                                    log("Committing transaction " + transaction + ".", FINEST);
-                                    transactionManager.commit();
-                                } else {
-                                    log("Rolling back transaction " + transaction + ".", FINEST);
-                                    transactionManager.rollback();
-                                }
-                            } catch (IllegalStateException e) {
-                                // Ignore.
-                            } finally {
-                                // Disabled as this assertion might fail on application shutdown.
-//                                assert transactionManager.getTransaction() == null ||
-//                                        TransactionStatus.toEnum(transactionManager.getStatus()) == NO_TRANSACTION;
-                            }
+                            completeTransaction(commit);
                         }
                         break;
                     case REQUIRES_NEW:
-                        try {
-                            if (commit) {
-                                log("Committing transaction " + transactionManager.getTransaction() + ".", FINEST);
-                                transactionManager.commit();
-                            } else {
-                                log("Rolling back transaction " + transactionManager.getTransaction() + ".", FINEST);
-                                transactionManager.rollback();
-                            }
-                        } catch (IllegalStateException e) {
-                            // Ignore.
-                        } finally {
-                            // Disabled as this assertion might fail on application shutdown.
-//                            assert transactionManager.getTransaction() == null ||
-//                                    TransactionStatus.toEnum(transactionManager.getStatus()) == NO_TRANSACTION;
-                        }
+                        completeTransaction(commit);
                         if (transaction != null) {
-                            log("Resuming transaction " + transaction + ".", FINEST);
+                            if (logger.isLoggable(FINEST)) {
+                                log("Resuming transaction " + transaction + ".", FINEST);
+                            }
                             transactionManager.resume(transaction);
                         }
                         break;
@@ -276,6 +260,42 @@ public final class TransactionInvocationInterceptor implements
         }
     }
     
+    /**
+     * Commits or rolls back the transaction that has been started by this 
+     * interceptor.
+     */
+    private void completeTransaction(boolean commit) throws Exception {
+        TransactionStatus status = TransactionStatus.toEnum(
+                transactionManager.getStatus());
+        if (logger.isLoggable(FINEST)) {
+            log("Transaction status: " + status + ".", FINEST);
+        }
+        if (status == MARKED_ROLLBACK || status == ROLLEDBACK) {
+            commit = false;
+        }
+        try {
+            if (commit) {
+                if (logger.isLoggable(FINEST)) {
+                    log("Committing transaction " + 
+                            transactionManager.getTransaction() + ".", FINEST);
+                }
+                transactionManager.commit();
+            } else {
+                if (logger.isLoggable(FINEST)) {
+                    log("Rolling back transaction " + 
+                            transactionManager.getTransaction() + ".", FINEST);
+                }
+                transactionManager.rollback();
+            }
+        } catch (IllegalStateException e) {
+            // Ignore.
+        } finally {
+            // Disabled as this assertion might fail on application shutdown.
+//            assert transactionManager.getTransaction() == null ||
+//                    TransactionStatus.toEnum(transactionManager.getStatus()) == NO_TRANSACTION;
+        }
+    }
+    
     public boolean isLifecycleInterceptor() {
         return false;
     }
@@ -285,8 +305,10 @@ public final class TransactionInvocationInterceptor implements
         boolean commit = true;
         try {
             if (transactionManager != null) {
-                log("Intercepting " + ctx.getInvocation().getMethod().getName() +
-                        " with attribute " + type + ".", FINEST);
+                if (logger.isLoggable(FINEST)) {
+                    log("Intercepting " + ctx.getInvocation().getMethod().getName() +
+                            " with attribute " + type + ".", FINEST);
+                }
                 transaction = preTransaction(ctx);
             } else {
                 transaction = null;
@@ -303,94 +325,100 @@ public final class TransactionInvocationInterceptor implements
         }
     }
     
-    private void registerSynchronization(final InvocationContext ctx) throws
-            IllegalStateException, RollbackException, SystemException {
+    private void registerSynchronization(final InvocationContext ctx,
+            final Transaction transaction) throws IllegalStateException, 
+            RollbackException, SystemException {
         assert transactionManager != null;
-        final Transaction transaction = transactionManager.getTransaction();
         assert transaction != null;
-        lock.lock();
-        try {
-            if (registrations.put(transaction, DUMMY) == null) {
+        // Plain lookup first, to avoid creating a key on each call.
+        if (registrations.get(transaction) == null &&
+                registrations.putIfAbsent(transaction, DUMMY) == null) {
+            if (logger.isLoggable(FINEST)) {
                 log("Registering transaction: " + transaction + ".", FINEST);
-                boolean registered = false;
-                TransactionLocalDelegateImpl.begin(transaction);
+            }
+            boolean registered = false;
+            TransactionLocalDelegateImpl.begin(transaction);
+            try {
                 try {
-                    try {
-                        if (synchronization != null) {
-                            synchronization.afterBegin();
+                    if (synchronization != null) {
+                        synchronization.afterBegin();
+                    }
+                } finally {
+                    TransactionLocalDelegateImpl.registerSynchronization(
+                            transaction, new Synchronization() {
+                        // Hold a strong reference to the component to prevent it from being destroyed.
+                        AtomicReference<?> reference = 
+                                new AtomicReference<Object>(
+                                ctx.getComponentContext().reference());
+                        public void beforeCompletion() {
+                            if (synchronization != null) {
+                                synchronization.beforeCompletion();
+                            }
                         }
-                    } finally {
-                        transaction.registerSynchronization(new Synchronization() {
-                            // Hold a strong reference to the component to prevent it from being destroyed.
-                            AtomicReference<?> reference = 
-                                    new AtomicReference<Object>(
-                                    ctx.getComponentContext().reference());
-                            public void beforeCompletion() {
+                        public void afterCompletion(int i) {
+                            try {
                                 if (synchronization != null) {
-                                    synchronization.beforeCompletion();
+                                    synchronization.afterCompletion(i == Status.STATUS_COMMITTED);
                                 }
-                            }
-                            public void afterCompletion(int i) {
+                            } finally {
+                                reference.set(null);
                                 try {
-                                    if (synchronization != null) {
-                                        synchronization.afterCompletion(i == Status.STATUS_COMMITTED);
-                                    }
-                                } finally {
-                                    reference.set(null);
-                                    try {
+                                    if (logger.isLoggable(FINEST)) {
                                         log("Deregistering transaction on" +
                                                 " completion: " + transaction + ".", FINEST);
-                                        cleanRegistration(transaction);
-                                    } finally {
-                                        TransactionLocalDelegateImpl.commit(transaction);
                                     }
+                                    cleanRegistration(transaction);
+                                } finally {
+                                    TransactionLocalDelegateImpl.commit(transaction);
                                 }
                             }
-                        });
-                        registered = true;
-                    }
-                } catch (Throwable t) {
-                    if (logger != null) {
-                        logger.log(WARNING, "Failed to register " +
-                                "synchronization for transaction: " + 
-                                transaction + ".", t);
+                        }
+                    });
+                    registered = true;
+                }
+            } catch (Throwable t) {
+                if (logger != null) {
+                    logger.log(WARNING, "Failed to register " +
+                            "synchronization for transaction: " + 
+                            transaction + ".", t);
+                }
+                try {
+                    throw t;
+                } catch (IllegalStateException e) {
+                    throw e;
+                } catch (RollbackException e) {
+                    // Note that in case of Jotm, the 
+                    // registerSynchronization method does not fail 
+                    // atomically. If this exception is thrown, 
+                    // the synchronization methods stil seem to be executed.
+                    throw e;
+                } catch (SystemException e) {
+                    throw e;
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    assert false;
+                    throw new RuntimeException(e);
+                } catch (Error e) {
+                    throw e;
+                } catch (Throwable e) {
+                    assert false : e;
+                    throw new RuntimeException(e);
+                }
+            } finally {
+                if (!registered) {
+                    if (logger.isLoggable(FINEST)) {
+                        logger.finest("Deregistering transaction because " +
+                                "synchronization registration failed: " + 
+                                transaction + ".");
                     }
                     try {
-                        throw t;
-                    } catch (IllegalStateException e) {
-                        throw e;
-                    } catch (RollbackException e) {
-                        // Note that in case of Jotm, the 
-                        // registerSynchronization method does not fail 
-                        // atomically. If this exception is thrown, 
-                        // the synchronization methods stil seem to be executed.
-                        throw e;
-                    } catch (SystemException e) {
-                        throw e;
-                    } catch (RuntimeException e) {
-                        throw e;
-                    } catch (Exception e) {
-                        assert false;
-                        throw new RuntimeException(e);
-                    } catch (Error e) {
-                        throw e;
-                    } catch (Throwable e) {
-                        assert false : e;
-                        throw new RuntimeException(e);
-                    }
-                } finally {
-                    if (!registered) {
-                        if (logger != null) {
-                            logger.finest("Deregistering transaction because " +
-                                    "synchronization registration failed: " + 
-                                    transaction + ".");
-                        }
                         cleanRegistration(transaction);
+                    } finally {
+                        TransactionLocalDelegateImpl.commit(transaction);
                     }
                 }
             }
-        } finally {
-            lock.unlock();
         }
     }
     
@@ -30,51 +30,59 @@
  */
 package org.beanlet.transaction.impl;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
+import javax.transaction.RollbackException;
+import javax.transaction.Synchronization;
+import javax.transaction.SystemException;
 import javax.transaction.Transaction;
 import org.beanlet.BeanletStateException;
 import org.beanlet.common.BeanletStack;
 import org.beanlet.plugin.TransactionLocalDelegate;
+import org.beanlet.plugin.TransactionSynchronizationDelegate;
 import org.jargo.ComponentReference;
 
 /**
+ * <p>Values are not kept by this delegate, but by the {@code TransactionScope}
+ * of the transaction that is associated with the calling thread. Lookups 
+ * therefore only synchronize on the scope of the current transaction.</p>
  *
  * @author Leon van Zantvoort
  */
 public final class TransactionLocalDelegateImpl<T> implements 
-        TransactionLocalDelegate<T> {
+        TransactionLocalDelegate<T>, TransactionSynchronizationDelegate {
     
     private static final Logger logger = Logger.getLogger(TransactionLocalDelegateImpl.class.getName());
-    private static final Map<ComponentReference, List<Runnable>> callbackMap = 
-            new HashMap<ComponentReference, List<Runnable>>();
-    private static final ThreadLocal<BeanletStack<Transaction>> local;
+    private static final ConcurrentMap<ComponentReference, List<Runnable>> callbackMap = 
+            new ConcurrentHashMap<ComponentReference, List<Runnable>>();
+    private static final ThreadLocal<BeanletStack<TransactionScope>> local;
     static {
-        local = new ThreadLocal<BeanletStack<Transaction>>() {
-            protected BeanletStack<Transaction> initialValue() {
-                return new BeanletStack<Transaction>();
+        local = new ThreadLocal<BeanletStack<TransactionScope>>() {
+            protected BeanletStack<TransactionScope> initialValue() {
+                return new BeanletStack<TransactionScope>();
             }
         };
     } 
-           
-    // PENDING: replace WeakHashMap by a WeakIdentityHashMap.
-    private final WeakHashMap<Transaction, T> map;
+    
+    // Fibonacci hashing spreads consecutive delegates over the scope tables.
+    private static final AtomicInteger nextHash = new AtomicInteger();
+    private static final int HASH_INCREMENT = 0x61c88647;
+    
+    // Package private visibility.
+    final int hash;
     
     public TransactionLocalDelegateImpl() {
-        map = new WeakHashMap<Transaction, T>();
+        hash = nextHash.getAndAdd(HASH_INCREMENT);
     }
 
     static void userTransaction(ComponentReference<?> reference) {
         logger.finest("User transaction started for reference: " + reference + 
                 ".");
-        final List<Runnable> list;
-        synchronized (TransactionLocalDelegateImpl.class) {
-            list = callbackMap.get(reference);
-        }
+        List<Runnable> list = callbackMap.get(reference);
         if (list != null) {
             for (Runnable r : list) {
                 r.run();
@@ -85,19 +93,38 @@ public final class TransactionLocalDelegateImpl<T> implements
     // Package private visibility.
     static void begin(Transaction transaction) {
         assert transaction != null;
-        local.get().push(transaction);
+        local.get().push(TransactionScope.attach(transaction));
     }
     
     // Package private visibility.
     static void commit(Transaction transaction) {
-        Transaction tx = local.get().poll();
-        assert tx == transaction : tx;
+        TransactionScope scope = local.get().poll();
+        assert scope != null && scope.getTransaction() == transaction : scope;
+        if (scope != null) {
+            scope.detach();
+        }
     }
     
-    private void checkInTransaction() {
-        if (getTransaction() == null) {
+    /**
+     * Registers the specified {@code synchronization} with the scope of the
+     * specified {@code transaction}, which must be associated with the 
+     * calling thread.
+     */
+    // Package private visibility.
+    static void registerSynchronization(Transaction transaction, 
+            Synchronization synchronization) throws IllegalStateException,
+            RollbackException, SystemException {
+        TransactionScope scope = local.get().peek();
+        assert scope != null && scope.getTransaction() == transaction : scope;
+        scope.registerSynchronization(synchronization);
+    }
+    
+    private TransactionScope getScope() {
+        TransactionScope scope = local.get().peek();
+        if (scope == null) {
             throw new IllegalStateException("Not in transactional scope.");
         }
+        return scope;
     }
     
     /**
@@ -108,7 +135,8 @@ public final class TransactionLocalDelegateImpl<T> implements
      * @return the transaction associated with the calling thread.
      */
     public Transaction getTransaction() {
-        return local.get().peek();
+        TransactionScope scope = local.get().peek();
+        return scope == null ? null : scope.getTransaction();
     }
     
     /**
@@ -121,8 +149,7 @@ public final class TransactionLocalDelegateImpl<T> implements
      * @throws IllegalStateException if not in transactional scope.
      */
     public void set(T value) throws IllegalStateException {
-        checkInTransaction();
-        map.put(local.get().peek(), value);
+        getScope().put(this, hash, value);
     }
 
     /**
@@ -131,9 +158,9 @@ public final class TransactionLocalDelegateImpl<T> implements
      *
      * @throws IllegalStateException if not in transactional scope.
      */
+    @SuppressWarnings("unchecked")
     public T get() throws IllegalStateException {
-        checkInTransaction();
-        return map.get(local.get().peek());
+        return (T) getScope().get(this, hash);
     }
     /**
      * Removes the value that is bound to the transaction associated with the
@@ -142,8 +169,21 @@ public final class TransactionLocalDelegateImpl<T> implements
      * @throws IllegalStateException if not in transactional scope.
      */
     public void remove() throws BeanletStateException {
-        checkInTransaction();
-        map.remove(local.get().peek());
+        getScope().put(this, hash, null);
+    }
+
+    /**
+     * Registers the specified {@code synchronization} with the transaction
+     * that is associated with the calling thread. The synchronizations of a
+     * transaction are dispatched by a single synchronization that is 
+     * registered with the transaction.
+     *
+     * @throws IllegalStateException if not in transactional scope, or if
+     * the transaction has completed.
+     */
+    public void registerSynchronization(Synchronization synchronization) 
+            throws IllegalStateException, RollbackException, SystemException {
+        getScope().registerSynchronization(synchronization);
     }
 
     /**
@@ -152,20 +192,20 @@ public final class TransactionLocalDelegateImpl<T> implements
      */
     public void onUserTransaction(
             final ComponentReference<?> reference, Runnable callback) {
-        synchronized (TransactionLocalDelegateImpl.class) {
-            List<Runnable> list = callbackMap.get(reference);
-            if (list == null) {
-                list = new ArrayList<Runnable>();
-                callbackMap.put(reference, list);
+        List<Runnable> list = callbackMap.get(reference);
+        if (list == null) {
+            list = new CopyOnWriteArrayList<Runnable>();
+            List<Runnable> tmp = callbackMap.putIfAbsent(reference, list);
+            if (tmp == null) {
                 reference.addDestroyHook(new Runnable() {
                     public void run() {
-                        synchronized (TransactionLocalDelegateImpl.class) {
-                            callbackMap.remove(reference);
-                        }
+                        callbackMap.remove(reference);
                     }
                 });
+            } else {
+                list = tmp;
             }
-            list.add(callback);
         }
+        list.add(callback);
     }
 }
@@ -0,0 +1,318 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Beanlet - JSE Application Container.
+ * Copyright (C) 2006  Leon van Zantvoort
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ * 
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://beanlet.org
+ */
+package org.beanlet.transaction.impl;
+
+import static java.util.logging.Level.*;
+import java.lang.ref.WeakReference;
+import java.util.logging.Logger;
+import javax.transaction.RollbackException;
+import javax.transaction.Synchronization;
+import javax.transaction.SystemException;
+import javax.transaction.Transaction;
+import org.beanlet.common.WeakIdentityMap;
+
+/**
+ * <p>Holds the state that the container associates with a single 
+ * transaction. Transaction local values are stored in an open addressing 
+ * table that is owned by this scope, so that unrelated transactions never 
+ * share any lock.</p>
+ *
+ * <p>A scope is attached to the transaction when the container first 
+ * associates the transaction with a thread, and it is cleared once the last
+ * association has completed. The scope refers to its transaction weakly, 
+ * and releases its synchronizations on completion, so that the scope of a 
+ * completed transaction that is never detached is dropped once the 
+ * transaction itself is garbage collected.</p>
+ *
+ * <p>Synchronizations of the container are not registered with the 
+ * transaction one by one. Instead, the scope registers itself once and 
+ * dispatches the transaction's completion to all of them.</p>
+ *
+ * @author Leon van Zantvoort
+ */
+final class TransactionScope implements Synchronization {
+    
+    private static final Logger logger = Logger.getLogger(TransactionScope.class.getName());
+    private static final WeakIdentityMap<Transaction, TransactionScope> scopes =
+            new WeakIdentityMap<Transaction, TransactionScope>();
+    
+    /**
+     * Returns the scope of the specified {@code transaction}, creating it if
+     * needed, and registers a new association with it.
+     */
+    static TransactionScope attach(Transaction transaction) {
+        while (true) {
+            TransactionScope scope = scopes.get(transaction);
+            if (scope == null) {
+                scope = new TransactionScope(transaction);
+                TransactionScope tmp = scopes.putIfAbsent(transaction, scope);
+                if (tmp != null) {
+                    continue;
+                }
+            }
+            if (scope.associate()) {
+                return scope;
+            }
+            // Scope has been cleared in the meantime, replace it.
+            scopes.remove(transaction, scope);
+        }
+    }
+    
+    private final WeakReference<Transaction> transaction;
+    
+    // Keys and values are interleaved.
+    private Object[] table;
+    private int size;
+    private int associations;
+    private boolean cleared;
+    
+    private Synchronization[] synchronizations;
+    private int synchronizationCount;
+    private boolean registering;
+    private boolean registered;
+    private boolean completed;
+    
+    private TransactionScope(Transaction transaction) {
+        this.transaction = new WeakReference<Transaction>(transaction);
+    }
+    
+    /**
+     * Returns the transaction of this scope, or {@code null} if it has been
+     * garbage collected.
+     */
+    Transaction getTransaction() {
+        return transaction.get();
+    }
+    
+    private synchronized boolean associate() {
+        if (cleared) {
+            return false;
+        }
+        associations++;
+        return true;
+    }
+    
+    /**
+     * Ends an association with this scope. The scope is cleared after the 
+     * last association has ended.
+     */
+    void detach() {
+        boolean clear;
+        synchronized (this) {
+            clear = --associations == 0;
+            if (clear) {
+                cleared = true;
+                table = null;
+                size = 0;
+            }
+        }
+        Transaction tx = transaction.get();
+        if (clear && tx != null) {
+            scopes.remove(tx, this);
+        }
+    }
+    
+    /**
+     * Adds the specified {@code synchronization} to this scope. The scope 
+     * registers itself with the transaction for the first synchronization 
+     * that is added. Synchronizations that are added while the registration
+     * is in progress wait for its outcome. If the registration fails, the 
+     * synchronization is removed again, and the next synchronization that 
+     * is added retries the registration.
+     *
+     * @throws IllegalStateException if the transaction has completed, or if
+     * the transaction manager refuses the registration.
+     */
+    void registerSynchronization(Synchronization synchronization) throws 
+            IllegalStateException, RollbackException, SystemException {
+        assert synchronization != null;
+        Transaction tx = transaction.get();
+        synchronized (this) {
+            boolean interrupted = false;
+            while (registering) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (completed || tx == null) {
+                throw new IllegalStateException("Transaction completed: " + 
+                        tx + ".");
+            }
+            if (synchronizations == null) {
+                synchronizations = new Synchronization[4];
+            } else if (synchronizationCount == synchronizations.length) {
+                Synchronization[] tmp = 
+                        new Synchronization[synchronizationCount * 2];
+                System.arraycopy(synchronizations, 0, tmp, 0, 
+                        synchronizationCount);
+                synchronizations = tmp;
+            }
+            synchronizations[synchronizationCount++] = synchronization;
+            if (registered) {
+                return;
+            }
+            registering = true;
+        }
+        boolean success = false;
+        try {
+            tx.registerSynchronization(this);
+            success = true;
+        } finally {
+            synchronized (this) {
+                registering = false;
+                registered = success;
+                if (!success) {
+                    remove(synchronization);
+                }
+                notifyAll();
+            }
+        }
+    }
+    
+    /**
+     * Caller must hold the lock of this scope.
+     */
+    private void remove(Synchronization synchronization) {
+        for (int i = synchronizationCount - 1; i >= 0; i--) {
+            if (synchronizations[i] == synchronization) {
+                synchronizationCount--;
+                System.arraycopy(synchronizations, i + 1, synchronizations, 
+                        i, synchronizationCount - i);
+                synchronizations[synchronizationCount] = null;
+                break;
+            }
+        }
+    }
+    
+    /**
+     * Dispatches to all synchronizations, including the ones that are added
+     * while this method is running.
+     */
+    public void beforeCompletion() {
+        for (int i = 0; ; i++) {
+            final Synchronization synchronization;
+            synchronized (this) {
+                if (completed || i >= synchronizationCount) {
+                    break;
+                }
+                synchronization = synchronizations[i];
+            }
+            synchronization.beforeCompletion();
+        }
+    }
+    
+    public void afterCompletion(int status) {
+        final Synchronization[] tmp;
+        final int count;
+        synchronized (this) {
+            if (completed) {
+                return;
+            }
+            completed = true;
+            tmp = synchronizations;
+            count = synchronizationCount;
+            synchronizations = null;
+            synchronizationCount = 0;
+        }
+        for (int i = 0; i < count; i++) {
+            try {
+                tmp[i].afterCompletion(status);
+            } catch (RuntimeException e) {
+                logger.log(WARNING, "Synchronization failed on completion " +
+                        "of transaction: " + transaction.get() + ".", e);
+            }
+        }
+    }
+    
+    synchronized Object get(Object key, int hash) {
+        if (table == null) {
+            return null;
+        }
+        int i = indexOf(table, key, hash);
+        return table[i] == key ? table[i + 1] : null;
+    }
+    
+    synchronized void put(Object key, int hash, Object value) {
+        if (table == null) {
+            if (value == null) {
+                return;
+            }
+            table = new Object[16];
+        }
+        int i = indexOf(table, key, hash);
+        if (table[i] == key) {
+            table[i + 1] = value;
+        } else if (value != null) {
+            table[i] = key;
+            table[i + 1] = value;
+            // Keep the table at most half full.
+            if (++size * 4 > table.length) {
+                resize();
+            }
+        }
+    }
+    
+    private void resize() {
+        Object[] old = table;
+        table = new Object[old.length * 2];
+        for (int j = 0; j < old.length; j += 2) {
+            Object key = old[j];
+            if (key != null) {
+                int i = indexOf(table, key, 
+                        ((TransactionLocalDelegateImpl) key).hash);
+                table[i] = key;
+                table[i + 1] = old[j + 1];
+            }
+        }
+    }
+    
+    /**
+     * Returns the index of the specified {@code key}, or of the empty slot 
+     * where it is to be inserted. Keys are never removed, removing a value
+     * only clears it.
+     */
+    private static int indexOf(Object[] table, Object key, int hash) {
+        int mask = table.length - 1;
+        int i = (hash << 1) & mask;
+        while (true) {
+            Object k = table[i];
+            if (k == key || k == null) {
+                return i;
+            }
+            i = (i + 2) & mask;
+        }
+    }
+}
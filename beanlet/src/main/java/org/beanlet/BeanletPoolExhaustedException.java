@@ -0,0 +1,52 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Beanlet - JSE Application Container.
+ * Copyright (C) 2006  Leon van Zantvoort
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ * 
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://beanlet.org
+ */
+package org.beanlet;
+
+/**
+ * Thrown if no beanlet instance could be obtained from the beanlet's pool
+ * within the acquire timeout specified by the {@code Pool} annotation. Callers
+ * may catch this exception to shed load instead of waiting for the pool.
+ *
+ * @see Pool
+ * @author Leon van Zantvoort
+ */
+public class BeanletPoolExhaustedException extends BeanletCreationException {
+    
+    private static final long serialVersionUID = -3902566114957316251L;
+    
+    public BeanletPoolExhaustedException(String beanletName) {
+        super(beanletName, "Beanlet pool is exhausted.");
+    }
+
+    public BeanletPoolExhaustedException(String beanletName, Throwable cause) {
+        super(beanletName, "Beanlet pool is exhausted.", cause);
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * ============================================================================
+ * GNU Lesser General Public License
+ * ============================================================================
+ *
+ * Beanlet - JSE Application Container.
+ * Copyright (C) 2006  Leon van Zantvoort
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307, USA.
+ * 
+ * Leon van Zantvoort
+ * 243 Acalanes Drive #11
+ * Sunnyvale, CA 94086
+ * USA
+ *
+ * zantvoort@users.sourceforge.net
+ * http://beanlet.org
+ */
+package org.beanlet;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * <p>Specifies the pooling policy of {@code Stateless} beanlets. By default,
+ * stateless beanlet pools grow with the number of concurrent requests and 
+ * never shrink. This annotation allows the pool to be bounded, to be warmed up
+ * on deployment, and to release idle beanlet instances after traffic peaks.
+ * </p>
+ * 
+ * <p>Idle instances are evicted by a background thread. Evicted instances are
+ * destroyed, which results in their {@code PreDestroy} methods being 
+ * invoked. The pool never evicts instances if this would reduce the number of
+ * instances below {@code minSize}.</p>
+ *
+ * <p>This annotation is only supported for non-reentrant {@code Stateless} 
+ * beanlets.</p>
+ *
+ * {@beanlet.annotation}
+ *
+ * @see Stateless
+ * @author Leon van Zantvoort
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Pool {
+    
+    /**
+     * Minimum number of beanlet instances kept by the pool. These instances 
+     * are created on deployment, unless the beanlet is lazy.
+     */
+    int minSize() default 0;
+    
+    /**
+     * Maximum number of beanlet instances that can exist at the same time. 
+     * Requests block until an instance is returned to the pool if this 
+     * limit is reached. The pool is unbounded if set to {@code 0}.
+     */
+    int maxSize() default 0;
+    
+    /**
+     * Maximum number of idle beanlet instances. Surplus idle instances are 
+     * evicted. No limit applies if set to {@code 0}.
+     */
+    int maxIdle() default 0;
+    
+    /**
+     * Number of beanlet instances that are created eagerly on deployment.
+     * Instances exceeding {@code minSize} are subject to eviction.
+     */
+    int warmUp() default 0;
+    
+    /**
+     * Number of milliseconds to wait for a beanlet instance if the pool has
+     * reached its maximum size. If set to {@code 0}, requests fail 
+     * immediately if no instance is available. A negative value lets requests
+     * wait indefinitely. A {@code BeanletPoolExhaustedException} is thrown if
+     * no instance could be obtained in time.
+     */
+    long acquireTimeout() default -1L;
+    
+    /**
+     * Number of milliseconds after which idle beanlet instances are evicted.
+     * Idle instances do not time out if set to {@code 0}.
+     */
+    long idleTimeout() default 0L;
+    
+    /**
+     * Number of milliseconds between subsequent eviction runs.
+     */
+    long evictionInterval() default 30000L;
+}